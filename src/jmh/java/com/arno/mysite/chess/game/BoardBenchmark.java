@@ -0,0 +1,141 @@
+package com.arno.mysite.chess.game;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the Board methods the game calls on every move, over middlegame and endgame positions.
+ * Run with the jmh profile, the gc profiler adds the allocation rate per operation:
+ * mvn -P jmh compile exec:exec
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BoardBenchmark {
+
+    private static final Map<String, String> POSITIONS = Map.of(
+            "italian", "r1bq1rk1/1pp2ppp/p1np1n2/2b1p3/2B1P3/2PP1N2/PP1N1PPP/R1BQ1RK1 w - -",
+            "queensGambit", "r2q1rk1/pp1nbppp/2p1pn2/3p2B1/2PP4/2NBPN2/PPQ2PPP/R3K2R w KQ -",
+            "kiwipete", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq -",
+            "rookEnding", "8/5pk1/6p1/3R3p/r6P/6P1/5PK1/8 w - -",
+            "pawnEnding", "8/8/1p3k2/p1p5/P1P2K2/1P6/8/8 w - -",
+            "queenEnding", "6k1/5p2/6p1/8/3Q4/6P1/q4PK1/8 b - -",
+            //isMated only looks for evasions when the side is in check, these two take that path
+            "inCheck", "rnbqk1nr/pppp1ppp/8/4p3/1b1PP3/8/PPP2PPP/RNBQKBNR w KQkq -",
+            "mated", "rnb1kbnr/pppp1ppp/8/4p3/6Pq/5P2/PPPPP2P/RNBQKBNR w KQkq -"
+    );
+
+    @Param({"italian", "queensGambit", "kiwipete", "rookEnding", "pawnEnding", "queenEnding", "inCheck", "mated"})
+    private String position;
+
+    private Board board;
+    private Piece[] pieces;
+    //every square each piece of the side to move covers, as {piece index, x, y}
+    private int[][] probes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        board = Board.fromFen(POSITIONS.get(position));
+        ArrayList<Piece> list = new ArrayList<>();
+        for (Piece[] column : board.getBoardPlacement()) {
+            for (Piece piece : column) {
+                if (piece != null) {
+                    list.add(piece);
+                }
+            }
+        }
+        pieces = list.toArray(new Piece[0]);
+
+        char role = Position.role(board.getPosition().getSideToMove());
+        ArrayList<int[]> probeList = new ArrayList<>();
+        for (int i = 0; i < pieces.length; i++) {
+            if (pieces[i].getRole() == role) {
+                for (Integer[] field : pieces[i].getCoveredFields()) {
+                    probeList.add(new int[]{i, field[0], field[1]});
+                }
+            }
+        }
+        probes = probeList.toArray(new int[0][]);
+    }
+
+    @Benchmark
+    public void isChecked(Blackhole blackhole) {
+        blackhole.consume(board.isChecked('W'));
+        blackhole.consume(board.isChecked('B'));
+    }
+
+    @Benchmark
+    public void isMated(Blackhole blackhole) {
+        blackhole.consume(board.isMated('W'));
+        blackhole.consume(board.isMated('B'));
+    }
+
+    @Benchmark
+    public void futureMoveChecked(Blackhole blackhole) {
+        for (int[] probe : probes) {
+            blackhole.consume(board.futureMoveChecked(pieces[probe[0]], probe[1], probe[2]));
+        }
+    }
+
+    @Benchmark
+    public Board updatePlacement() {
+        board.updatePlacement();
+        return board;
+    }
+
+    @Benchmark
+    public Piece[] updateCoveredFields() {
+        for (Piece piece : pieces) {
+            board.updateCoveredFields(piece);
+        }
+        return pieces;
+    }
+
+    /**
+     * setPiece changes the board, so every call gets a fresh board and plays the next of its legal moves
+     */
+    @State(Scope.Thread)
+    public static class MoveState {
+
+        @Param({"italian", "queensGambit", "kiwipete", "rookEnding", "pawnEnding", "queenEnding"})
+        private String position;
+
+        private final MoveList moves = new MoveList();
+        private int next;
+        private Board board;
+        private int move;
+
+        @Setup(Level.Invocation)
+        public void setUp() {
+            board = Board.fromFen(POSITIONS.get(position));
+            MoveGenerator.generateLegalMoves(board.getPosition(), moves);
+            move = moves.get(next++ % moves.size());
+        }
+    }
+
+    @Benchmark
+    public Board setPiece(MoveState state) {
+        int from = Move.from(state.move);
+        int to = Move.to(state.move);
+        state.board.setPiece(Position.fileOf(from), Position.rankOf(from), Position.fileOf(to), Position.rankOf(to), false);
+        return state.board;
+    }
+}
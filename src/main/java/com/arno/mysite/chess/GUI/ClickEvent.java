@@ -0,0 +1,48 @@
+package com.arno.mysite.chess.GUI;
+
+import com.arno.mysite.chess.game.Board;
+
+/**
+ * Click on the panel, already sorted into a square of the board or a slot of the sidebar
+ */
+public class ClickEvent {
+
+    public static final int SQUARE = 0;
+    public static final int SIDEBAR = 1;
+
+    private final int type;
+    private final int x;
+    private final int y;
+
+    private ClickEvent(int type, int x, int y) {
+        this.type = type;
+        this.x = x;
+        this.y = y;
+    }
+
+    public static ClickEvent square(int x, int y) {
+        return new ClickEvent(SQUARE, x, y);
+    }
+
+    /**
+     * @param slot 0 rook, 1 bishop, 2 knight, 3 queen while a promotion is shown
+     */
+    public static ClickEvent sidebar(int slot) {
+        return new ClickEvent(SIDEBAR, Board.WIDTH, slot);
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * @return row of the square, the slot for the sidebar
+     */
+    public int getY() {
+        return y;
+    }
+}
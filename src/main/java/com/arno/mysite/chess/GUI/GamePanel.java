@@ -2,6 +2,7 @@ package com.arno.mysite.chess.GUI;
 
 import com.arno.mysite.chess.game.Game;
 import com.arno.mysite.chess.game.Board;
+import com.arno.mysite.chess.game.Move;
 import com.arno.mysite.chess.game.Piece;
 
 import javax.imageio.ImageIO;
@@ -11,28 +12,46 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
 import java.io.*;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Board in a window. The game thread plays the moves and sleeps while it waits for a click,
+ * the event dispatch thread paints whatever the game thread last showed
+ */
 public class GamePanel extends JPanel implements Runnable{
 
-    //Sets the framerate
-    private final Integer FPS = 60;
-
     //Sets the dimensions of one entity object
     private final Integer ENTITY_WIDTH = 75;
     private final Integer ENTITY_HEIGHT = 75;
 
-    private Thread gameThread;
+    private volatile Thread gameThread;
     private Game game;
     private ArrayList<Image> images;
-
-    //used for communication between MouseListener and update()
-    private PipedReader inputReader;
-    private PipedWriter inputWriter;
-    private PipedReader gameReader;
-    private Boolean promotePawn;
-
-    public GamePanel() {
+    //what paintComponent draws, replaced by the game thread on every change so painting never reads the board
+    private volatile BoardView view;
+
+    //clicks are passed from the MouseListener on the event dispatch thread to update() on the game thread
+    private static final int CLICK_CAPACITY = 1024;
+    private final SpscQueue<ClickEvent> clicks;
+    //clicks the queue had no room for, kept by the event dispatch thread until it has
+    private final ArrayDeque<ClickEvent> pendingClicks;
+    //set by the event dispatch thread while pendingClicks holds clicks, so the game thread asks for them once it made room
+    private volatile boolean clicksPending;
+
+    //the piece picked by the last click, -1 while none is
+    private int selectedX;
+    private int selectedY;
+    private boolean promotePawn;
+
+    public GamePanel(Game game) {
+        this.game = game;
+        this.clicks = new SpscQueue<>(CLICK_CAPACITY);
+        this.pendingClicks = new ArrayDeque<>();
+        this.selectedX = -1;
+        this.selectedY = -1;
+        this.promotePawn = false;
         this.setPreferredSize(new Dimension(Board.WIDTH*ENTITY_WIDTH + ENTITY_WIDTH, Board.HEIGHT*ENTITY_HEIGHT));
         this.setBackground(new Color(255, 255, 255));
         this.setDoubleBuffered(true);
@@ -54,159 +73,155 @@ public class GamePanel extends JPanel implements Runnable{
             throw new RuntimeException(e);
         }
 
-        game = new Game();
-        inputWriter = new PipedWriter();
+        render();
 
-        promotePawn = false;
+        while (gameThread != null) {
+            update();
 
-        //Connects the reader to a writer
-        try {
-            inputReader = new PipedReader(inputWriter);
-            gameReader = new PipedReader(game.getBoard().getPipedWriter());
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+            //sleeps until a click comes in, the computer's moves are played without waiting
+            if (gameThread != null && clicks.isEmpty() && (promotePawn || isHumanToMove())) {
+                LockSupport.park(this);
+            }
         }
+    }
 
-        super.paintComponent(getGraphics());
-        Graphics2D graphics2D = (Graphics2D)getGraphics();
+    /**
+     * Lets the computer move and handles the clicks that came in since the last update, never waits for input
+     */
+    public void update() {
 
-        double drawInterval = (double) 1000000000 /FPS;
-        double delta = 0;
-        long lastTime = System.nanoTime();
-        long currentTime;
+        //the computer plays its side without waiting for clicks
+        if (!promotePawn && game.playComputerMove()) {
+            render();
+        }
 
-        draw(graphics2D, false, -1, -1);
+        //clicks made while the computer is to move wait in the queue until a human is
+        ClickEvent click;
+        while (!game.getBoard().isGameOver() && (promotePawn || isHumanToMove()) && (click = clicks.poll()) != null) {
+            handleClick(click);
+        }
+        if (clicksPending && clicks.size() < clicks.capacity()) {
+            SwingUtilities.invokeLater(this::offerPendingClicks);
+        }
 
-        while(gameThread != null) {
-            currentTime = System.nanoTime();
-            delta += (currentTime - lastTime) / drawInterval;
-            lastTime = currentTime;
+        if (game.getBoard().isBlackMated()) {
+            System.out.println("WHITE WON!");
+            gameThread = null;
+        }
 
-            if(delta >= 1) {
+        if (game.getBoard().isWhiteMated()) {
+            System.out.println("BLACK WON!");
+            gameThread = null;
+        }
 
-                //Executes the game loop
-                update(graphics2D);
+        if (game.getBoard().isDrawn()) {
+            System.out.println("DRAW!");
+            gameThread = null;
+        }
 
-                delta--;
-            }
+        if (gameThread == null) {
+            game.endGame();
         }
     }
 
+    private boolean isHumanToMove() {
+        return game.getPlayer(game.getSession().getRoleToMove()) == null;
+    }
+
     /**
-     * Reads the input and if the move is made, game.getBoard() is reversed
+     * A click picks the promotion piece while one is shown, otherwise the piece to move and then its target square
      */
-    public void update(Graphics2D graphics2D) {
-
-        int response;
-        int x, y;
-        Piece piece = null;
-
-        int indicatedX = -1, indicatedY = -1;
-        int targetX, targetY;
-
-        try {
-            //Calls promotePawn function
-            if (promotePawn) {
-                x = inputReader.read();
-                y = inputReader.read();
-                while (!(x == Board.WIDTH && (y == 0 || y == 1 || y == 2 || y == 3 || y == 4))) {
-                    x = inputReader.read();
-                    y = inputReader.read();
-                }
-
-                if (game.getBoard().isReversed()) {
-                    switch (y) {
-                        case 0 -> piece = game.getBoard().promotePawn('R', 'W');
-                        case 1 -> piece = game.getBoard().promotePawn('B', 'W');
-                        case 2 -> piece = game.getBoard().promotePawn('K', 'W');
-                        case 3 -> piece = game.getBoard().promotePawn('Q', 'W');
-                    }
-                }
-                if (!game.getBoard().isReversed()) {
-                    switch (y) {
-                        case 0 -> piece = game.getBoard().promotePawn('R', 'B');
-                        case 1 -> piece = game.getBoard().promotePawn('B', 'B');
-                        case 2 -> piece = game.getBoard().promotePawn('K', 'B');
-                        case 3 -> piece = game.getBoard().promotePawn('Q', 'B');
-                    }
-                }
+    private void handleClick(ClickEvent click) {
+        if (promotePawn) {
+            //only the four pieces on the sidebar pick a promotion
+            if (click.getType() != ClickEvent.SIDEBAR || click.getY() < 0 || click.getY() > 3) {
+                return;
+            }
+            //the reversed board waits for black, so the pawn to promote is white
+            char role = game.getBoard().isReversed() ? 'W' : 'B';
+            Piece piece = null;
+            switch (click.getY()) {
+                case 0 -> piece = game.getSession().promotePawn('R', role);
+                case 1 -> piece = game.getSession().promotePawn('B', role);
+                case 2 -> piece = game.getSession().promotePawn('K', role);
+                case 3 -> piece = game.getSession().promotePawn('Q', role);
             }
-
             promotePawn = false;
-
             if (piece != null) {
-                draw(graphics2D, false, -1, -1);
-            }
-
-            if (!game.getBoard().isReversed()) {
-                while (true) {
-                    //Prevent ArrayOutOfBounds exception
-                    indicatedX = inputReader.read();
-                    indicatedY = inputReader.read();
-                    if (indicatedX < Board.WIDTH && indicatedY < Board.HEIGHT) {
-                        if (game.getBoard().getPiece(indicatedX, indicatedY) != null && game.getBoard().getPiece(indicatedX, indicatedY).getRole() != 'B') {
-                            break;
-                        }
-                    }
-                }
+                render();
             }
-            if (game.getBoard().isReversed()) {
-                //Prevent ArrayOutOfBounds exception
-                while (true) {
-                    //Prevent ArrayOutOfBounds exception
-                    indicatedX = inputReader.read();
-                    indicatedY = inputReader.read();
-                    if (indicatedX < Board.WIDTH && indicatedY < Board.HEIGHT) {
-                        if (game.getBoard().getPiece(indicatedX, indicatedY) != null && game.getBoard().getPiece(indicatedX, indicatedY).getRole() != 'W') {
-                            break;
-                        }
-                    }
-                }
-            }
-
+            return;
+        }
 
-            draw(graphics2D, true, indicatedX, indicatedY);
+        if (click.getType() != ClickEvent.SQUARE) {
+            return;
+        }
 
-            targetX = inputReader.read();
-            targetY = inputReader.read();
-            while (!(targetX < Board.WIDTH && targetY < Board.HEIGHT)) {
-                targetX = inputReader.read();
-                targetY = inputReader.read();
+        if (selectedX < 0) {
+            Piece piece = game.getBoard().getPiece(click.getX(), click.getY());
+            char opponent = game.getBoard().isReversed() ? 'W' : 'B';
+            if (piece != null && piece.getRole() != opponent) {
+                selectedX = click.getX();
+                selectedY = click.getY();
+                render();
             }
+            return;
+        }
 
-            game.getBoard().setPiece(indicatedX, indicatedY, targetX, targetY, false);
+        //a pawn reaching the last rank is played as a queen until a piece is picked from the sidebar
+        if (game.getSession().submitMove(selectedX, selectedY, click.getX(), click.getY())) {
+            promotePawn = Move.isPromotion(game.getBoard().getLastMove());
+        }
+        selectedX = -1;
+        selectedY = -1;
+        render();
+    }
 
-            //Checks for input regarding pawn promotion
-            response = gameReader.read();
-            if (response == 0) {
-                promotePawn = false;
-            } else if (response == 1) {
-                promotePawn = true;
+    /**
+     * Takes a picture of the board as it is now and asks for it to be painted
+     */
+    private void render() {
+        Board board = game.getBoard();
+        int[][] pieces = new int[Board.WIDTH][Board.HEIGHT];
+        for (int i = 0; i < Board.WIDTH; i++) {
+            for (int j = 0; j < Board.HEIGHT; j++) {
+                Piece piece = board.getBoardPlacement()[i][j];
+                pieces[i][j] = piece == null ? -1 : imageIndex(piece);
             }
-            draw(graphics2D, false, -1, -1);
-
-        } catch (IOException e) {
-            throw new RuntimeException(e);
         }
+        view = new BoardView(pieces, board.isReversed(), selectedX, selectedY, promotePawn);
+        repaint();
+    }
 
+    /**
+     * @return index of the piece's picture in images
+     */
+    private static int imageIndex(Piece piece) {
+        int index = switch (piece.getName()) {
+            case PAWN -> 0;
+            case ROOK -> 1;
+            case BISHOP -> 2;
+            case KNIGHT -> 3;
+            case QUEEN -> 4;
+            case KING -> 5;
+        };
+        return piece.getRole() == 'B' ? index : index + 6;
+    }
 
-        if (game.getBoard().isBlackMated()) {
-            System.out.println("WHITE WON!");
-            gameThread = null;
-        }
-
-        if (game.getBoard().isWhiteMated()) {
-            System.out.println("BLACK WON!");
-            gameThread = null;
+    @Override
+    protected void paintComponent(Graphics graphics) {
+        super.paintComponent(graphics);
+        BoardView view = this.view;
+        if (view != null) {
+            draw((Graphics2D) graphics, view);
         }
     }
 
-
     /**
      * Draws the squares and pieces on the board
      * @param graphics2D != null;
      */
-    public void draw(Graphics2D graphics2D, boolean indicated, int indicatedX, int indicatedY) {
+    private void draw(Graphics2D graphics2D, BoardView view) {
 
         Color color1 = new Color(0, 0, 0);
         Color color2 = new Color(255, 255, 255);
@@ -230,43 +245,25 @@ public class GamePanel extends JPanel implements Runnable{
             }
         }
 
-        if (indicated) {
+        if (view.selectedX >= 0) {
             graphics2D.setColor(color3);
             graphics2D.fillRect(
-                    indicatedX * ENTITY_WIDTH,
-                    indicatedY * ENTITY_HEIGHT,
+                    view.selectedX * ENTITY_WIDTH,
+                    view.selectedY * ENTITY_HEIGHT,
                     ENTITY_WIDTH,
                     ENTITY_HEIGHT);
         }
 
         for (int i = 0; i < Board.WIDTH; i++) {
             for (int j = 0; j < Board.HEIGHT; j++) {
-                if (game.getBoard().getBoardPlacement()[i][j] != null) {
-                    if (game.getBoard().getBoardPlacement()[i][j].getRole() == 'B') {
-                        switch (game.getBoard().getBoardPlacement()[i][j].getName()) {
-                            case PAWN -> graphics2D.drawImage(images.get(0), i * ENTITY_WIDTH, j * ENTITY_HEIGHT, ENTITY_WIDTH, ENTITY_HEIGHT,null);
-                            case ROOK -> graphics2D.drawImage(images.get(1), i * ENTITY_WIDTH, j * ENTITY_HEIGHT, ENTITY_WIDTH, ENTITY_HEIGHT,null);
-                            case BISHOP -> graphics2D.drawImage(images.get(2), i * ENTITY_WIDTH, j * ENTITY_HEIGHT, ENTITY_WIDTH, ENTITY_HEIGHT,null);
-                            case KNIGHT -> graphics2D.drawImage(images.get(3), i * ENTITY_WIDTH, j * ENTITY_HEIGHT, ENTITY_WIDTH, ENTITY_HEIGHT,null);
-                            case QUEEN -> graphics2D.drawImage(images.get(4), i * ENTITY_WIDTH, j * ENTITY_HEIGHT, ENTITY_WIDTH, ENTITY_HEIGHT,null);
-                            case KING -> graphics2D.drawImage(images.get(5), i * ENTITY_WIDTH, j * ENTITY_HEIGHT, ENTITY_WIDTH, ENTITY_HEIGHT,null);
-                        }
-                    } else {
-                        switch (game.getBoard().getBoardPlacement()[i][j].getName()) {
-                            case PAWN -> graphics2D.drawImage(images.get(6), i * ENTITY_WIDTH, j * ENTITY_HEIGHT, ENTITY_WIDTH, ENTITY_HEIGHT,null);
-                            case ROOK -> graphics2D.drawImage(images.get(7), i * ENTITY_WIDTH, j * ENTITY_HEIGHT, ENTITY_WIDTH, ENTITY_HEIGHT,null);
-                            case BISHOP -> graphics2D.drawImage(images.get(8), i * ENTITY_WIDTH, j * ENTITY_HEIGHT, ENTITY_WIDTH, ENTITY_HEIGHT,null);
-                            case KNIGHT -> graphics2D.drawImage(images.get(9), i * ENTITY_WIDTH, j * ENTITY_HEIGHT, ENTITY_WIDTH, ENTITY_HEIGHT,null);
-                            case QUEEN -> graphics2D.drawImage(images.get(10), i * ENTITY_WIDTH, j * ENTITY_HEIGHT, ENTITY_WIDTH, ENTITY_HEIGHT,null);
-                            case KING -> graphics2D.drawImage(images.get(11), i * ENTITY_WIDTH, j * ENTITY_HEIGHT, ENTITY_WIDTH, ENTITY_HEIGHT,null);
-                        }
-                    }
+                if (view.pieces[i][j] >= 0) {
+                    graphics2D.drawImage(images.get(view.pieces[i][j]), i * ENTITY_WIDTH, j * ENTITY_HEIGHT, ENTITY_WIDTH, ENTITY_HEIGHT,null);
                 }
             }
         }
 
         //SIDEBAR
-        if (game.getBoard().isReversed()) {
+        if (view.reversed) {
             graphics2D.setColor(color1);
         } else {
             graphics2D.setColor(color2);
@@ -277,14 +274,14 @@ public class GamePanel extends JPanel implements Runnable{
                 ENTITY_WIDTH,
                 Board.HEIGHT * ENTITY_HEIGHT);
 
-        if (promotePawn) {
-            if (!game.getBoard().isReversed()) {
+        if (view.promotePawn) {
+            if (!view.reversed) {
                 graphics2D.drawImage(images.get(1), Board.WIDTH * ENTITY_WIDTH, ENTITY_WIDTH * 0, ENTITY_WIDTH, ENTITY_HEIGHT, null);
                 graphics2D.drawImage(images.get(2), Board.WIDTH * ENTITY_WIDTH, ENTITY_WIDTH * 1, ENTITY_WIDTH, ENTITY_HEIGHT, null);
                 graphics2D.drawImage(images.get(3), Board.WIDTH * ENTITY_WIDTH, ENTITY_WIDTH * 2, ENTITY_WIDTH, ENTITY_HEIGHT, null);
                 graphics2D.drawImage(images.get(4), Board.WIDTH * ENTITY_WIDTH, ENTITY_WIDTH * 3, ENTITY_WIDTH, ENTITY_HEIGHT, null);
             }
-            if (game.getBoard().isReversed()) {
+            if (view.reversed) {
                 graphics2D.drawImage(images.get(7), Board.WIDTH * ENTITY_WIDTH, ENTITY_WIDTH * 0, ENTITY_WIDTH, ENTITY_HEIGHT, null);
                 graphics2D.drawImage(images.get(8), Board.WIDTH * ENTITY_WIDTH, ENTITY_WIDTH * 1, ENTITY_WIDTH, ENTITY_HEIGHT, null);
                 graphics2D.drawImage(images.get(9), Board.WIDTH * ENTITY_WIDTH, ENTITY_WIDTH * 2, ENTITY_WIDTH, ENTITY_HEIGHT, null);
@@ -365,18 +362,49 @@ public class GamePanel extends JPanel implements Runnable{
     private class ClickListener extends MouseAdapter {
 
         /**
-         * Sends the coordinates of clicks to the reader
+         * Queues the click for the game thread, clicks outside the board and the sidebar are ignored
          * @param event the event to be processed
          */
         @Override
         public void mousePressed(MouseEvent event) {
-            try {
-                inputWriter.write(event.getX() / ENTITY_WIDTH);
-                inputWriter.write(event.getY() / ENTITY_HEIGHT);
-                inputWriter.flush();
-            } catch (IOException e) {
-                throw new RuntimeException(e);
+            int x = event.getX() / ENTITY_WIDTH;
+            int y = event.getY() / ENTITY_HEIGHT;
+            if (y >= Board.HEIGHT || x > Board.WIDTH) {
+                return;
             }
+            pendingClicks.add(x == Board.WIDTH ? ClickEvent.sidebar(y) : ClickEvent.square(x, y));
+            offerPendingClicks();
+        }
+    }
+
+    /**
+     * Moves the kept clicks into the queue, on the event dispatch thread. A full queue keeps them in order
+     * until the game thread made room and calls this again, none are dropped
+     */
+    private void offerPendingClicks() {
+        while (!pendingClicks.isEmpty() && clicks.offer(pendingClicks.peek())) {
+            pendingClicks.poll();
+        }
+        clicksPending = !pendingClicks.isEmpty();
+        LockSupport.unpark(gameThread);
+    }
+
+    /**
+     * Picture of the board for painting, the pieces as indexes into images, -1 for empty squares
+     */
+    private static class BoardView {
+        private final int[][] pieces;
+        private final boolean reversed;
+        private final int selectedX;
+        private final int selectedY;
+        private final boolean promotePawn;
+
+        BoardView(int[][] pieces, boolean reversed, int selectedX, int selectedY, boolean promotePawn) {
+            this.pieces = pieces;
+            this.reversed = reversed;
+            this.selectedX = selectedX;
+            this.selectedY = selectedY;
+            this.promotePawn = promotePawn;
         }
     }
 }
@@ -0,0 +1,86 @@
+package com.arno.mysite.chess.GUI;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded lock-free queue for exactly one producer thread and one consumer thread, a ring buffer
+ * whose head is only written by the consumer and whose tail only by the producer. Neither side ever blocks
+ * @param <E> type of the elements
+ */
+public class SpscQueue<E> {
+
+    private final Object[] buffer;
+    private final int mask;
+    //next slot to read, written by the consumer only
+    private final AtomicLong head;
+    //next slot to write, written by the producer only
+    private final AtomicLong tail;
+    //last head seen by the producer, so it only reads the consumer's counter when the buffer looks full
+    private long headCache;
+    //last tail seen by the consumer, so it only reads the producer's counter when the buffer looks empty
+    private long tailCache;
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    public SpscQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.buffer = new Object[size];
+        this.mask = size - 1;
+        this.head = new AtomicLong();
+        this.tail = new AtomicLong();
+    }
+
+    /**
+     * Called by the producer only
+     * @return false if the queue is full, the element is then not added
+     */
+    public boolean offer(E element) {
+        long t = tail.get();
+        if (t - headCache >= buffer.length) {
+            headCache = head.get();
+            if (t - headCache >= buffer.length) {
+                return false;
+            }
+        }
+        buffer[(int) t & mask] = element;
+        //publishes the element together with the new tail
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Called by the consumer only
+     * @return the oldest element, null if the queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long h = head.get();
+        if (h >= tailCache) {
+            tailCache = tail.get();
+            if (h >= tailCache) {
+                return null;
+            }
+        }
+        int index = (int) h & mask;
+        E element = (E) buffer[index];
+        buffer[index] = null;
+        head.lazySet(h + 1);
+        return element;
+    }
+
+    /**
+     * @return whether the queue is empty, exact for the consumer, a snapshot for any other thread
+     */
+    public boolean isEmpty() {
+        return head.get() >= tail.get();
+    }
+
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+}
@@ -1,10 +1,27 @@
 package com.arno.mysite.chess;
 
+import com.arno.mysite.chess.game.EnginePlayer;
 import com.arno.mysite.chess.game.Game;
+import com.arno.mysite.chess.persistence.OpeningBook;
+import com.arno.mysite.chess.tablebase.Tablebases;
+
+import java.io.IOException;
+import java.nio.file.Paths;
 
 public class Main {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         Game game = new Game();
+        //"engine" lets the computer play black, followed by a book file it plays its openings from and a tablebase directory
+        if (args.length > 0 && args[0].equals("engine")) {
+            EnginePlayer engine = new EnginePlayer('B');
+            if (args.length > 1) {
+                engine.setBook(OpeningBook.open(Paths.get(args[1])));
+            }
+            if (args.length > 2) {
+                engine.setTablebases(new Tablebases(Paths.get(args[2])));
+            }
+            game.addPlayer(engine);
+        }
         game.startGame("GUI");
     }
 }
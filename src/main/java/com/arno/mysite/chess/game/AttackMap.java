@@ -0,0 +1,109 @@
+package com.arno.mysite.chess.game;
+
+/**
+ * Counts for every square how many pieces of each colour attack it, together with the attacks of the piece on every square.
+ * A move only changes the attacks of the pieces it moves or takes and of the pieces attacking the squares it changes,
+ * so only those are taken out before the move and put back after it
+ */
+public class AttackMap {
+
+    private final int[][] counts;
+    //attacks of the piece standing on the square, own pieces included
+    private final long[] attacks;
+
+    public AttackMap() {
+        counts = new int[2][Position.SQUARES];
+        attacks = new long[Position.SQUARES];
+    }
+
+    /**
+     * Recounts every attack of the position from scratch
+     */
+    public void rebuild(Position position) {
+        for (int square = 0; square < Position.SQUARES; square++) {
+            counts[Position.WHITE][square] = 0;
+            counts[Position.BLACK][square] = 0;
+            attacks[square] = 0L;
+        }
+        add(position, position.getOccupied());
+    }
+
+    /**
+     * Gets the squares whose attacks change with the move: the squares the move empties or fills and every piece attacking them.
+     * Has to be called before the move is made
+     */
+    public long affectedSquares(Position position, int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        long changed = Position.bit(from) | Position.bit(to);
+        if (Move.isEnPassant(move)) {
+            changed |= Position.bit(Position.square(Position.fileOf(to), Position.rankOf(from)));
+        } else if (Move.isCastling(move)) {
+            changed |= to > from ? Position.bit(from + 3) | Position.bit(from + 1) : Position.bit(from - 4) | Position.bit(from - 1);
+        }
+
+        long occupied = position.getOccupied();
+        long affected = changed;
+        while (changed != 0) {
+            int square = Long.numberOfTrailingZeros(changed);
+            affected |= position.attackersTo(square, Position.WHITE, occupied) | position.attackersTo(square, Position.BLACK, occupied);
+            changed &= changed - 1;
+        }
+        return affected;
+    }
+
+    /**
+     * Takes the attacks of the pieces on the squares out of the counts
+     */
+    public void remove(Position position, long squares) {
+        squares &= position.getOccupied();
+        while (squares != 0) {
+            int square = Long.numberOfTrailingZeros(squares);
+            int[] count = counts[position.colourAt(square)];
+            long fields = attacks[square];
+            while (fields != 0) {
+                count[Long.numberOfTrailingZeros(fields)]--;
+                fields &= fields - 1;
+            }
+            attacks[square] = 0L;
+            squares &= squares - 1;
+        }
+    }
+
+    /**
+     * Adds the attacks of the pieces on the squares to the counts
+     */
+    public void add(Position position, long squares) {
+        squares &= position.getOccupied();
+        while (squares != 0) {
+            int square = Long.numberOfTrailingZeros(squares);
+            int colour = position.colourAt(square);
+            int[] count = counts[colour];
+            long fields = position.attacks(colour, position.typeAt(square), square);
+            attacks[square] = fields;
+            while (fields != 0) {
+                count[Long.numberOfTrailingZeros(fields)]++;
+                fields &= fields - 1;
+            }
+            squares &= squares - 1;
+        }
+    }
+
+    /**
+     * @return number of pieces of the colour attacking the square
+     */
+    public int getAttackCount(int colour, int square) {
+        return counts[colour][square];
+    }
+
+    public boolean isAttacked(int square, int byColour) {
+        return counts[byColour][square] != 0;
+    }
+
+    /**
+     * @return attacks of the piece on the square, own pieces included, 0 if the square is empty
+     */
+    public long getAttacks(int square) {
+        return attacks[square];
+    }
+}
@@ -0,0 +1,241 @@
+package com.arno.mysite.chess.game;
+
+/**
+ * Attack lookup tables, built once when the class is loaded.
+ * Knights, kings and pawns use a plain table per square, bishops and rooks use magic bitboards:
+ * the relevant blockers are multiplied by a magic number so their top bits index a table of precomputed attacks.
+ * The magic numbers were found once by a random search over sparse numbers and are kept as constants,
+ * searching them on every start takes too long
+ */
+public class Attacks {
+
+    private static final int SQUARES = Position.SQUARES;
+
+    private static final long[] KNIGHT = new long[SQUARES];
+    private static final long[] KING = new long[SQUARES];
+    private static final long[][] PAWN = new long[2][SQUARES];
+
+    private static final long[] BISHOP_MASK = new long[SQUARES];
+    private static final int[] BISHOP_SHIFT = new int[SQUARES];
+    private static final long[][] BISHOP_TABLE = new long[SQUARES][];
+
+    private static final long[] ROOK_MASK = new long[SQUARES];
+    private static final int[] ROOK_SHIFT = new int[SQUARES];
+    private static final long[][] ROOK_TABLE = new long[SQUARES][];
+
+    //squares strictly between two aligned squares, and the whole line through them
+    private static final long[][] BETWEEN = new long[SQUARES][SQUARES];
+    private static final long[][] LINE = new long[SQUARES][SQUARES];
+
+    private static final long[] BISHOP_MAGIC = {
+            0x0020428400408200L, 0x0004100440408000L, 0x82041C2482010010L, 0x0484142D80000000L,
+            0x0002021008101042L, 0x4200882008014100L, 0x0004A81108200000L, 0x0001004802011100L,
+            0x1040401024010048L, 0x0042041004204881L, 0x2008110810810020L, 0x240008060440C288L,
+            0x0021020210050020L, 0x0022810402408800L, 0x802060410420A042L, 0x0081020086481280L,
+            0x4110400860C10400L, 0x20040021240C0240L, 0x4802044104040080L, 0x00008868020042C0L,
+            0x0002204400A00002L, 0x2820408488084000L, 0x08006024041C0420L, 0x4102088190808810L,
+            0x0102201040094200L, 0xAB0A0814203800A0L, 0x4044209010008080L, 0x2020120000400440L,
+            0x4400840034802011L, 0x425051000600A200L, 0x412094012A010410L, 0x08084080A04C0440L,
+            0x0304022241C10401L, 0x0200841000210200L, 0x0602004100100100L, 0x0C04020081080080L,
+            0x00A0040400004102L, 0x30348102000100A2L, 0x10041401700C0500L, 0x8000840282424212L,
+            0x0810822110002000L, 0x00204814500084A4L, 0x0002022228009410L, 0x200000420080A810L,
+            0x0000200411108400L, 0x8240100400400020L, 0x01A4108404442100L, 0x0A020A0201A20209L,
+            0x00010C0920881A42L, 0x022104022202A400L, 0x80000022011008A0L, 0x5000441020884001L,
+            0x1001001202020008L, 0x4808202102308024L, 0x4008023004051104L, 0x44040802004E0800L,
+            0x000040A210066040L, 0x000002060A01050DL, 0x52A0040106431002L, 0x0000040200841C08L,
+            0xF000010828030409L, 0x0041201120190500L, 0x0404082081122212L, 0x000408009C008200L
+    };
+
+    private static final long[] ROOK_MAGIC = {
+            0x008000908064C000L, 0x0040200040001000L, 0x0180100080A0010AL, 0x8880041000800800L,
+            0x1200100201200804L, 0x0200020004011008L, 0x2180010000800600L, 0x0200005088210204L,
+            0x0000800080204001L, 0x1000804000802001L, 0x8240801000200080L, 0x8F80801000800801L,
+            0x008180800C001800L, 0x0100800200800400L, 0x0A02000102000408L, 0x8020802300104280L,
+            0x0080004000402000L, 0xE010104000402000L, 0x0800808010002000L, 0xA280210008100100L,
+            0x0001818014000800L, 0xA002010100080400L, 0x0080240001020870L, 0x0001020004048845L,
+            0x0081826280004004L, 0x2020810900284000L, 0x0200100080802000L, 0x0001002100081000L,
+            0x8083080100100500L, 0x4406000901000400L, 0x0005020080800100L, 0x0090204200008114L,
+            0x0010400094800420L, 0x0900804000802002L, 0x0201001841002000L, 0x4100080080801000L,
+            0x4540040080800800L, 0x0002001004040020L, 0x0281195814001002L, 0x1240800040800100L,
+            0x0880042000524004L, 0x02C080410206002CL, 0x0801200241050010L, 0x8400080010008080L,
+            0x0008000500090010L, 0x0082009084020008L, 0x01818902102C0008L, 0x8308408041020004L,
+            0x0200860C20410200L, 0x6020200090400080L, 0x0800900020008280L, 0x0000100020090100L,
+            0x0400800400080280L, 0x0050044010200801L, 0x0101004406000B00L, 0xC100066400870200L,
+            0x440680014012A501L, 0x1023012082044112L, 0x00804080200A0012L, 0x000420310A004A42L,
+            0x0023001004020801L, 0x0882001008040102L, 0x000230088118020CL, 0x0000019025040042L
+    };
+
+    private static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+    private static final int[][] ROOK_DIRECTIONS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+
+    static {
+        for (int square = 0; square < SQUARES; square++) {
+            long bit = Position.bit(square);
+            KNIGHT[square] = knights(bit);
+            KING[square] = kings(bit);
+            PAWN[Position.WHITE][square] = pawns(Position.WHITE, bit);
+            PAWN[Position.BLACK][square] = pawns(Position.BLACK, bit);
+            initMagic(square, BISHOP_DIRECTIONS, BISHOP_MASK, BISHOP_MAGIC[square], BISHOP_SHIFT, BISHOP_TABLE);
+            initMagic(square, ROOK_DIRECTIONS, ROOK_MASK, ROOK_MAGIC[square], ROOK_SHIFT, ROOK_TABLE);
+        }
+        for (int a = 0; a < SQUARES; a++) {
+            for (int b = 0; b < SQUARES; b++) {
+                long bits = Position.bit(a) | Position.bit(b);
+                if (a != b && (bishop(a, 0L) & Position.bit(b)) != 0) {
+                    BETWEEN[a][b] = bishop(a, Position.bit(b)) & bishop(b, Position.bit(a));
+                    LINE[a][b] = (bishop(a, 0L) & bishop(b, 0L)) | bits;
+                }
+                if (a != b && (rook(a, 0L) & Position.bit(b)) != 0) {
+                    BETWEEN[a][b] = rook(a, Position.bit(b)) & rook(b, Position.bit(a));
+                    LINE[a][b] = (rook(a, 0L) & rook(b, 0L)) | bits;
+                }
+            }
+        }
+    }
+
+    private Attacks() {
+    }
+
+    public static long pawn(int colour, int square) {
+        return PAWN[colour][square];
+    }
+
+    public static long knight(int square) {
+        return KNIGHT[square];
+    }
+
+    public static long king(int square) {
+        return KING[square];
+    }
+
+    public static long bishop(int square, long occupied) {
+        return BISHOP_TABLE[square][(int) (((occupied & BISHOP_MASK[square]) * BISHOP_MAGIC[square]) >>> BISHOP_SHIFT[square])];
+    }
+
+    public static long rook(int square, long occupied) {
+        return ROOK_TABLE[square][(int) (((occupied & ROOK_MASK[square]) * ROOK_MAGIC[square]) >>> ROOK_SHIFT[square])];
+    }
+
+    public static long queen(int square, long occupied) {
+        return bishop(square, occupied) | rook(square, occupied);
+    }
+
+    /**
+     * @return squares strictly between a and b, empty if they are not on one line
+     */
+    public static long between(int a, int b) {
+        return BETWEEN[a][b];
+    }
+
+    /**
+     * @return the full line through a and b from edge to edge, empty if they are not on one line
+     */
+    public static long line(int a, int b) {
+        return LINE[a][b];
+    }
+
+    /**
+     * Gets the attacks of a piece type on the square, own pieces included
+     */
+    public static long of(int colour, int type, int square, long occupied) {
+        if (type == Position.PAWN) {
+            return PAWN[colour][square];
+        }
+        if (type == Position.KNIGHT) {
+            return KNIGHT[square];
+        }
+        if (type == Position.BISHOP) {
+            return bishop(square, occupied);
+        }
+        if (type == Position.ROOK) {
+            return rook(square, occupied);
+        }
+        if (type == Position.QUEEN) {
+            return queen(square, occupied);
+        }
+        return KING[square];
+    }
+
+    /**
+     * Gets the squares attacked by a set of pawns of one colour
+     */
+    public static long pawns(int colour, long pawns) {
+        if (colour == Position.WHITE) {
+            return ((pawns & ~Position.FILE_A) >>> 9) | ((pawns & ~Position.FILE_H) >>> 7);
+        }
+        return ((pawns & ~Position.FILE_H) << 9) | ((pawns & ~Position.FILE_A) << 7);
+    }
+
+    private static long knights(long knights) {
+        long fileAB = Position.FILE_A | (Position.FILE_A << 1);
+        long fileGH = Position.FILE_H | (Position.FILE_H >>> 1);
+        return ((knights & ~Position.FILE_H) << 17) | ((knights & ~Position.FILE_A) << 15)
+                | ((knights & ~fileGH) << 10) | ((knights & ~fileAB) << 6)
+                | ((knights & ~Position.FILE_A) >>> 17) | ((knights & ~Position.FILE_H) >>> 15)
+                | ((knights & ~fileAB) >>> 10) | ((knights & ~fileGH) >>> 6);
+    }
+
+    private static long kings(long kings) {
+        long sides = ((kings & ~Position.FILE_A) >>> 1) | ((kings & ~Position.FILE_H) << 1);
+        long row = kings | sides;
+        return sides | (row << 8) | (row >>> 8);
+    }
+
+    /**
+     * Walks the rays square by square, only used to fill the tables
+     */
+    private static long slide(int square, int[][] directions, long occupied) {
+        long result = 0L;
+        for (int[] direction : directions) {
+            int x = Position.fileOf(square) + direction[0];
+            int y = Position.rankOf(square) + direction[1];
+            while (x >= 0 && x < Board.WIDTH && y >= 0 && y < Board.HEIGHT) {
+                long bit = Position.bit(Position.square(x, y));
+                result |= bit;
+                if ((occupied & bit) != 0) {
+                    break;
+                }
+                x += direction[0];
+                y += direction[1];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Squares whose occupancy changes the attacks, the last square of every ray never blocks anything
+     */
+    private static long relevantMask(int square, int[][] directions) {
+        long result = 0L;
+        for (int[] direction : directions) {
+            int x = Position.fileOf(square) + direction[0];
+            int y = Position.rankOf(square) + direction[1];
+            while (x + direction[0] >= 0 && x + direction[0] < Board.WIDTH && y + direction[1] >= 0 && y + direction[1] < Board.HEIGHT) {
+                result |= Position.bit(Position.square(x, y));
+                x += direction[0];
+                y += direction[1];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Fills the attack table of the square for every subset of its relevant blockers
+     */
+    private static void initMagic(int square, int[][] directions, long[] masks, long magic, int[] shifts, long[][] tables) {
+        long mask = relevantMask(square, directions);
+        int bits = Long.bitCount(mask);
+        long[] table = new long[1 << bits];
+
+        //enumerates every subset of the mask (carry-rippler)
+        long subset = 0L;
+        do {
+            table[(int) ((subset * magic) >>> (64 - bits))] = slide(square, directions, subset);
+            subset = (subset - mask) & mask;
+        } while (subset != 0);
+
+        masks[square] = mask;
+        shifts[square] = 64 - bits;
+        tables[square] = table;
+    }
+}
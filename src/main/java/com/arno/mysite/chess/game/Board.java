@@ -1,7 +1,7 @@
 package com.arno.mysite.chess.game;
 
-import java.io.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 public class Board {
     public static final int WIDTH = 8;
@@ -9,6 +9,21 @@ public class Board {
 
     private final ArrayList<Piece> pieces;
     private Piece[][] boardPlacement;
+    private final Position position;
+    private final AttackMap attackMap;
+
+    //reused by every test move instead of allocating per candidate
+    private final MoveList moveList;
+    private final UndoInfo undo;
+
+    //the last executed move, kept so the promotion piece can still be chosen afterwards
+    private int lastMove;
+    private final UndoInfo lastUndo;
+    //moves played from the starting position, for writing the game out
+    private int[] history;
+    private int historySize;
+    //null for the standard starting position
+    private String startFen;
 
     private boolean reversed;
 
@@ -16,19 +31,36 @@ public class Board {
     private boolean whiteChecked;
     private boolean blackMated;
     private boolean whiteMated;
-
-    private int turn;
-
-    private boolean enPassant;
-    private boolean castling;
-    private boolean pawnCrossed;
-
-    private final PipedWriter pipedWriter;
+    //stalemate, threefold repetition, fifty moves without a capture or pawn move or no mating material left
+    private boolean drawn;
 
     public Board() {
+        this(null);
+    }
+
+    /**
+     * Sets the board up from a FEN string instead of the starting position
+     * @param fen null for the starting position
+     */
+    private Board(String fen) {
         this.pieces = new ArrayList<>();
         boardPlacement = new Piece[WIDTH][HEIGHT];
-        createPieces();
+        position = new Position();
+        attackMap = new AttackMap();
+        moveList = new MoveList();
+        undo = new UndoInfo();
+        lastMove = Move.NONE;
+        lastUndo = new UndoInfo();
+        history = new int[128];
+        historySize = 0;
+        startFen = fen;
+        if (fen == null) {
+            createPieces();
+            position.setCastlingRights(Position.ALL_CASTLING);
+        } else {
+            createPieces(fen);
+        }
+        updateCoveredFields();
         updateBoard();
         this.reversed = false;
 
@@ -36,10 +68,12 @@ public class Board {
         this.whiteChecked = false;
         this.blackMated = false;
         this.whiteMated = false;
+        this.drawn = false;
 
-        this.turn = 0;
-
-        pipedWriter = new PipedWriter();
+        if (fen != null) {
+            this.reversed = position.getSideToMove() == Position.BLACK;
+            updateStatus();
+        }
     }
 
     /**
@@ -47,30 +81,115 @@ public class Board {
      */
     public void createPieces() {
         //Black pieces
-        pieces.add(new Piece(Pieces.ROOK, 0, 0, 'B'));
-        pieces.add(new Piece(Pieces.KNIGHT, 1, 0, 'B'));
-        pieces.add(new Piece(Pieces.BISHOP, 2, 0, 'B'));
-        pieces.add(new Piece(Pieces.QUEEN, 3, 0, 'B'));
-        pieces.add(new Piece(Pieces.KING, 4, 0, 'B'));
-        pieces.add(new Piece(Pieces.BISHOP, 5, 0, 'B'));
-        pieces.add(new Piece(Pieces.KNIGHT, 6, 0, 'B'));
-        pieces.add(new Piece(Pieces.ROOK, 7, 0, 'B'));
+        addPiece(new Piece(Pieces.ROOK, 0, 0, 'B'));
+        addPiece(new Piece(Pieces.KNIGHT, 1, 0, 'B'));
+        addPiece(new Piece(Pieces.BISHOP, 2, 0, 'B'));
+        addPiece(new Piece(Pieces.QUEEN, 3, 0, 'B'));
+        addPiece(new Piece(Pieces.KING, 4, 0, 'B'));
+        addPiece(new Piece(Pieces.BISHOP, 5, 0, 'B'));
+        addPiece(new Piece(Pieces.KNIGHT, 6, 0, 'B'));
+        addPiece(new Piece(Pieces.ROOK, 7, 0, 'B'));
         for (int i = 0; i < WIDTH; i++) {
-            pieces.add(new Piece(Pieces.PAWN, i, 1, 'B'));
+            addPiece(new Piece(Pieces.PAWN, i, 1, 'B'));
         }
 
         //White pieces
         for (int i = 0; i < WIDTH; i++) {
-            pieces.add(new Piece(Pieces.PAWN, i, HEIGHT-2, 'W'));
+            addPiece(new Piece(Pieces.PAWN, i, HEIGHT-2, 'W'));
         }
-        pieces.add(new Piece(Pieces.ROOK, 0, HEIGHT-1, 'W'));
-        pieces.add(new Piece(Pieces.KNIGHT, 1, HEIGHT-1, 'W'));
-        pieces.add(new Piece(Pieces.BISHOP, 2, HEIGHT-1, 'W'));
-        pieces.add(new Piece(Pieces.QUEEN, 3, HEIGHT-1, 'W'));
-        pieces.add(new Piece(Pieces.KING, 4, HEIGHT-1, 'W'));
-        pieces.add(new Piece(Pieces.BISHOP, 5, HEIGHT-1, 'W'));
-        pieces.add(new Piece(Pieces.KNIGHT, 6, HEIGHT-1, 'W'));
-        pieces.add(new Piece(Pieces.ROOK, 7, HEIGHT-1, 'W'));
+        addPiece(new Piece(Pieces.ROOK, 0, HEIGHT-1, 'W'));
+        addPiece(new Piece(Pieces.KNIGHT, 1, HEIGHT-1, 'W'));
+        addPiece(new Piece(Pieces.BISHOP, 2, HEIGHT-1, 'W'));
+        addPiece(new Piece(Pieces.QUEEN, 3, HEIGHT-1, 'W'));
+        addPiece(new Piece(Pieces.KING, 4, HEIGHT-1, 'W'));
+        addPiece(new Piece(Pieces.BISHOP, 5, HEIGHT-1, 'W'));
+        addPiece(new Piece(Pieces.KNIGHT, 6, HEIGHT-1, 'W'));
+        addPiece(new Piece(Pieces.ROOK, 7, HEIGHT-1, 'W'));
+    }
+
+    /**
+     * Creates a board with the position of the FEN string
+     */
+    public static Board fromFen(String fen) {
+        if (fen == null) {
+            throw new IllegalArgumentException("FEN must not be null");
+        }
+        return new Board(fen);
+    }
+
+    /**
+     * @return the current position as a FEN string
+     */
+    public String toFen() {
+        return position.toFen();
+    }
+
+    /**
+     * Replaces the position on this board by the FEN position.
+     * The FEN string is parsed straight into the bitboards and the piece objects already on the board are reused,
+     * so loading many positions one after another into one board allocates almost nothing
+     */
+    public void setFen(String fen) {
+        position.setFen(fen);
+        placePieces();
+        lastMove = Move.NONE;
+        historySize = 0;
+        startFen = fen;
+        reversed = position.getSideToMove() == Position.BLACK;
+        updateCoveredFields();
+        updateStatus();
+    }
+
+    /**
+     * Creates the pieces of the FEN position
+     */
+    private void createPieces(String fen) {
+        position.setFen(fen);
+        placePieces();
+    }
+
+    /**
+     * Puts a piece object on every occupied square of the bitboards, the objects already in pieces are reused
+     */
+    private void placePieces() {
+        for (Piece[] column : boardPlacement) {
+            Arrays.fill(column, null);
+        }
+        int count = 0;
+        long occupied = position.getOccupied();
+        while (occupied != 0) {
+            int square = Long.numberOfTrailingZeros(occupied);
+            Pieces name = Position.type(position.typeAt(square));
+            char role = Position.role(position.colourAt(square));
+            Piece piece = count < pieces.size() ? pieces.get(count) : null;
+            if (piece == null) {
+                piece = new Piece(name, Position.fileOf(square), Position.rankOf(square), role);
+            } else {
+                piece.setName(name);
+                piece.setPosX(Position.fileOf(square));
+                piece.setPosY(Position.rankOf(square));
+                piece.setRole(role);
+                piece.setMoved(false);
+            }
+            if (count < pieces.size()) {
+                pieces.set(count, piece);
+            } else {
+                pieces.add(piece);
+            }
+            boardPlacement[piece.getPosX()][piece.getPosY()] = piece;
+            count++;
+            occupied &= occupied - 1;
+        }
+        pieces.subList(count, pieces.size()).clear();
+    }
+
+    /**
+     * Adds a piece to the list, the board and the bitboards
+     */
+    private void addPiece(Piece piece) {
+        pieces.add(piece);
+        boardPlacement[piece.getPosX()][piece.getPosY()] = piece;
+        position.putPiece(Position.colour(piece.getRole()), piece.getName().ordinal(), Position.square(piece.getPosX(), piece.getPosY()));
     }
 
     /**
@@ -78,27 +197,41 @@ public class Board {
      */
     public void updateBoard() {
         reverseBoard();
-        updatePlacement();
+        updateStatus();
+    }
 
+    /**
+     * Checks both colours for check and mate and the position for a draw
+     */
+    private void updateStatus() {
         blackChecked = isChecked('B');
         blackMated = isMated('B');
         whiteChecked = isChecked('W');
         whiteMated = isMated('W');
-
-        turn++;
-        System.out.println(turn);
+        drawn = !blackMated && !whiteMated && (isStalemate() || isThreefoldRepetition()
+                || position.isFiftyMoveDraw() || position.isInsufficientMaterial());
     }
 
     /**
-     * Assigns pieces to the board
+     * Assigns pieces to the board and rebuilds the bitboards from scratch
      */
     public void updatePlacement() {
         boardPlacement = new Piece[WIDTH][HEIGHT];
+        position.clear();
         for (Piece piece : pieces) {
             if (piece != null) {
                 boardPlacement[piece.getPosX()][piece.getPosY()] = piece;
+                position.putPiece(Position.colour(piece.getRole()), piece.getName().ordinal(), Position.square(piece.getPosX(), piece.getPosY()));
             }
         }
+        updateCoveredFields();
+    }
+
+    /**
+     * Recounts the attacks and updates the covered fields of every piece on the board
+     */
+    private void updateCoveredFields() {
+        attackMap.rebuild(position);
         for (Piece piece : pieces) {
             if (piece != null) {
                 updateCoveredFields(piece);
@@ -106,6 +239,18 @@ public class Board {
         }
     }
 
+    /**
+     * Updates the covered fields of the pieces on the given squares only
+     */
+    private void updateCoveredFields(long squares) {
+        squares &= position.getOccupied();
+        while (squares != 0) {
+            int square = Long.numberOfTrailingZeros(squares);
+            updateCoveredFields(boardPlacement[Position.fileOf(square)][Position.rankOf(square)]);
+            squares &= squares - 1;
+        }
+    }
+
     public void printBoard() {
         for (int i = 0; i < HEIGHT; i++) {
             for (int j = 0; j < WIDTH; j++) {
@@ -124,122 +269,140 @@ public class Board {
     }
 
     public Piece getPiece(int x, int y) {
+        if (position.isEmpty(Position.square(x, y))) {
+            return null;
+        }
         return boardPlacement[x][y];
     }
 
+    /**
+     * Moves the piece object on the board, the bitboards are updated by Position.makeMove
+     */
+    private void movePiece(Piece piece, int newX, int newY) {
+        boardPlacement[piece.getPosX()][piece.getPosY()] = null;
+        boardPlacement[newX][newY] = piece;
+        piece.setPosX(newX);
+        piece.setPosY(newY);
+        piece.setMoved(true);
+    }
+
+    /**
+     * Takes the piece object off the board, leaving an empty slot in pieces
+     */
+    private void capturePiece(Piece piece) {
+        boardPlacement[piece.getPosX()][piece.getPosY()] = null;
+        pieces.set(pieces.indexOf(piece), null);
+    }
+
     /**
      * If the move is valid (the role is according to the turn and the rules are respected), executes it.
-     * moves piece from starting coords to new coords
+     * moves piece from starting coords to new coords, a pawn reaching the last rank becomes a queen until promotePawn is called
      *
      * @param force selects whether to do condition checks
      */
     public void setPiece(int currentX, int currentY, int newX, int newY, boolean force) {
+        int move = findMove(currentX, currentY, newX, newY, force);
+        if (move != Move.NONE) {
+            executeMove(move);
 
-        //FLAGS
-        enPassant = false;
-        boolean tempPassant;
-        castling = false;
-        boolean tempCastling;
-        pawnCrossed = false;
-        boolean tempPawnCrossed;
-
-        for (Piece piece : pieces) {
-            //piece != null required because of checks
-            if (piece != null) {
-                if (piece.getPosX() == currentX && piece.getPosY() == currentY) { //Gets the piece from the array
-                    if (force || (!reversed && piece.getRole() == 'W') || (reversed && piece.getRole() == 'B')) { //Checks player turn
-                        if (force || determineMoveRules(piece, newX, newY)) { //Checks if the piece move corresponds to the rules
-                            tempPassant = enPassant;
-                            tempCastling = castling;
-                            tempPawnCrossed = pawnCrossed;
-                            if (force || castling || !futureMoveChecked(piece, newX, newY)) { //Checks if there is no check after the move
-
-                                //if en Passant is active
-                                if (tempPassant) {
-                                    if (piece.getRole() == 'W') {
-                                        pieces.set(pieces.indexOf(getPiece(newX, newY+1)), null);
-                                    }
-                                    if (piece.getRole() == 'B') {
-                                        pieces.set(pieces.indexOf(getPiece(newX, newY-1)), null);
-                                    }
-                                }
-
-                                //if castling is active
-                                if (tempCastling) {
-                                    doCastling(piece, getPiece(newX, newY));
-                                } else {
-                                    if (getPiece(newX, newY) != null) {
-                                        pieces.set(pieces.indexOf(getPiece(newX, newY)), null);
-                                    }
-
-                                    piece.setPosX(newX);
-                                    piece.setPosY(newY);
-                                }
-
-                                //Requires extra input from player
-                                try {
-                                    if (!force) {
-                                        if (tempPawnCrossed) {
-                                            pipedWriter.write(1);
-                                            pipedWriter.flush();
-                                        } else {
-                                            pipedWriter.write(0);
-                                            pipedWriter.flush();
-                                        }
-                                    }
-                                } catch (IOException e) {
-                                    e.printStackTrace();
-                                }
-
-                                if (!force) {
-                                    updateBoard();
-                                } else {
-                                    piece.setMoved(true);
-                                    updatePlacement();
-                                }
-
-                                return;
-                            }
-                        }
-                    }
-                }
+            if (!force) {
+                updateBoard();
             }
-        }
-        try {
-            pipedWriter.write(0);
-            pipedWriter.flush();
-        } catch (IOException e) {
-            e.printStackTrace();
+            return;
         }
         System.out.println("INVALID MOVE!");
     }
 
     /**
-     * Determines if a piece is allowed to move according to rules
+     * Plays a packed move of the side to move, promotion piece included, without asking for any input
+     * @return whether the move was legal and got played
      */
-    public boolean determineMoveRules(Piece piece, int newX, int newY) {
+    public boolean playMove(int move) {
+        MoveGenerator.generateLegalMoves(position, moveList);
+        if (move == Move.NONE || !moveList.contains(move)) {
+            return false;
+        }
+        executeMove(move);
+        updateBoard();
+        return true;
+    }
 
-        switch (piece.getName()) {
-            case PAWN -> {
-                return pawnMovement(piece, newX, newY);
-            }
-            case BISHOP -> {
-                return bishopMovement(piece, newX, newY);
-            }
-            case ROOK -> {
-                return rookMovement(piece, newX, newY);
+    /**
+     * Looks up the legal move of the side to move between the two squares.
+     * Castling is chosen by moving the king onto the rook or the rook onto the king,
+     * a pawn reaching the last rank becomes a queen until promotePawn picks its piece
+     * @param force skips the turn and rule checks
+     * @return packed move, Move.NONE if there is no such move
+     */
+    private int findMove(int currentX, int currentY, int newX, int newY, boolean force) {
+        Piece piece = getPiece(currentX, currentY);
+        if (piece == null) {
+            return Move.NONE;
+        }
+        int from = Position.square(currentX, currentY);
+        int to = Position.square(newX, newY);
+
+        Piece target = getPiece(newX, newY);
+        if (target != null && target.getRole() == piece.getRole()) {
+            Piece king = piece.getName() == Pieces.KING ? piece : target;
+            Piece rook = piece.getName() == Pieces.KING ? target : piece;
+            if (king.getName() != Pieces.KING || rook.getName() != Pieces.ROOK || king.getPosY() != rook.getPosY()) {
+                return Move.NONE;
             }
-            case KNIGHT -> {
-                return knightMovement(piece, newX, newY);
+            from = Position.square(king.getPosX(), king.getPosY());
+            to = Position.square(rook.getPosX() < king.getPosX() ? king.getPosX() - 2 : king.getPosX() + 2, king.getPosY());
+        }
+
+        if (force) {
+            boolean crossed = piece.getName() == Pieces.PAWN && (newY == 0 || newY == HEIGHT-1);
+            return position.encodeMove(from, to, crossed ? Position.QUEEN : -1);
+        }
+
+        MoveGenerator.generateLegalMoves(position, moveList);
+        for (int i = 0; i < moveList.size(); i++) {
+            int move = moveList.get(i);
+            if (Move.from(move) == from && Move.to(move) == to
+                    && (!Move.isPromotion(move) || Move.promotion(move) == Position.QUEEN)) {
+                return move;
             }
-            case QUEEN -> {
-                return queenMovement(piece, newX, newY);
+        }
+        return Move.NONE;
+    }
+
+    /**
+     * Moves the piece objects along with the move and executes it on the bitboards.
+     * Only the attacks and covered fields of the pieces the move affects are updated
+     */
+    private void executeMove(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        long affected = attackMap.affectedSquares(position, move);
+        attackMap.remove(position, affected);
+        Piece piece = boardPlacement[Position.fileOf(from)][Position.rankOf(from)];
+
+        if (Move.isCastling(move)) {
+            int rookX = to > from ? WIDTH-1 : 0;
+            doCastling(piece, boardPlacement[rookX][Position.rankOf(from)]);
+        } else {
+            if (Move.isEnPassant(move)) {
+                capturePiece(boardPlacement[Position.fileOf(to)][Position.rankOf(from)]);
+            } else if (Move.isCapture(move)) {
+                capturePiece(boardPlacement[Position.fileOf(to)][Position.rankOf(to)]);
             }
-            case KING -> {
-                return kingMovement(piece, newX, newY);
+            movePiece(piece, Position.fileOf(to), Position.rankOf(to));
+            if (Move.isPromotion(move)) {
+                piece.setName(Position.type(Move.promotion(move)));
             }
         }
-        return false;
+
+        position.makeMove(move, lastUndo);
+        lastMove = move;
+        if (historySize == history.length) {
+            history = Arrays.copyOf(history, history.length * 2);
+        }
+        history[historySize++] = move;
+        attackMap.add(position, affected);
+        updateCoveredFields(affected);
     }
 
     /**
@@ -263,15 +426,11 @@ public class Board {
      * @return king piece;
      */
     public Piece findKing(char role) {
-        for (Piece piece : pieces) {
-            //piece != null required because of checks
-            if (piece != null) {
-                if (piece.getRole() == role && piece.getName() == Pieces.KING) {
-                    return piece;
-                }
-            }
+        int square = position.kingSquare(Position.colour(role));
+        if (square == -1) {
+            return null;
         }
-        return null;
+        return boardPlacement[Position.fileOf(square)][Position.rankOf(square)];
     }
 
     /**
@@ -279,126 +438,48 @@ public class Board {
      * @param role != null
      */
     public boolean isChecked(char role) {
-        int x = findKing(role).getPosX();
-        int y = findKing(role).getPosY();
-        for (Piece piece : pieces) {
-            //piece != null required because of checks
-            if (piece != null) {
-                for (Integer[] integers : piece.getCoveredFields()) {
-                    if (piece.getRole() != role && integers[0] == x && integers[1] == y) {
-                        return true;
-                    }
-                }
-            }
-        }
-        return false;
+        int colour = Position.colour(role);
+        int king = position.kingSquare(colour);
+        return king != -1 && attackMap.isAttacked(king, 1 - colour);
     }
 
     /**
      * Check if after making a particular move, the owner piece gets a check (invalid!)
      */
     public boolean futureMoveChecked(Piece piece, int newX, int newY) {
+        int move = position.encodeMove(Position.square(piece.getPosX(), piece.getPosY()), Position.square(newX, newY), -1);
+        return leavesChecked(move, Position.colour(piece.getRole()));
+    }
 
-        Piece tempPiece = null;
-        int index = -1;
-
-        int x = piece.getPosX();
-        int y = piece.getPosY();
-
-        if (getPiece(newX, newY) != null) {
-            tempPiece = getPiece(newX, newY);
-            index = pieces.indexOf(getPiece(newX, newY));
-        }
-
-        setPiece(x, y, newX, newY, true);
-
-
-        if (isChecked(piece.getRole())) {
-            setPiece(newX, newY, x, y, true);
-            if (index != -1 && tempPiece != null) {
-                boardPlacement[newX][newY] = tempPiece;
-                pieces.set(index, getPiece(newX, newY));
-            }
-            return true;
-        }
-
-        setPiece(newX, newY, x, y, true);
-        if (index != -1 && tempPiece != null) {
-            boardPlacement[newX][newY] = tempPiece;
-            pieces.set(index, getPiece(newX, newY));
-        }
-        return false;
+    /**
+     * Makes the move, checks the king of the colour and takes the move back
+     */
+    private boolean leavesChecked(int move, int colour) {
+        position.makeMove(move, undo);
+        boolean checked = position.isChecked(colour);
+        position.unmakeMove(move, undo);
+        return checked;
     }
 
     /**
-     * if there's a check, simulates all possible moves to see if it's possible to avoid it
+     * Checks whether the role is in check without any legal move left
      * @param role select which role's mate to check
      * @return whether there's a mate
      */
     public boolean isMated(char role) {
 
         if (isChecked(role)) {
+            int colour = Position.colour(role);
+            if (colour == position.getSideToMove()) {
+                MoveGenerator.generateLegalMoves(position, moveList);
+                return moveList.isEmpty();
+            }
 
-            Piece tempPiece;
-            int index;
-
-            int x, y;
-
-            for (Piece piece : pieces) {
-                if (piece != null) {
-
-                    index = -1;
-                    tempPiece = null;
-                    x = piece.getPosX();
-                    y = piece.getPosY();
-
-                    ArrayList<Integer[]> moves = new ArrayList<>();
-
-                    if (piece.getRole() == role) {
-                        //if pawn, gets the possible moves
-                        if (piece.getName() == Pieces.PAWN) {
-                            moves = getPawnMovement(piece);
-                        }
-                        for (Integer[] integers : piece.getCoveredFields()) {
-                            if (determineMoveRules(piece, integers[0], integers[1])) {
-                                moves.add(integers);
-                            }
-                        }
-
-                        for (Integer[] integers : moves) {
-
-                            //If piece is to be attacked, store its copy
-                            if (getPiece(integers[0], integers[1]) != null) {
-                                tempPiece = getPiece(integers[0], integers[1]);
-                                index = pieces.indexOf(getPiece(integers[0], integers[1]));
-                            }
-
-                            //make test move
-                            setPiece(x, y, integers[0], integers[1], true);
-
-                            if (!isChecked(role)) {
-
-                                //undo test move
-                                setPiece(integers[0], integers[1], x, y, true);
-                                //insert copy back into array
-                                if (index != -1 && tempPiece != null) {
-                                    boardPlacement[integers[0]][integers[1]] = tempPiece;
-                                    pieces.set(index, getPiece(integers[0], integers[1]));
-                                }
-                                updatePlacement();
-                                return false;
-                            }
-
-                            //undo test move
-                            setPiece(integers[0], integers[1], x, y, true);
-                            //insert copy back into array
-                            if (index != -1 && tempPiece != null) {
-                                boardPlacement[integers[0]][integers[1]] = tempPiece;
-                                pieces.set(index, getPiece(integers[0], integers[1]));
-                            }
-                            updatePlacement();
-                        }
-                    }
+            //the side that is not to move only gets here through forced moves, its moves are tried one by one
+            MoveGenerator.generateMoves(position, colour, moveList);
+            for (int i = 0; i < moveList.size(); i++) {
+                if (!leavesChecked(moveList.get(i), colour)) {
+                    return false;
                 }
             }
             return true;
@@ -406,739 +487,181 @@ public class Board {
         return false;
     }
 
-    public ArrayList<Integer[]> getPawnCoveredFields(Piece piece) {
-        ArrayList<Integer[]> result = new ArrayList<>();
+    /**
+     * Checks whether the side to move has no legal move without being in check
+     */
+    public boolean isStalemate() {
+        MoveGenerator.generateLegalMoves(position, moveList);
+        return moveList.isEmpty() && !position.isChecked(position.getSideToMove());
+    }
 
-        if (piece.getRole() == 'W') {
-            if (!(piece.getPosX() - 1 < 0 || piece.getPosY() - 1 < 0) && !(piece.getPosX() - 1 > WIDTH-1 || piece.getPosY() - 1 > HEIGHT-1)) {
-                result.add(new Integer[]{piece.getPosX() - 1, piece.getPosY() - 1});
-            }
+    /**
+     * Checks whether the position is on the board for the third time, with the same side to move and the same rights
+     */
+    public boolean isThreefoldRepetition() {
+        return position.repetitions() >= 2;
+    }
 
-            if (!(piece.getPosX() + 1 < 0 || piece.getPosY() - 1 < 0) && !(piece.getPosX() + 1 > WIDTH-1 || piece.getPosY() - 1 > HEIGHT-1)) {
-                result.add(new Integer[]{piece.getPosX() + 1, piece.getPosY() - 1});
-            }
-        } else if (piece.getRole() == 'B') {
-            if (!(piece.getPosX() + 1 < 0 || piece.getPosY() + 1 < 0) && !(piece.getPosX() + 1 > WIDTH-1 || piece.getPosY() + 1 > HEIGHT-1)) {
-                result.add(new Integer[]{piece.getPosX() + 1, piece.getPosY() + 1});
-            }
+    public boolean isFiftyMoveRule() {
+        return position.isFiftyMoveDraw();
+    }
 
-            if (!(piece.getPosX() - 1 < 0 || piece.getPosY() + 1 < 0) && !(piece.getPosX() - 1 > WIDTH-1 || piece.getPosY() + 1 > HEIGHT-1)) {
-                result.add(new Integer[]{piece.getPosX() - 1, piece.getPosY() + 1});
-            }
-        }
+    public boolean isInsufficientMaterial() {
+        return position.isInsufficientMaterial();
+    }
 
-        return result;
+    public ArrayList<Integer[]> getPawnCoveredFields(Piece piece) {
+        //pawns cover both diagonals, whoever stands there
+        return toFields(position.attacks(Position.colour(piece.getRole()), Position.PAWN, Position.square(piece.getPosX(), piece.getPosY())));
     }
 
     public ArrayList<Integer[]> getBishopCoveredFields(Piece piece) {
-        ArrayList<Integer[]> result = new ArrayList<>();
-
-        int x = piece.getPosX();
-        int y = piece.getPosY();
-
-        while (!(x < 0 || x+1 > WIDTH-1) && !(y < 0 || y+1 > HEIGHT-1)) {
-            if (getPiece(x+1, y+1) == null) {
-                result.add(new Integer[]{x+1, y+1});
-            }
-            if (getPiece(x+1, y+1) != null && getPiece(x+1, y+1).getRole() == piece.getOpposingRole()) {
-                result.add(new Integer[]{x+1, y+1});
-                break;
-            }
-            if (getPiece(x+1, y+1) != null && getPiece(x+1, y+1).getRole() == piece.getRole()) {
-                break;
-            }
-            x++;
-            y++;
-        }
-
-        x = piece.getPosX();
-        y = piece.getPosY();
-
-        while (!(x-1 < 0 || x > WIDTH-1) && !(y < 0 || y+1 > HEIGHT-1)) {
-            if (getPiece(x-1, y+1) == null) {
-                result.add(new Integer[]{x-1, y+1});
-            }
-            if (getPiece(x-1, y+1) != null && getPiece(x-1, y+1).getRole() == piece.getOpposingRole()) {
-                result.add(new Integer[]{x-1, y+1});
-                break;
-            }
-            if (getPiece(x-1, y+1) != null && getPiece(x-1, y+1).getRole() == piece.getRole()) {
-                break;
-            }
-            x--;
-            y++;
-        }
-
-        x = piece.getPosX();
-        y = piece.getPosY();
-
-        while (!(x-1 < 0 || x > WIDTH-1) && !(y-1 < 0 || y > HEIGHT-1)) {
-            if (getPiece(x-1, y-1) == null) {
-                result.add(new Integer[]{x-1, y-1});
-            }
-            if (getPiece(x-1, y-1) != null && getPiece(x-1, y-1).getRole() == piece.getOpposingRole()) {
-                result.add(new Integer[]{x-1, y-1});
-                break;
-            }
-            if (getPiece(x-1, y-1) != null && getPiece(x-1, y-1).getRole() == piece.getRole()) {
-                break;
-            }
-            x--;
-            y--;
-        }
-
-        x = piece.getPosX();
-        y = piece.getPosY();
-
-        while (!(x < 0 || x+1 > WIDTH-1) && !(y-1 < 0 || y > HEIGHT-1)) {
-            if (getPiece(x+1, y-1) == null) {
-                result.add(new Integer[]{x+1, y-1});
-            } else if (getPiece(x+1, y-1) != null && getPiece(x+1, y-1).getRole() == piece.getOpposingRole()) {
-                result.add(new Integer[]{x+1, y-1});
-                break;
-            } else if (getPiece(x+1, y-1) != null && getPiece(x+1, y-1).getRole() == piece.getRole()) {
-                break;
-            }
-            x++;
-            y--;
-        }
-        return result;
+        return getCoveredFields(piece, Position.BISHOP);
     }
 
     public ArrayList<Integer[]> getRookCoveredFields(Piece piece) {
-        ArrayList<Integer[]> result = new ArrayList<>();
-
-        int x = piece.getPosX();
-        int y = piece.getPosY();
-
-        while (!(x+1 < 0 || x+1 > WIDTH-1) && !(y < 0 || y > HEIGHT-1)) {
-            if (getPiece(x+1, y) == null) {
-                result.add(new Integer[]{x+1, y});
-            }
-            if (getPiece(x+1, y) != null && getPiece(x+1, y).getRole() == piece.getOpposingRole()) {
-                result.add(new Integer[]{x+1, y});
-                break;
-            }
-            if (getPiece(x+1, y) != null && getPiece(x+1, y).getRole() == piece.getRole()) {
-                break;
-            }
-            x++;
-        }
-
-        x = piece.getPosX();
-
-        while (!(x-1 < 0 || x-1 > WIDTH-1) && !(y < 0 || y > HEIGHT-1)) {
-            if (getPiece(x-1, y) == null) {
-                result.add(new Integer[]{x-1, y});
-            }
-            if (getPiece(x-1, y) != null && getPiece(x-1, y).getRole() == piece.getOpposingRole()) {
-                result.add(new Integer[]{x-1, y});
-                break;
-            }
-            if (getPiece(x-1, y) != null && getPiece(x-1, y).getRole() == piece.getRole()) {
-                break;
-            }
-            x--;
-        }
-
-        x = piece.getPosX();
-
-        while (!(x < 0 || x > WIDTH-1) && !(y-1 < 0 || y-1 > HEIGHT-1)) {
-            if (getPiece(x, y-1) == null) {
-                result.add(new Integer[]{x, y-1});
-            }
-            if (getPiece(x, y-1) != null && getPiece(x, y-1).getRole() == piece.getOpposingRole()) {
-                result.add(new Integer[]{x, y-1});
-                break;
-            }
-            if (getPiece(x, y-1) != null && getPiece(x, y-1).getRole() == piece.getRole()) {
-                break;
-            }
-            y--;
-        }
-
-        y = piece.getPosY();
-
-        while (!(x < 0 || x > WIDTH-1) && !(y+1 < 0 || y+1 > HEIGHT-1)) {
-            if (getPiece(x, y+1) == null) {
-                result.add(new Integer[]{x, y+1});
-            }
-            if (getPiece(x, y+1) != null && getPiece(x, y+1).getRole() == piece.getOpposingRole()) {
-                result.add(new Integer[]{x, y+1});
-                break;
-            }
-            if (getPiece(x, y+1) != null && getPiece(x, y+1).getRole() == piece.getRole()) {
-                break;
-            }
-            y++;
-        }
-
-        return result;
+        return getCoveredFields(piece, Position.ROOK);
     }
 
     public ArrayList<Integer[]> getKnightCoveredFields(Piece piece) {
-        ArrayList<Integer[]> result = new ArrayList<>();
-
-        if (!(piece.getPosX()+2 < 0 || piece.getPosX()+2 > WIDTH-1) && !(piece.getPosY()+1 < 0 || piece.getPosY()+1 > HEIGHT-1)) {
-            if ((getPiece(piece.getPosX()+2, piece.getPosY()+1) != null && getPiece(piece.getPosX()+2, piece.getPosY()+1).getRole() != piece.getRole())
-                    || getPiece(piece.getPosX()+2, piece.getPosY()+1) == null) {
-                result.add(new Integer[]{piece.getPosX()+2, piece.getPosY()+1});
-            }
-        }
-        if (!(piece.getPosX()+2 < 0 || piece.getPosX()+2 > WIDTH-1) && !(piece.getPosY()-1 < 0 || piece.getPosY()-1 > HEIGHT-1)) {
-            if ((getPiece(piece.getPosX()+2, piece.getPosY()-1) != null && getPiece(piece.getPosX()+2, piece.getPosY()-1).getRole() != piece.getRole())
-                    || getPiece(piece.getPosX()+2, piece.getPosY()-1) == null) {
-                result.add(new Integer[]{piece.getPosX()+2, piece.getPosY()-1});
-            }
-        }
-
-        if (!(piece.getPosX()-2 < 0 || piece.getPosX()-2 > WIDTH-1) && !(piece.getPosY()+1 < 0 || piece.getPosY()+1 > HEIGHT-1)) {
-            if ((getPiece(piece.getPosX()-2, piece.getPosY()+1) != null && getPiece(piece.getPosX()-2, piece.getPosY()+1).getRole() != piece.getRole())
-                    || getPiece(piece.getPosX()-2, piece.getPosY()+1) == null) {
-                result.add(new Integer[]{piece.getPosX()-2, piece.getPosY()+1});
-            }
-        }
-        if (!(piece.getPosX()-2 < 0 || piece.getPosX()-2 > WIDTH-1) && !(piece.getPosY()-1 < 0 || piece.getPosY()-1 > HEIGHT-1)) {
-            if ((getPiece(piece.getPosX()-2, piece.getPosY()-1) != null && getPiece(piece.getPosX()-2, piece.getPosY()-1).getRole() != piece.getRole())
-                    || getPiece(piece.getPosX()-2, piece.getPosY()-1) == null) {
-                result.add(new Integer[]{piece.getPosX()-2, piece.getPosY()-1});
-            }
-        }
-
-        if (!(piece.getPosX()+1 < 0 || piece.getPosX()+1 > WIDTH-1) && !(piece.getPosY()+2 < 0 || piece.getPosY()+2 > HEIGHT-1)) {
-            if ((getPiece(piece.getPosX()+1, piece.getPosY()+2) != null && getPiece(piece.getPosX()+1, piece.getPosY()+2).getRole() != piece.getRole())
-                    || getPiece(piece.getPosX()+1, piece.getPosY()+2) == null) {
-                result.add(new Integer[]{piece.getPosX()+1, piece.getPosY()+2});
-            }
-        }
-        if (!(piece.getPosX()+1 < 0 || piece.getPosX()+1 > WIDTH-1) && !(piece.getPosY()-2 < 0 || piece.getPosY()-2 > HEIGHT-1)) {
-            if ((getPiece(piece.getPosX()+1, piece.getPosY()-2) != null && getPiece(piece.getPosX()+1, piece.getPosY()-2).getRole() != piece.getRole())
-                    || getPiece(piece.getPosX()+1, piece.getPosY()-2) == null) {
-                result.add(new Integer[]{piece.getPosX()+1, piece.getPosY()-2});
-            }
-        }
-
-        if (!(piece.getPosX()-1 < 0 || piece.getPosX()-1 > WIDTH-1) && !(piece.getPosY()+2 < 0 || piece.getPosY()+2 > HEIGHT-1)) {
-            if ((getPiece(piece.getPosX()-1, piece.getPosY()+2) != null && getPiece(piece.getPosX()-1, piece.getPosY()+2).getRole() != piece.getRole())
-                    || getPiece(piece.getPosX()-1, piece.getPosY()+2) == null) {
-                result.add(new Integer[]{piece.getPosX()-1, piece.getPosY()+2});
-            }
-        }
-        if (!(piece.getPosX()-1 < 0 || piece.getPosX()-1 > WIDTH-1) && !(piece.getPosY()-2 < 0 || piece.getPosY()-2 > HEIGHT-1)) {
-            if ((getPiece(piece.getPosX()-1, piece.getPosY()-2) != null && getPiece(piece.getPosX()-1, piece.getPosY()-2).getRole() != piece.getRole())
-                    || getPiece(piece.getPosX()-1, piece.getPosY()-2) == null) {
-                result.add(new Integer[]{piece.getPosX()-1, piece.getPosY()-2});
-            }
-        }
-        return result;
+        return getCoveredFields(piece, Position.KNIGHT);
     }
 
     public ArrayList<Integer[]> getQueenCoveredFields(Piece piece) {
-        ArrayList<Integer[]> result = new ArrayList<>();
-
-        result.addAll(getBishopCoveredFields(piece));
-        result.addAll(getRookCoveredFields(piece));
-
-        return result;
+        return getCoveredFields(piece, Position.QUEEN);
     }
 
     public ArrayList<Integer[]> getKingCoveredFields(Piece piece) {
-        ArrayList<Integer[]> result = new ArrayList<>();
-
-        if (!(piece.getPosX()-1 < 0 || piece.getPosX()-1 > WIDTH-1) && !(piece.getPosY()-1 < 0 || piece.getPosY()-1 > HEIGHT-1)) {
-            if ((getPiece(piece.getPosX()-1, piece.getPosY()-1) != null && getPiece(piece.getPosX()-1, piece.getPosY()-1).getRole() != piece.getRole())
-                    || getPiece(piece.getPosX()-1, piece.getPosY()-1) == null) {
-                result.add(new Integer[]{piece.getPosX()-1, piece.getPosY()-1});
-            }
-        }
-
-        if (!(piece.getPosX() < 0 || piece.getPosX() > WIDTH-1) && !(piece.getPosY()-1 < 0 || piece.getPosY()-1 > HEIGHT-1)) {
-            if ((getPiece(piece.getPosX(), piece.getPosY()-1) != null && getPiece(piece.getPosX(), piece.getPosY()-1).getRole() != piece.getRole())
-                    || getPiece(piece.getPosX(), piece.getPosY()-1) == null) {
-                result.add(new Integer[]{piece.getPosX(), piece.getPosY()-1});
-            }
-        }
-
-        if (!(piece.getPosX()+1 < 0 || piece.getPosX()+1 > WIDTH-1) && !(piece.getPosY()-1 < 0 || piece.getPosY()-1 > HEIGHT-1)) {
-            if ((getPiece(piece.getPosX()+1, piece.getPosY()-1) != null && getPiece(piece.getPosX()+1, piece.getPosY()-1).getRole() != piece.getRole())
-                    || getPiece(piece.getPosX()+1, piece.getPosY()-1) == null) {
-                result.add(new Integer[]{piece.getPosX()+1, piece.getPosY()-1});
-            }
-        }
-
-        if (!(piece.getPosX()-1 < 0 || piece.getPosX()-1 > WIDTH-1) && !(piece.getPosY() < 0 || piece.getPosY() > HEIGHT-1)) {
-            if ((getPiece(piece.getPosX()-1, piece.getPosY()) != null && getPiece(piece.getPosX()-1, piece.getPosY()).getRole() != piece.getRole())
-                    || getPiece(piece.getPosX()-1, piece.getPosY()) == null) {
-                result.add(new Integer[]{piece.getPosX()-1, piece.getPosY()});
-            }
-        }
-
-        if (!(piece.getPosX()+1 < 0 || piece.getPosX()+1 > WIDTH-1) && !(piece.getPosY() < 0 || piece.getPosY() > HEIGHT-1)) {
-            if ((getPiece(piece.getPosX()+1, piece.getPosY()) != null && getPiece(piece.getPosX()+1, piece.getPosY()).getRole() != piece.getRole())
-                    || getPiece(piece.getPosX()+1, piece.getPosY()) == null) {
-                result.add(new Integer[]{piece.getPosX()+1, piece.getPosY()});
-            }
-        }
-
-        if (!(piece.getPosX()-1 < 0 || piece.getPosX()-1 > WIDTH-1) && !(piece.getPosY()+1 < 0 || piece.getPosY()+1 > HEIGHT-1)) {
-            if ((getPiece(piece.getPosX()-1, piece.getPosY()+1) != null && getPiece(piece.getPosX()-1, piece.getPosY()+1).getRole() != piece.getRole())
-                    || getPiece(piece.getPosX()-1, piece.getPosY()+1) == null) {
-                result.add(new Integer[]{piece.getPosX()-1, piece.getPosY()+1});
-            }
-        }
+        return getCoveredFields(piece, Position.KING);
+    }
 
-        if (!(piece.getPosX() < 0 || piece.getPosX() > WIDTH-1) && !(piece.getPosY()+1 < 0 || piece.getPosY()+1 > HEIGHT-1)) {
-            if ((getPiece(piece.getPosX(), piece.getPosY()+1) != null && getPiece(piece.getPosX(), piece.getPosY()+1).getRole() != piece.getRole())
-                    || getPiece(piece.getPosX(), piece.getPosY()+1) == null) {
-                result.add(new Integer[]{piece.getPosX(), piece.getPosY()+1});
-            }
-        }
+    /**
+     * Gets the squares the piece would cover moving as the given type, squares of its own colour excluded
+     */
+    private ArrayList<Integer[]> getCoveredFields(Piece piece, int type) {
+        int colour = Position.colour(piece.getRole());
+        long fields = position.attacks(colour, type, Position.square(piece.getPosX(), piece.getPosY()));
+        return toFields(fields & ~position.getOccupancy(colour));
+    }
 
-        if (!(piece.getPosX()+1 < 0 || piece.getPosX()+1 > WIDTH-1) && !(piece.getPosY()+1 < 0 || piece.getPosY()+1 > HEIGHT-1)) {
-            if ((getPiece(piece.getPosX()+1, piece.getPosY()+1) != null && getPiece(piece.getPosX()+1, piece.getPosY()+1).getRole() != piece.getRole())
-                    || getPiece(piece.getPosX()+1, piece.getPosY()+1) == null) {
-                result.add(new Integer[]{piece.getPosX()+1, piece.getPosY()+1});
-            }
+    /**
+     * Converts a bitboard into a list of {x, y} pairs
+     */
+    private static ArrayList<Integer[]> toFields(long fields) {
+        ArrayList<Integer[]> result = new ArrayList<>(Long.bitCount(fields));
+        while (fields != 0) {
+            int square = Long.numberOfTrailingZeros(fields);
+            result.add(new Integer[]{Position.fileOf(square), Position.rankOf(square)});
+            fields &= fields - 1;
         }
-
         return result;
     }
 
-    public ArrayList<Integer[]> getPawnMovement(Piece piece) {
-        ArrayList<Integer[]> result = new ArrayList<>();
+    public boolean checkIfSquareIsChecked(int x, int y, char role) {
+        return attackMap.isAttacked(Position.square(x, y), Position.colour(role));
+    }
 
-        if (piece.getRole() == 'B') {
-            if (pawnMovement(piece, piece.getPosX(), piece.getPosY()+1)) {
-                result.add(new Integer[]{piece.getPosX(), piece.getPosY()+1});
-            }
-            if (pawnMovement(piece, piece.getPosX(), piece.getPosY()+2)) {
-                result.add(new Integer[]{piece.getPosX(), piece.getPosY()+2});
+    /**
+     * Moves the king and rook objects next to each other, the bitboards are updated by Position.makeMove
+     */
+    private void doCastling(Piece piece1, Piece piece2) {
+        if (piece1.getName() == Pieces.KING) {
+            if (piece2.getPosX() < piece1.getPosX()) {
+                movePiece(piece2, piece1.getPosX()-1, piece2.getPosY());
+                movePiece(piece1, piece2.getPosX()-1, piece1.getPosY());
+            } else {
+                movePiece(piece2, piece1.getPosX()+1, piece2.getPosY());
+                movePiece(piece1, piece2.getPosX()+1, piece1.getPosY());
             }
         } else {
-            if (pawnMovement(piece, piece.getPosX(), piece.getPosY()-1)) {
-                result.add(new Integer[]{piece.getPosX(), piece.getPosY()-1});
-            }
-            if (pawnMovement(piece, piece.getPosX(), piece.getPosY()-2)) {
-                result.add(new Integer[]{piece.getPosX(), piece.getPosY()-2});
+            if (piece1.getPosX() < piece2.getPosX()) {
+                movePiece(piece1, piece2.getPosX()-1, piece1.getPosY());
+                movePiece(piece2, piece1.getPosX()-1, piece2.getPosY());
+            } else {
+                movePiece(piece1, piece2.getPosX()+1, piece1.getPosY());
+                movePiece(piece2, piece1.getPosX()+1, piece2.getPosY());
             }
         }
-        return result;
+        piece1.setMoved(true);
+        piece2.setMoved(true);
     }
 
-    private boolean pawnMovement(Piece piece, int newX, int newY) {
-        if (piece.getRole() == 'B') {
-            if (newX == piece.getPosX()) {
-                //for the first move
-                if (!piece.isMoved()) {
-                    if (getPiece(piece.getPosX(), piece.getPosY() + 1) == null //checks if the square in front is empty
-                            && (newY == piece.getPosY() + 1 //if chosen to move one tile to the front
-                            || getPiece(piece.getPosX(), piece.getPosY() + 2) == null //checks if the square 2 tiles in front is empty
-                            && (newY == piece.getPosY() + 2))) //if chosen to move two tiles to the front
-                    {
-                        //assigns en Passant to the current turn
-                        if (newY == piece.getPosY() + 2) {
-                            piece.setEnPassant(turn);
-                        }
-                        //Check for pawn promotion
-                        if (newY == Board.HEIGHT-1) {
-                            pawnCrossed = true;
-                        }
-                        return true;
-                    }
-                }
-                //standard move
-                if (getPiece(piece.getPosX(), piece.getPosY() + 1) == null //checks if the square in front is empty
-                        && (newY == piece.getPosY() + 1)) { //if chosen to move one tile to the front
-                    //Check for pawn promotion
-                    if (newY == Board.HEIGHT-1) {
-                        pawnCrossed = true;
-                    }
-                    return true;
-                }
-            }
-            //if taking a piece to the left
-            if (!(piece.getPosX() - 1 < 0 || piece.getPosX() - 1 > WIDTH-1) && !(piece.getPosY() + 1 < 0 || piece.getPosY() + 1 > HEIGHT-1)) {
-                if (getPiece(piece.getPosX() - 1, piece.getPosY() + 1) != null //checks if the square in front of the left is populated
-                        && (getPiece(piece.getPosX() - 1, piece.getPosY() + 1).getRole() != piece.getRole() //checks if piece is an enemy piece
-                        && (newX == piece.getPosX() - 1 && newY == piece.getPosY() + 1))) { //if chosen to move one tile to the front
-                    //Check for pawn promotion
-                    if (newY == Board.HEIGHT-1) {
-                        pawnCrossed = true;
-                    }
-                    return true;
-                }
-                if (getPiece(piece.getPosX() - 1, piece.getPosY()) != null
-                        && (getPiece(piece.getPosX() - 1, piece.getPosY()).getRole() != piece.getRole() //checks if piece 2 squares in front is an enemy piece
-                        && (getPiece(piece.getPosX() - 1, piece.getPosY()).getEnPassant() != -1 && turn - getPiece(piece.getPosX() - 1, piece.getPosY()).getEnPassant() == 1))  //checks if en Passant is applicable)
-                        && (newX == piece.getPosX() - 1 && newY == piece.getPosY() + 1)) {
-                    enPassant = true;
-                    //Check for pawn promotion
-                    if (newY == Board.HEIGHT-1) {
-                        pawnCrossed = true;
-                    }
-                    return true;
-                }
-            }
-            //if taking a piece to the right
-            if (!(piece.getPosX() + 1 < 0 || piece.getPosX() + 1 > WIDTH-1) && !(piece.getPosY() + 1 < 0 || piece.getPosY() + 1 > HEIGHT-1)) {
-                if (getPiece(piece.getPosX() + 1, piece.getPosY() + 1) != null //checks if the square in front of the left is populated
-                        && (getPiece(piece.getPosX() + 1, piece.getPosY() + 1).getRole() != piece.getRole() //checks if piece is an enemy piece
-                        && (newX == piece.getPosX() + 1 && newY == piece.getPosY() + 1))) { //if chosen to move one tile to the front
-                    //Check for pawn promotion
-                    if (newY == Board.HEIGHT-1) {
-                        pawnCrossed = true;
-                    }
-                    return true;
-                }
-                if (getPiece(piece.getPosX() + 1, piece.getPosY()) != null
-                        && (getPiece(piece.getPosX() + 1, piece.getPosY()).getRole() != piece.getRole() //checks if piece 2 squares in front is an enemy piece
-                        && (getPiece(piece.getPosX() + 1, piece.getPosY()).getEnPassant() != -1 && turn - getPiece(piece.getPosX() + 1, piece.getPosY()).getEnPassant() == 1))  //checks if en Passant is applicable)
-                        && (newX == piece.getPosX() + 1 && newY == piece.getPosY() + 1)) {
-                    enPassant = true;
-                    //Check for pawn promotion
-                    if (newY == Board.HEIGHT-1) {
-                        pawnCrossed = true;
-                    }
-                    return true;
-                }
-            }
-        }
-
-        if (piece.getRole() == 'W') {
-            if (newX == piece.getPosX()) {
-                //for the first move
-                if (!piece.isMoved()) {
-                    if (getPiece(piece.getPosX(), piece.getPosY() - 1) == null //checks if the square in front is empty
-                            && (newY == piece.getPosY() - 1 //if chosen to move one tile to the front
-                            || getPiece(piece.getPosX(), piece.getPosY() - 2) == null //checks if the square 2 tiles in front is empty
-                            && (newY == piece.getPosY() - 2))) //if chosen to move two tiles to the front
-                    {
-                        //assigns en Passant to the current turn
-                        if (newY == piece.getPosY() - 2) {
-                            piece.setEnPassant(turn);
-                        }
-                        //Check for pawn promotion
-                        if (newY == 0) {
-                            pawnCrossed = true;
-                        }
-                        return true;
-                    }
-                }
-                //standard move
-                if (getPiece(piece.getPosX(), piece.getPosY() - 1) == null //checks if the square in front is empty
-                        && (newY == piece.getPosY() - 1)) { //if chosen to move one tile to the front
-                    //Check for pawn promotion
-                    if (newY == 0) {
-                        pawnCrossed = true;
-                    }
-                    return true;
-                }
-            }
-            //if taking a piece to the left
-            if (!(piece.getPosX() - 1 < 0 || piece.getPosX() - 1 > WIDTH-1) && !(piece.getPosY() - 1 < 0 || piece.getPosY() - 1 > HEIGHT-1)) {
-                if (getPiece(piece.getPosX() - 1, piece.getPosY() - 1) != null //checks if the square in front of the left is populated
-                        && (getPiece(piece.getPosX() - 1, piece.getPosY() - 1).getRole() != piece.getRole() //checks if piece is an enemy piece
-                        && (newX == piece.getPosX() - 1 && newY == piece.getPosY() - 1))) { //if chosen to move one tile to the front
-                    //Check for pawn promotion
-                    if (newY == 0) {
-                        pawnCrossed = true;
-                    }
-                    return true;
-                }
-                if (getPiece(piece.getPosX() - 1, piece.getPosY()) != null
-                        && (getPiece(piece.getPosX() - 1, piece.getPosY()).getRole() != piece.getRole() //checks if piece 2 squares in front is an enemy piece
-                        && (getPiece(piece.getPosX() - 1, piece.getPosY()).getEnPassant() != -1 && turn - getPiece(piece.getPosX() - 1, piece.getPosY()).getEnPassant() == 1))  //checks if en Passant is applicable)
-                        && (newX == piece.getPosX() - 1 && newY == piece.getPosY() - 1)) {
-                    enPassant = true;
-                    //Check for pawn promotion
-                    if (newY == 0) {
-                        pawnCrossed = true;
-                    }
-                    return true;
-                }
-            }
-            //if taking a piece to the right
-            if (!(piece.getPosX() + 1 < 0 || piece.getPosX() + 1 > WIDTH-1) && !(piece.getPosY() - 1 < 0 || piece.getPosY() - 1 > HEIGHT-1)) {
-                if (getPiece(piece.getPosX() + 1, piece.getPosY() - 1) != null //checks if the square in front of the left is populated
-                        && (getPiece(piece.getPosX() + 1, piece.getPosY() - 1).getRole() != piece.getRole() //checks if piece is an enemy piece
-                        && (newX == piece.getPosX() + 1 && newY == piece.getPosY() - 1))) { //if chosen to move one tile to the front
-                    //Check for pawn promotion
-                    if (newY == 0) {
-                        pawnCrossed = true;
-                    }
-                    return true;
-                }
-                if (getPiece(piece.getPosX() + 1, piece.getPosY()) != null
-                        && (getPiece(piece.getPosX() + 1, piece.getPosY()).getRole() != piece.getRole() //checks if piece 2 squares in front is an enemy piece
-                        && (getPiece(piece.getPosX() + 1, piece.getPosY()).getEnPassant() != -1 && turn - getPiece(piece.getPosX() + 1, piece.getPosY()).getEnPassant() == 1))  //checks if en Passant is applicable)
-                        && (newX == piece.getPosX() + 1 && newY == piece.getPosY() - 1)) {
-                    enPassant = true;
-                    //Check for pawn promotion
-                    if (newY == 0) {
-                        pawnCrossed = true;
-                    }
-                    return true;
-                }
-            }
+    /**
+     * Turns the pawn that just crossed the board into the chosen piece
+     * @param pieceName 'R', 'B', 'K' (knight) or 'Q'
+     * @return the promoted piece, null if the last move of the role was not a promotion
+     */
+    public Piece promotePawn(char pieceName, char role) {
+        if (lastMove == Move.NONE || !Move.isPromotion(lastMove)) {
+            return null;
         }
-        return false;
-    }
-
-    private boolean rookMovement(Piece piece, int newX, int newY) {
-
-        int x, y;
-
-        //if horizontal movement
-        if ((newX != piece.getPosX() && newY == piece.getPosY())) {
-            if (piece.getName() != Pieces.QUEEN) {
-                if (getPiece(newX, newY) != null && getPiece(newX, newY).getRole() == piece.getRole() && getPiece(newX, newY).getName() == Pieces.KING
-                        && (!piece.isMoved() && !getPiece(newX, newY).isMoved())) {
-                    x = piece.getPosX();
-                    y = piece.getPosY();
-                    while (x != newX) {
-                        if (x < newX) {
-                            x++;
-                        }
-                        if (x > newX) {
-                            x--;
-                        }
-                        if (((x != newX || y != newY) && getPiece(x, y) != null) || checkIfSquareIsChecked(x, y, piece.getOpposingRole())) {
-                            return false;
-                        }
-                    }
-                    castling = true;
-                    return true;
-                }
-            }
-            x = piece.getPosX();
-            y = piece.getPosY();
-            while (x != newX) {
-                if (x < newX) {
-                    x++;
-                }
-                if (x > newX) {
-                    x--;
-                }
-                if ((x != newX || y != newY) && getPiece(x, y) != null) {
-                    return false;
-                }
-            }
-            //check if the target square is empty or contains an enemy piece
-            return !(getPiece(newX, newY) != null //If not-empty
-                    && getPiece(newX, newY).getRole() == piece.getRole() //If the same colour
-            );
+        int to = Move.to(lastMove);
+        Piece piece = boardPlacement[Position.fileOf(to)][Position.rankOf(to)];
+        if (piece.getRole() != role) {
+            return null;
         }
-        //if vertical movement
-        if ((newX == piece.getPosX() && newY != piece.getPosY())) {
-            if (piece.getName() != Pieces.QUEEN) {
-                if (getPiece(newX, newY) != null && getPiece(newX, newY).getRole() == piece.getRole() && getPiece(newX, newY).getName() == Pieces.KING
-                        && (!piece.isMoved() && !getPiece(newX, newY).isMoved())) {
-                    x = piece.getPosX();
-                    y = piece.getPosY();
-                    while (y != newY) {
-                        if (y < newY) {
-                            y++;
-                        }
-                        if (y > newY) {
-                            y--;
-                        }
-                        if (((x != newX || y != newY) && getPiece(x, y) != null) || checkIfSquareIsChecked(x, y, piece.getOpposingRole())) {
-                            return false;
-                        }
-                    }
-                    castling = true;
-                    return true;
-                }
-            }
-            x = piece.getPosX();
-            y = piece.getPosY();
-            while (y != newY) {
-                if (y < newY) {
-                    y++;
-                }
-                if (y > newY) {
-                    y--;
-                }
-                if ((x != newX || y != newY) && getPiece(x, y) != null) {
-                    return false;
-                }
-            }
-            //check if the target square is empty or contains an enemy piece
-            return !(getPiece(newX, newY) != null //If not-empty
-                    && getPiece(newX, newY).getRole() == piece.getRole() //If the same colour
-            );
+        switch (pieceName) {
+            case 'R' -> piece.setName(Pieces.ROOK);
+            case 'B' -> piece.setName(Pieces.BISHOP);
+            case 'K' -> piece.setName(Pieces.KNIGHT);
+            case 'Q' -> piece.setName(Pieces.QUEEN);
         }
-        return false;
-    }
 
-    private boolean bishopMovement(Piece piece, int newX, int newY) {
-        //diagonal change sum should be equal;
-        if (Math.abs(newX - piece.getPosX()) == Math.abs(newY - piece.getPosY())) {
-            //check for obstacles
-            int x = piece.getPosX();
-            int y = piece.getPosY();
-            while (x != newX && y != newY) {
-                if (newX - piece.getPosX() < 0) {
-                    if (newY - piece.getPosY() < 0) {
-                        x--;
-                        y--;
-                    }
-                    if (newY - piece.getPosY() > 0) {
-                        x--;
-                        y++;
-                    }
-                }
-                if (newX - piece.getPosX() > 0) {
-                    if (newY - piece.getPosY() < 0) {
-                        x++;
-                        y--;
-                    }
-                    if (newY - piece.getPosY() > 0) {
-                        x++;
-                        y++;
-                    }
-                }
-                if ((x != newX && y != newY) && getPiece(x, y) != null) {
-                    return false;
-                }
-            }
-            //check if the target square is empty or contains an enemy piece
-            return !(getPiece(newX, newY) != null //If not-empty
-                    && getPiece(newX, newY).getRole() == piece.getRole() //If the same colour
-            );
-        }
-        return false;
-    }
+        //plays the move again with the chosen piece, only the attacks of the promoted piece change
+        attackMap.remove(position, Position.bit(to));
+        position.unmakeMove(lastMove, lastUndo);
+        lastMove = Move.withPromotion(lastMove, piece.getName().ordinal());
+        position.makeMove(lastMove, lastUndo);
+        history[historySize - 1] = lastMove;
+        attackMap.add(position, Position.bit(to));
 
-    private boolean knightMovement(Piece piece, int newX, int newY) {
-        if (Math.abs(newX - piece.getPosX()) == 2 && Math.abs(newY - piece.getPosY()) == 1 || Math.abs(newX - piece.getPosX()) == 1 && Math.abs(newY - piece.getPosY()) == 2) {
-            return !(getPiece(newX, newY) != null && getPiece(newX, newY).getRole() == piece.getRole());
-        }
-        return false;
+        updateCoveredFields(piece);
+        updateStatus();
+        return piece;
     }
 
-    private boolean queenMovement(Piece piece, int newX, int newY) {
-        //diag and vert movement
-        return (bishopMovement(piece, newX, newY) || rookMovement(piece, newX, newY));
+    public Piece[][] getBoardPlacement() {
+        return this.boardPlacement;
     }
 
-    private boolean kingMovement(Piece piece, int newX, int newY) {
-        int x, y;
-
-        //Castling movement (same as rook)
-        if (getPiece(newX, newY) != null && getPiece(newX, newY).getRole() == piece.getRole() && getPiece(newX, newY).getName() == Pieces.ROOK
-                && (!piece.isMoved() && !getPiece(newX, newY).isMoved())) {
-            x = piece.getPosX();
-            y = piece.getPosY();
-            while (x != newX) {
-                if (x < newX) {
-                    x++;
-                }
-                if (x > newX) {
-                    x--;
-                }
-                if (((x != newX || y != newY) && getPiece(x, y) != null) || checkIfSquareIsChecked(x, y, piece.getOpposingRole())) {
-                    return false;
-                }
-            }
-            castling = true;
-            return true;
-        }
+    /**
+     * @return the last move played, Move.NONE if none was since the board was set up
+     */
+    public int getLastMove() {
+        return lastMove;
+    }
 
-        //Castling movement (same as rook)
-        if (getPiece(newX, newY) != null && getPiece(newX, newY).getRole() == piece.getRole() && getPiece(newX, newY).getName() == Pieces.ROOK
-                && (!piece.isMoved() && !getPiece(newX, newY).isMoved())) {
-            x = piece.getPosX();
-            y = piece.getPosY();
-            while (y != newY) {
-                if (y < newY) {
-                    y++;
-                }
-                if (y > newY) {
-                    y--;
-                }
-                if (((x != newX || y != newY) && getPiece(x, y) != null) || checkIfSquareIsChecked(x, y, piece.getOpposingRole())) {
-                    return false;
-                }
-            }
-            castling = true;
-            return true;
-        }
+    public int getMoveCount() {
+        return historySize;
+    }
 
-        if ((Math.abs(newX - piece.getPosX()) == 1 && Math.abs(newY - piece.getPosY()) == 1) //if moving diagonal
-                || (Math.abs(newX - piece.getPosX()) == 1 && Math.abs(newY - piece.getPosY()) == 0) //if moving horizontal
-                || (Math.abs(newX - piece.getPosX()) == 0 && Math.abs(newY - piece.getPosY()) == 1)) //if moving vertical
-        {
-            return !(getPiece(newX, newY) != null && getPiece(newX, newY).getRole() == piece.getRole());
-        }
-        return false;
+    /**
+     * @return the moves played since the starting position
+     */
+    public int[] getMoveHistory() {
+        return Arrays.copyOf(history, historySize);
     }
 
-    public boolean checkIfSquareIsChecked(int x, int y, char role) {
-        for (Piece piece : pieces) {
-            if (piece != null && piece.getRole() == role) {
-                for (Integer[] integers : piece.getCoveredFields()) {
-                    if (x == integers[0] && y == integers[1]) {
-                        return true;
-                    }
-                }
-            }
-        }
-        return false;
+    /**
+     * @return FEN of the starting position, null for the standard one
+     */
+    public String getStartFen() {
+        return startFen;
     }
 
-    public void doCastling(Piece piece1, Piece piece2) {
-        if (piece1.getName() == Pieces.KING) {
-            if (piece2.getPosX() < piece1.getPosX()) {
-                piece2.setPosX(piece1.getPosX()-1);
-                piece1.setPosX(piece2.getPosX()-1);
-            } else {
-                piece2.setPosX(piece1.getPosX()+1);
-                piece1.setPosX(piece2.getPosX()+1);
-            }
-        } else {
-            if (piece1.getPosX() < piece2.getPosX()) {
-                piece1.setPosX(piece2.getPosX()-1);
-                piece2.setPosX(piece1.getPosX()-1);
-            } else {
-                piece1.setPosX(piece2.getPosX()+1);
-                piece2.setPosX(piece1.getPosX()+1);
-            }
-        }
-        piece1.setMoved(true);
-        piece2.setMoved(true);
+    public Position getPosition() {
+        return position;
     }
 
-    public Piece promotePawn(char pieceName, char role) {
-        for (Piece piece : pieces) {
-            if (piece != null && piece.getName() == Pieces.PAWN && piece.getRole() == role) {
-                if (role == 'B' && piece.getPosY() == Board.HEIGHT-1) {
-                    switch (pieceName) {
-                        case 'R' -> piece.setName(Pieces.ROOK);
-                        case 'B' -> piece.setName(Pieces.BISHOP);
-                        case 'K' -> piece.setName(Pieces.KNIGHT);
-                        case 'Q' -> piece.setName(Pieces.QUEEN);
-                    }
-                    updatePlacement();
-                    return piece;
-                }
-                if (role == 'W' && piece.getPosY() == 0) {
-                    switch (pieceName) {
-                        case 'R' -> piece.setName(Pieces.ROOK);
-                        case 'B' -> piece.setName(Pieces.BISHOP);
-                        case 'K' -> piece.setName(Pieces.KNIGHT);
-                        case 'Q' -> piece.setName(Pieces.QUEEN);
-                    }
-                    updatePlacement();
-                    return piece;
-                }
-            }
-        }
-        return null;
+    /**
+     * @return Zobrist key of the current position, equal positions have equal keys
+     */
+    public long getKey() {
+        return position.getKey();
     }
 
-    public Piece[][] getBoardPlacement() {
-        return this.boardPlacement;
+    public AttackMap getAttackMap() {
+        return attackMap;
     }
 
     public boolean isReversed() {
@@ -1161,7 +684,14 @@ public class Board {
         return whiteMated;
     }
 
-    public PipedWriter getPipedWriter() {
-        return pipedWriter;
+    public boolean isDrawn() {
+        return drawn;
+    }
+
+    /**
+     * @return whether either side is mated or the game is drawn
+     */
+    public boolean isGameOver() {
+        return whiteMated || blackMated || drawn;
     }
 }
@@ -0,0 +1,98 @@
+package com.arno.mysite.chess.game;
+
+import com.arno.mysite.chess.persistence.OpeningBook;
+import com.arno.mysite.chess.tablebase.Tablebases;
+
+/**
+ * Computer player, plays from its opening book while the position is in it, from the tablebases once few enough pieces are left
+ * and searches every other move within a fixed time and node budget
+ */
+public class EnginePlayer implements Player {
+
+    public static final long DEFAULT_MOVE_TIME = 300;
+
+    private final char role;
+    private final long moveTime;
+    private final long maxNodes;
+    private final ParallelSearch search;
+    //null without a book
+    private OpeningBook book;
+    //null without tablebases
+    private Tablebases tablebases;
+
+    public EnginePlayer(char role) {
+        this(role, DEFAULT_MOVE_TIME, 0);
+    }
+
+    /**
+     * @param moveTime milliseconds per move
+     * @param maxNodes nodes per move, 0 for no limit
+     */
+    public EnginePlayer(char role, long moveTime, long maxNodes) {
+        this(role, moveTime, maxNodes, TranspositionTable.DEFAULT_MEGABYTES, 1);
+    }
+
+    /**
+     * @param hashMegabytes size of the transposition table
+     * @param threads number of threads searching every move, one keeps many games on one machine cheap
+     */
+    public EnginePlayer(char role, long moveTime, long maxNodes, int hashMegabytes, int threads) {
+        this.role = role;
+        this.moveTime = moveTime;
+        this.maxNodes = maxNodes;
+        this.search = new ParallelSearch(new TranspositionTable(hashMegabytes), threads);
+    }
+
+    @Override
+    public char getRole() {
+        return role;
+    }
+
+    /**
+     * Plays a book or tablebase move if the position is in the book or the tables, otherwise searches copies of the board's position,
+     * the board itself is never touched by the search threads
+     */
+    @Override
+    public int selectMove(Board board) {
+        if (book != null) {
+            int move = book.probe(board.getPosition());
+            if (move != Move.NONE) {
+                return move;
+            }
+        }
+        if (tablebases != null) {
+            int move = tablebases.bestMove(board.getPosition());
+            if (move != Move.NONE) {
+                return move;
+            }
+        }
+        return search.search(board.getPosition(), moveTime, maxNodes);
+    }
+
+    /**
+     * @param book consulted before every search, null for none
+     */
+    public void setBook(OpeningBook book) {
+        this.book = book;
+    }
+
+    public OpeningBook getBook() {
+        return book;
+    }
+
+    /**
+     * @param tablebases played from at the root and probed by the search, null for none
+     */
+    public void setTablebases(Tablebases tablebases) {
+        this.tablebases = tablebases;
+        search.setTablebases(tablebases);
+    }
+
+    public Tablebases getTablebases() {
+        return tablebases;
+    }
+
+    public ParallelSearch getSearch() {
+        return search;
+    }
+}
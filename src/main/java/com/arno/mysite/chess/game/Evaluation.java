@@ -0,0 +1,307 @@
+package com.arno.mysite.chess.game;
+
+import java.util.Arrays;
+
+/**
+ * Scores a position from the view of the side to move, blending a middlegame and an endgame score by the material left.
+ * Material and piece-square values are kept up to date by Position on every move, so here they are only read.
+ * Pawn structure only changes with pawn moves, it is cached by the pawn key of the position.
+ * Mobility and king safety are counted from the attack tables on every call
+ */
+public class Evaluation {
+
+    //material per type indexed by Pieces.ordinal()
+    private static final int[] MIDGAME_VALUES = {82, 365, 477, 337, 1025, 0};
+    private static final int[] ENDGAME_VALUES = {94, 297, 512, 281, 936, 0};
+
+    //how much every piece counts towards the middlegame, 24 with all pieces on the board
+    private static final int[] PHASE_WEIGHTS = {0, 1, 2, 1, 4, 0};
+    public static final int MAX_PHASE = 24;
+
+    //piece-square tables from white's view, the first row is the 8th rank like on the board
+    private static final int[] PAWN_MIDGAME = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            50, 50, 50, 50, 50, 50, 50, 50,
+            10, 10, 20, 30, 30, 20, 10, 10,
+            5, 5, 10, 25, 25, 10, 5, 5,
+            0, 0, 0, 20, 20, 0, 0, 0,
+            5, -5, -10, 0, 0, -10, -5, 5,
+            5, 10, 10, -20, -20, 10, 10, 5,
+            0, 0, 0, 0, 0, 0, 0, 0
+    };
+    private static final int[] PAWN_ENDGAME = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            80, 80, 80, 80, 80, 80, 80, 80,
+            50, 50, 50, 50, 50, 50, 50, 50,
+            30, 30, 30, 30, 30, 30, 30, 30,
+            20, 20, 20, 20, 20, 20, 20, 20,
+            10, 10, 10, 10, 10, 10, 10, 10,
+            0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0
+    };
+    private static final int[] KNIGHT_TABLE = {
+            -50, -40, -30, -30, -30, -30, -40, -50,
+            -40, -20, 0, 0, 0, 0, -20, -40,
+            -30, 0, 10, 15, 15, 10, 0, -30,
+            -30, 5, 15, 20, 20, 15, 5, -30,
+            -30, 0, 15, 20, 20, 15, 0, -30,
+            -30, 5, 10, 15, 15, 10, 5, -30,
+            -40, -20, 0, 5, 5, 0, -20, -40,
+            -50, -40, -30, -30, -30, -30, -40, -50
+    };
+    private static final int[] BISHOP_TABLE = {
+            -20, -10, -10, -10, -10, -10, -10, -20,
+            -10, 0, 0, 0, 0, 0, 0, -10,
+            -10, 0, 5, 10, 10, 5, 0, -10,
+            -10, 5, 5, 10, 10, 5, 5, -10,
+            -10, 0, 10, 10, 10, 10, 0, -10,
+            -10, 10, 10, 10, 10, 10, 10, -10,
+            -10, 5, 0, 0, 0, 0, 5, -10,
+            -20, -10, -10, -10, -10, -10, -10, -20
+    };
+    private static final int[] ROOK_TABLE = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            5, 10, 10, 10, 10, 10, 10, 5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            0, 0, 0, 5, 5, 0, 0, 0
+    };
+    private static final int[] QUEEN_TABLE = {
+            -20, -10, -10, -5, -5, -10, -10, -20,
+            -10, 0, 0, 0, 0, 0, 0, -10,
+            -10, 0, 5, 5, 5, 5, 0, -10,
+            -5, 0, 5, 5, 5, 5, 0, -5,
+            0, 0, 5, 5, 5, 5, 0, -5,
+            -10, 5, 5, 5, 5, 5, 0, -10,
+            -10, 0, 5, 0, 0, 0, 0, -10,
+            -20, -10, -10, -5, -5, -10, -10, -20
+    };
+    private static final int[] KING_MIDGAME = {
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -20, -30, -30, -40, -40, -30, -30, -20,
+            -10, -20, -20, -20, -20, -20, -20, -10,
+            20, 20, 0, 0, 0, 0, 20, 20,
+            20, 30, 10, 0, 0, 10, 30, 20
+    };
+    private static final int[] KING_ENDGAME = {
+            -50, -40, -30, -20, -20, -30, -40, -50,
+            -30, -20, -10, 0, 0, -10, -20, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -30, 0, 0, 0, 0, -30, -30,
+            -50, -30, -30, -30, -30, -30, -30, -50
+    };
+
+    //material plus square value per colour, type and square
+    private static final int[][][] MIDGAME = new int[2][Pieces.values().length][Position.SQUARES];
+    private static final int[][][] ENDGAME = new int[2][Pieces.values().length][Position.SQUARES];
+
+    //bonus per attacked square that is not guarded by an enemy pawn, indexed by Pieces.ordinal()
+    private static final int[] MOBILITY_MIDGAME = {0, 5, 3, 4, 1, 0};
+    private static final int[] MOBILITY_ENDGAME = {0, 5, 5, 4, 2, 0};
+
+    //weight of an attack on a square next to the enemy king, indexed by Pieces.ordinal()
+    private static final int[] KING_ATTACK_WEIGHTS = {0, 2, 3, 2, 5, 0};
+    private static final int PAWN_SHIELD_BONUS = 12;
+
+    private static final int DOUBLED_MIDGAME = -10;
+    private static final int DOUBLED_ENDGAME = -20;
+    private static final int ISOLATED_MIDGAME = -10;
+    private static final int ISOLATED_ENDGAME = -15;
+    //passed pawn bonus by the number of ranks the pawn has advanced
+    private static final int[] PASSED_MIDGAME = {0, 5, 10, 20, 35, 60, 100, 0};
+    private static final int[] PASSED_ENDGAME = {0, 10, 20, 40, 70, 120, 200, 0};
+
+    private static final int TEMPO = 10;
+
+    //squares in front of a pawn on its own and the neighbouring files, no enemy pawn there makes it passed
+    private static final long[][] PASSED_MASK = new long[2][Position.SQUARES];
+    private static final long[] ADJACENT_FILES = new long[Board.WIDTH];
+
+    private static final int PAWN_TABLE_SIZE = 1 << 14;
+
+    static {
+        int[][] midgameTables = {PAWN_MIDGAME, BISHOP_TABLE, ROOK_TABLE, KNIGHT_TABLE, QUEEN_TABLE, KING_MIDGAME};
+        int[][] endgameTables = {PAWN_ENDGAME, BISHOP_TABLE, ROOK_TABLE, KNIGHT_TABLE, QUEEN_TABLE, KING_ENDGAME};
+        for (int type = 0; type < midgameTables.length; type++) {
+            for (int square = 0; square < Position.SQUARES; square++) {
+                //black reads the tables upside down
+                int mirrored = square ^ (Position.SQUARES - Board.WIDTH);
+                MIDGAME[Position.WHITE][type][square] = MIDGAME_VALUES[type] + midgameTables[type][square];
+                ENDGAME[Position.WHITE][type][square] = ENDGAME_VALUES[type] + endgameTables[type][square];
+                MIDGAME[Position.BLACK][type][square] = MIDGAME_VALUES[type] + midgameTables[type][mirrored];
+                ENDGAME[Position.BLACK][type][square] = ENDGAME_VALUES[type] + endgameTables[type][mirrored];
+            }
+        }
+
+        for (int file = 0; file < Board.WIDTH; file++) {
+            if (file > 0) {
+                ADJACENT_FILES[file] |= Position.FILE_A << (file - 1);
+            }
+            if (file < Board.WIDTH - 1) {
+                ADJACENT_FILES[file] |= Position.FILE_A << (file + 1);
+            }
+        }
+        for (int square = 0; square < Position.SQUARES; square++) {
+            int file = Position.fileOf(square);
+            long span = ADJACENT_FILES[file] | (Position.FILE_A << file);
+            for (int rank = 0; rank < Board.HEIGHT; rank++) {
+                long row = 0xFFL << (rank * Board.WIDTH);
+                if (rank < Position.rankOf(square)) {
+                    PASSED_MASK[Position.WHITE][square] |= span & row;
+                } else if (rank > Position.rankOf(square)) {
+                    PASSED_MASK[Position.BLACK][square] |= span & row;
+                }
+            }
+        }
+    }
+
+    //pawn structure cache, the pawn key is kept next to the middlegame and endgame score of white
+    private final long[] pawnKeys;
+    private final int[] pawnMidgame;
+    private final int[] pawnEndgame;
+
+    public Evaluation() {
+        pawnKeys = new long[PAWN_TABLE_SIZE];
+        pawnMidgame = new int[PAWN_TABLE_SIZE];
+        pawnEndgame = new int[PAWN_TABLE_SIZE];
+        //an empty slot must not match the position without pawns
+        Arrays.fill(pawnKeys, -1L);
+    }
+
+    /**
+     * Material and square value of a piece in the middlegame
+     */
+    public static int midgame(int colour, int type, int square) {
+        return MIDGAME[colour][type][square];
+    }
+
+    /**
+     * Material and square value of a piece in the endgame
+     */
+    public static int endgame(int colour, int type, int square) {
+        return ENDGAME[colour][type][square];
+    }
+
+    public static int phase(int type) {
+        return PHASE_WEIGHTS[type];
+    }
+
+    /**
+     * @return score in centipawns from the view of the side to move
+     */
+    public int evaluate(Position position) {
+        int midgame = position.getMidgameScore(Position.WHITE) - position.getMidgameScore(Position.BLACK);
+        int endgame = position.getEndgameScore(Position.WHITE) - position.getEndgameScore(Position.BLACK);
+
+        int index = (int) (position.getPawnKey() & (PAWN_TABLE_SIZE - 1));
+        if (pawnKeys[index] != position.getPawnKey()) {
+            pawnKeys[index] = position.getPawnKey();
+            pawnMidgame[index] = pawnStructure(position, Position.WHITE, true) - pawnStructure(position, Position.BLACK, true);
+            pawnEndgame[index] = pawnStructure(position, Position.WHITE, false) - pawnStructure(position, Position.BLACK, false);
+        }
+        midgame += pawnMidgame[index];
+        endgame += pawnEndgame[index];
+
+        //mobility and king attacks are added per colour, white first
+        long whitePawnAttacks = Attacks.pawns(Position.WHITE, position.getPieces(Position.WHITE, Position.PAWN));
+        long blackPawnAttacks = Attacks.pawns(Position.BLACK, position.getPieces(Position.BLACK, Position.PAWN));
+        midgame += pieceActivity(position, Position.WHITE, blackPawnAttacks, true) - pieceActivity(position, Position.BLACK, whitePawnAttacks, true);
+        endgame += pieceActivity(position, Position.WHITE, blackPawnAttacks, false) - pieceActivity(position, Position.BLACK, whitePawnAttacks, false);
+        midgame += pawnShield(position, Position.WHITE) - pawnShield(position, Position.BLACK);
+
+        int phase = Math.min(position.getPhase(), MAX_PHASE);
+        int score = (midgame * phase + endgame * (MAX_PHASE - phase)) / MAX_PHASE;
+        return (position.getSideToMove() == Position.WHITE ? score : -score) + TEMPO;
+    }
+
+    /**
+     * Mobility of the pieces of the colour, plus the pressure they put on the enemy king in the middlegame
+     * @param enemyPawnAttacks squares a piece would be chased away from
+     */
+    private static int pieceActivity(Position position, int colour, long enemyPawnAttacks, boolean midgame) {
+        long occupied = position.getOccupied();
+        long available = ~position.getOccupancy(colour) & ~enemyPawnAttacks;
+        int enemyKing = position.kingSquare(1 - colour);
+        long kingZone = enemyKing == -1 ? 0L : Attacks.king(enemyKing) | Position.bit(enemyKing);
+
+        int score = 0;
+        int attackers = 0;
+        int attackWeight = 0;
+        for (int type = Position.BISHOP; type < Position.KING; type++) {
+            long pieces = position.getPieces(colour, type);
+            int[] mobility = midgame ? MOBILITY_MIDGAME : MOBILITY_ENDGAME;
+            while (pieces != 0) {
+                long attacks = Attacks.of(colour, type, Long.numberOfTrailingZeros(pieces), occupied);
+                score += mobility[type] * Long.bitCount(attacks & available);
+                long kingAttacks = attacks & kingZone;
+                if (kingAttacks != 0) {
+                    attackers++;
+                    attackWeight += KING_ATTACK_WEIGHTS[type] * Long.bitCount(kingAttacks);
+                }
+                pieces &= pieces - 1;
+            }
+        }
+        //a single attacker is easily parried, the danger grows quickly with more
+        if (midgame && attackers >= 2) {
+            score += attackWeight * attackWeight / 2;
+        }
+        return score;
+    }
+
+    /**
+     * Bonus for own pawns right in front of a king that stays on its first two ranks
+     */
+    private static int pawnShield(Position position, int colour) {
+        int king = position.kingSquare(colour);
+        if (king == -1) {
+            return 0;
+        }
+        int rank = Position.rankOf(king);
+        int forward = colour == Position.WHITE ? -1 : 1;
+        int homeRank = colour == Position.WHITE ? Board.HEIGHT - 1 : 0;
+        if (rank != homeRank && rank != homeRank + forward) {
+            return 0;
+        }
+        int file = Position.fileOf(king);
+        long files = ADJACENT_FILES[file] | (Position.FILE_A << file);
+        long front = files & ((0xFFL << ((rank + forward) * Board.WIDTH)) | (0xFFL << ((rank + 2 * forward) * Board.WIDTH)));
+        return PAWN_SHIELD_BONUS * Long.bitCount(front & position.getPieces(colour, Position.PAWN));
+    }
+
+    /**
+     * Doubled, isolated and passed pawns of the colour, only depends on the pawns so it can be cached
+     */
+    private static int pawnStructure(Position position, int colour, boolean midgame) {
+        long pawns = position.getPieces(colour, Position.PAWN);
+        long enemyPawns = position.getPieces(1 - colour, Position.PAWN);
+        int score = 0;
+        for (int file = 0; file < Board.WIDTH; file++) {
+            int count = Long.bitCount(pawns & (Position.FILE_A << file));
+            if (count > 1) {
+                score += (count - 1) * (midgame ? DOUBLED_MIDGAME : DOUBLED_ENDGAME);
+            }
+            if (count > 0 && (pawns & ADJACENT_FILES[file]) == 0) {
+                score += count * (midgame ? ISOLATED_MIDGAME : ISOLATED_ENDGAME);
+            }
+        }
+        long set = pawns;
+        while (set != 0) {
+            int square = Long.numberOfTrailingZeros(set);
+            if ((PASSED_MASK[colour][square] & enemyPawns) == 0) {
+                int advanced = colour == Position.WHITE ? Board.HEIGHT - 1 - Position.rankOf(square) : Position.rankOf(square);
+                score += midgame ? PASSED_MIDGAME[advanced] : PASSED_ENDGAME[advanced];
+            }
+            set &= set - 1;
+        }
+        return score;
+    }
+}
@@ -1,24 +1,31 @@
 package com.arno.mysite.chess.game;
 
 import com.arno.mysite.chess.GUI.GamePanel;
+import com.arno.mysite.chess.persistence.GameArchiveWriter;
 
 import javax.swing.*;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Scanner;
 
+/**
+ * Runs a GameSession in the terminal or in a window, the session holds the game itself
+ */
 public class Game {
 
-    private final ArrayList<Player> players;
-    private final Board board;
+    private final GameSession session;
     private boolean isRunning;
-    private final Scanner sc;
+    //only created when the TUI reads moves, so a game without a terminal never touches System.in
+    private Scanner sc;
 
     public Game() {
-        players = new ArrayList<>();
-        board = new Board();
+        this(new GameSession());
+    }
+
+    public Game(GameSession session) {
+        this.session = session;
         this.isRunning = false;
-        sc = new Scanner(System.in);
     }
 
     /**
@@ -26,10 +33,19 @@ public class Game {
      */
     public void startGame(String ui) {
         if (ui.equals("TUI")) {
+            Board board = session.getBoard();
+            Scanner sc = getSc();
             this.isRunning = true;
             while (isRunning) {
                 board.printBoard();
-                board.setPiece(sc.nextInt(), sc.nextInt(), sc.nextInt(), sc.nextInt(), false);
+                if (!playComputerMove()) {
+                    session.submitMove(sc.nextInt(), sc.nextInt(), sc.nextInt(), sc.nextInt());
+                }
+                //a finished game ends on its own, nobody has to close it
+                if (board.isGameOver()) {
+                    board.printBoard();
+                    endGame();
+                }
             }
         }
         if (ui.equals("GUI")) {
@@ -38,7 +54,7 @@ public class Game {
             window.setResizable(false);
             window.setTitle("chess");
 
-            GamePanel gamePanel = new GamePanel();
+            GamePanel gamePanel = new GamePanel(this);
             window.add(gamePanel);
 
             window.pack();
@@ -50,16 +66,58 @@ public class Game {
         }
     }
 
+    /**
+     * Lets the player pick the moves of its role, players without one are humans
+     */
+    public void addPlayer(Player player) {
+        session.addPlayer(player);
+    }
+
+    /**
+     * @return the player of the role, null if the role is played by a human
+     */
+    public Player getPlayer(char role) {
+        return session.getPlayer(role);
+    }
+
+    /**
+     * If the side to move is played by the computer, lets it choose and plays its move
+     * @return whether a move was played
+     */
+    public boolean playComputerMove() {
+        return session.playComputerMove();
+    }
+
+    /**
+     * Appends the game played so far to the archive
+     * @return number of the game in the archive
+     */
+    public int save(GameArchiveWriter archive) throws IOException {
+        return archive.append(session.toPgn());
+    }
+
+    /**
+     * Stops the game and tells every player it is over
+     */
+    public void endGame() {
+        this.isRunning = false;
+        session.end();
+    }
+
     public void startRunning() {
         this.isRunning = true;
     }
 
     public ArrayList<Player> getPlayers() {
-        return players;
+        return session.getPlayers();
+    }
+
+    public GameSession getSession() {
+        return session;
     }
 
     public Board getBoard() {
-        return board;
+        return session.getBoard();
     }
 
     public boolean getRunning() {
@@ -67,6 +125,9 @@ public class Game {
     }
 
     public Scanner getSc() {
+        if (sc == null) {
+            sc = new Scanner(System.in);
+        }
         return this.sc;
     }
 }
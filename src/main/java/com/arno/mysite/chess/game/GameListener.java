@@ -0,0 +1,27 @@
+package com.arno.mysite.chess.game;
+
+/**
+ * Callbacks of a GameSession, called on the thread that played the move or ended the game
+ */
+public interface GameListener {
+
+    /**
+     * A move was played on the board, a promotion from a click first as a queen
+     */
+    default void movePlayed(GameSession session, int move) {
+    }
+
+    /**
+     * The piece of the promotion that was just played got chosen
+     * @param move the last move with its final promotion piece
+     */
+    default void promotionChosen(GameSession session, int move) {
+    }
+
+    /**
+     * The game ended by mate or draw or was ended before
+     * @param result PgnGame.WHITE_WINS, BLACK_WINS, DRAW or UNFINISHED
+     */
+    default void gameOver(GameSession session, String result) {
+    }
+}
@@ -0,0 +1,202 @@
+package com.arno.mysite.chess.game;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * One game without any user interface: the board, the computer and remote players and the listeners to tell about moves.
+ * The TUI, the GUI and the game server all play through it, so a session costs little more than its board.
+ * A session is played from one thread at a time, listeners may be added from any thread
+ */
+public class GameSession {
+
+    private final Board board;
+    private final ArrayList<Player> players;
+    private final List<GameListener> listeners;
+    private volatile boolean over;
+    private volatile String result;
+
+    public GameSession() {
+        this(new Board());
+    }
+
+    public GameSession(Board board) {
+        this.board = board;
+        this.players = new ArrayList<>();
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.over = false;
+        this.result = PgnGame.UNFINISHED;
+    }
+
+    /**
+     * Creates a session starting from the FEN position
+     */
+    public static GameSession fromFen(String fen) {
+        return new GameSession(Board.fromFen(fen));
+    }
+
+    /**
+     * Lets the player pick the moves of its role, roles without a player are played through submitMove
+     */
+    public void addPlayer(Player player) {
+        players.add(player);
+    }
+
+    /**
+     * @return the player of the role, null if the role is played through submitMove
+     */
+    public Player getPlayer(char role) {
+        for (Player player : players) {
+            if (player.getRole() == role) {
+                return player;
+            }
+        }
+        return null;
+    }
+
+    public ArrayList<Player> getPlayers() {
+        return players;
+    }
+
+    public void addListener(GameListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(GameListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Plays a packed move of the side to move
+     * @return whether the move was legal and got played
+     */
+    public boolean submitMove(int move) {
+        if (over || !board.playMove(move)) {
+            return false;
+        }
+        played(true);
+        return true;
+    }
+
+    /**
+     * Plays the move between the two squares the way a click on the board does, a pawn reaching the last rank
+     * becomes a queen until promotePawn picks its piece
+     * @return whether a move got played
+     */
+    public boolean submitMove(int currentX, int currentY, int newX, int newY) {
+        if (over) {
+            return false;
+        }
+        int count = board.getMoveCount();
+        board.setPiece(currentX, currentY, newX, newY, false);
+        if (board.getMoveCount() == count) {
+            return false;
+        }
+        //whether a promotion ends the game is only known once its piece is chosen
+        played(!Move.isPromotion(board.getLastMove()));
+        return true;
+    }
+
+    /**
+     * Turns the pawn that just crossed the board into the chosen piece
+     * @param pieceName 'R', 'B', 'K' (knight) or 'Q'
+     * @return the promoted piece, null if the last move of the role was not a promotion
+     */
+    public Piece promotePawn(char pieceName, char role) {
+        Piece piece = board.promotePawn(pieceName, role);
+        if (piece != null) {
+            for (GameListener listener : listeners) {
+                listener.promotionChosen(this, board.getLastMove());
+            }
+            if (!over && board.isGameOver()) {
+                finish(result(board));
+            }
+        }
+        return piece;
+    }
+
+    /**
+     * If the side to move has a player, lets it choose and plays its move
+     * @return whether a move was played
+     */
+    public boolean playComputerMove() {
+        Player player = getPlayer(Position.role(board.getPosition().getSideToMove()));
+        if (player == null || over) {
+            return false;
+        }
+        return submitMove(player.selectMove(board));
+    }
+
+    /**
+     * Ends the game, unfinished unless the board is mated or drawn. Ending an ended game does nothing
+     */
+    public void end() {
+        if (!over) {
+            finish(result(board));
+        }
+    }
+
+    private void played(boolean checkOver) {
+        int move = board.getLastMove();
+        for (GameListener listener : listeners) {
+            listener.movePlayed(this, move);
+        }
+        //a listener may have ended the game already
+        if (checkOver && !over && board.isGameOver()) {
+            finish(result(board));
+        }
+    }
+
+    private void finish(String result) {
+        this.over = true;
+        this.result = result;
+        for (Player player : players) {
+            player.gameOver(board);
+        }
+        for (GameListener listener : listeners) {
+            listener.gameOver(this, result);
+        }
+    }
+
+    private static String result(Board board) {
+        if (board.isWhiteMated()) {
+            return PgnGame.BLACK_WINS;
+        }
+        if (board.isBlackMated()) {
+            return PgnGame.WHITE_WINS;
+        }
+        return board.isDrawn() ? PgnGame.DRAW : PgnGame.UNFINISHED;
+    }
+
+    public Board getBoard() {
+        return board;
+    }
+
+    /**
+     * @return role to move, 'W' or 'B'
+     */
+    public char getRoleToMove() {
+        return Position.role(board.getPosition().getSideToMove());
+    }
+
+    public boolean isOver() {
+        return over;
+    }
+
+    /**
+     * @return PgnGame.WHITE_WINS, BLACK_WINS, DRAW or UNFINISHED while the game goes on or if it was ended early
+     */
+    public String getResult() {
+        return result;
+    }
+
+    /**
+     * @return the game played so far, ready for a PgnWriter or a GameArchiveWriter
+     */
+    public PgnGame toPgn() {
+        PgnGame game = PgnGame.fromBoard(board);
+        game.setResult(result);
+        return game;
+    }
+}
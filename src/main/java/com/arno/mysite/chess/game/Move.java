@@ -0,0 +1,98 @@
+package com.arno.mysite.chess.game;
+
+/**
+ * Moves are packed into a single int so they can be generated and stored without allocating:
+ * bits 0-5 from square, 6-11 to square, 12-14 moving piece type, 15-17 captured type + 1,
+ * 18-20 promotion type + 1, 21-23 flags.
+ * Castling is stored as the king moving two squares, en passant as the pawn moving onto the en passant square
+ */
+public class Move {
+    public static final int NONE = 0;
+
+    public static final int DOUBLE_PUSH = 1 << 21;
+    public static final int EN_PASSANT = 1 << 22;
+    public static final int CASTLING = 1 << 23;
+
+    private static final int SQUARE_MASK = 0x3F;
+    private static final int TYPE_MASK = 0x7;
+
+    private Move() {
+    }
+
+    /**
+     * @param captured type of the captured piece, -1 if none
+     * @param promotion piece type the pawn turns into, -1 if none
+     * @param flags DOUBLE_PUSH, EN_PASSANT, CASTLING or 0
+     */
+    public static int of(int from, int to, int piece, int captured, int promotion, int flags) {
+        return from | (to << 6) | (piece << 12) | ((captured + 1) << 15) | ((promotion + 1) << 18) | flags;
+    }
+
+    /**
+     * @return the same move turning the pawn into another piece type
+     */
+    public static int withPromotion(int move, int promotion) {
+        return (move & ~(TYPE_MASK << 18)) | ((promotion + 1) << 18);
+    }
+
+    public static int from(int move) {
+        return move & SQUARE_MASK;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & SQUARE_MASK;
+    }
+
+    public static int piece(int move) {
+        return (move >>> 12) & TYPE_MASK;
+    }
+
+    /**
+     * @return type of the captured piece, -1 if none
+     */
+    public static int captured(int move) {
+        return ((move >>> 15) & TYPE_MASK) - 1;
+    }
+
+    /**
+     * @return piece type the pawn turns into, -1 if none
+     */
+    public static int promotion(int move) {
+        return ((move >>> 18) & TYPE_MASK) - 1;
+    }
+
+    public static boolean isCapture(int move) {
+        return (move & (TYPE_MASK << 15)) != 0;
+    }
+
+    public static boolean isPromotion(int move) {
+        return (move & (TYPE_MASK << 18)) != 0;
+    }
+
+    public static boolean isDoublePush(int move) {
+        return (move & DOUBLE_PUSH) != 0;
+    }
+
+    public static boolean isEnPassant(int move) {
+        return (move & EN_PASSANT) != 0;
+    }
+
+    public static boolean isCastling(int move) {
+        return (move & CASTLING) != 0;
+    }
+
+    /**
+     * @return the move as from and to square names, like "e2e4" or "e7e8q"
+     */
+    public static String toAlgebraic(int move) {
+        String result = Position.squareName(from(move)) + Position.squareName(to(move));
+        if (isPromotion(move)) {
+            result += Position.PIECE_LETTERS.charAt(promotion(move));
+        }
+        return result;
+    }
+
+    public static String toString(int move) {
+        return Position.fileOf(from(move)) + " " + Position.rankOf(from(move)) + " " + Position.fileOf(to(move)) + " " + Position.rankOf(to(move));
+    }
+}
@@ -0,0 +1,276 @@
+package com.arno.mysite.chess.game;
+
+/**
+ * Fills a MoveList with packed moves straight from the bitboards, nothing is allocated per move.
+ * Legal moves are generated in one pass: pinned pieces stay on the line to their king,
+ * in check only moves that capture or block the checker are kept, and the king never steps onto an attacked square
+ */
+public class MoveGenerator {
+
+    private static final int[] PROMOTIONS = {Position.QUEEN, Position.ROOK, Position.BISHOP, Position.KNIGHT};
+
+    private MoveGenerator() {
+    }
+
+    /**
+     * Lists every legal move of the side to move
+     */
+    public static MoveList generateLegalMoves(Board board) {
+        MoveList moves = new MoveList();
+        generateLegalMoves(board.getPosition(), moves);
+        return moves;
+    }
+
+    /**
+     * Adds every legal move of the side to move to the list
+     * @param moves != null, cleared before filling
+     */
+    public static void generateLegalMoves(Position position, MoveList moves) {
+        int us = position.getSideToMove();
+        int them = 1 - us;
+        int king = position.kingSquare(us);
+        if (king == -1) {
+            //without a king nothing can be illegal
+            generateMoves(position, us, moves);
+            return;
+        }
+        moves.clear();
+        long own = position.getOccupancy(us);
+        long occupied = position.getOccupied();
+        long checkers = position.attackersTo(king, them, occupied);
+
+        //the king is taken off the board, so it cannot hide behind itself from a slider
+        long kingTargets = Attacks.king(king) & ~own;
+        long withoutKing = occupied ^ Position.bit(king);
+        while (kingTargets != 0) {
+            int to = Long.numberOfTrailingZeros(kingTargets);
+            if (position.attackersTo(to, them, withoutKing) == 0) {
+                int captured = position.isEmpty(to) ? -1 : position.typeAt(to);
+                moves.add(Move.of(king, to, Position.KING, captured, -1, 0));
+            }
+            kingTargets &= kingTargets - 1;
+        }
+
+        //in double check only the king can move
+        if (Long.bitCount(checkers) > 1) {
+            return;
+        }
+
+        long targetMask = ~own;
+        if (checkers != 0) {
+            targetMask = checkers | Attacks.between(king, Long.numberOfTrailingZeros(checkers));
+        }
+        long pinned = pinnedPieces(position, us, king);
+
+        generateLegalPawnMoves(position, us, king, targetMask, pinned, checkers, moves);
+        for (int type = Position.BISHOP; type < Position.KING; type++) {
+            long pieces = position.getPieces(us, type);
+            while (pieces != 0) {
+                int from = Long.numberOfTrailingZeros(pieces);
+                long targets = Attacks.of(us, type, from, occupied) & targetMask;
+                if ((pinned & Position.bit(from)) != 0) {
+                    targets &= Attacks.line(king, from);
+                }
+                addMoves(position, us, type, from, targets, moves);
+                pieces &= pieces - 1;
+            }
+        }
+        if (checkers == 0) {
+            generateCastling(position, us, moves);
+        }
+    }
+
+    /**
+     * Gets the own pieces that are the only piece between the king and an enemy slider
+     */
+    private static long pinnedPieces(Position position, int colour, int king) {
+        int them = 1 - colour;
+        long occupied = position.getOccupied();
+        long enemy = position.getOccupancy(them);
+        long queens = position.getPieces(them, Position.QUEEN);
+        //sliders that would attack the king if only enemy pieces stood on the board
+        long snipers = (Attacks.rook(king, enemy) & (position.getPieces(them, Position.ROOK) | queens))
+                | (Attacks.bishop(king, enemy) & (position.getPieces(them, Position.BISHOP) | queens));
+        long pinned = 0L;
+        while (snipers != 0) {
+            long blockers = Attacks.between(king, Long.numberOfTrailingZeros(snipers)) & occupied;
+            if (Long.bitCount(blockers) == 1) {
+                pinned |= blockers & position.getOccupancy(colour);
+            }
+            snipers &= snipers - 1;
+        }
+        return pinned;
+    }
+
+    private static void generateLegalPawnMoves(Position position, int colour, int king, long targetMask, long pinned, long checkers, MoveList moves) {
+        long enemy = position.getOccupancy(1 - colour);
+        int forward = colour == Position.WHITE ? -Board.WIDTH : Board.WIDTH;
+        int startRank = colour == Position.WHITE ? Board.HEIGHT - 2 : 1;
+        int enPassant = position.getEnPassantSquare();
+
+        long pawns = position.getPieces(colour, Position.PAWN);
+        while (pawns != 0) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns - 1;
+
+            long allowed = targetMask;
+            if ((pinned & Position.bit(from)) != 0) {
+                allowed &= Attacks.line(king, from);
+            }
+
+            int to = from + forward;
+            //a pawn waiting on the last rank for its promotion piece has no pushes
+            if (to >= 0 && to < Position.SQUARES && position.isEmpty(to)) {
+                if ((allowed & Position.bit(to)) != 0) {
+                    addPawnMove(from, to, -1, moves);
+                }
+                if (Position.rankOf(from) == startRank && position.isEmpty(to + forward) && (allowed & Position.bit(to + forward)) != 0) {
+                    moves.add(Move.of(from, to + forward, Position.PAWN, -1, -1, Move.DOUBLE_PUSH));
+                }
+            }
+
+            long captures = Attacks.pawn(colour, from) & enemy & allowed;
+            while (captures != 0) {
+                to = Long.numberOfTrailingZeros(captures);
+                addPawnMove(from, to, position.typeAt(to), moves);
+                captures &= captures - 1;
+            }
+
+            if (enPassant != -1 && (Attacks.pawn(colour, from) & Position.bit(enPassant)) != 0
+                    && isLegalEnPassant(position, colour, king, from, enPassant, targetMask, checkers)) {
+                moves.add(Move.of(from, enPassant, Position.PAWN, Position.PAWN, -1, Move.EN_PASSANT));
+            }
+        }
+    }
+
+    /**
+     * En passant takes a pawn from a square the capturing pawn does not move to,
+     * so it is checked against the occupancy after the capture: two pawns leaving one rank can uncover the king
+     */
+    private static boolean isLegalEnPassant(Position position, int colour, int king, int from, int to, long targetMask, long checkers) {
+        int them = 1 - colour;
+        int captured = colour == Position.WHITE ? to + Board.WIDTH : to - Board.WIDTH;
+        //a check has to be answered by taking the checking pawn or by blocking
+        if (checkers != 0 && (checkers & Position.bit(captured)) == 0 && (targetMask & Position.bit(to)) == 0) {
+            return false;
+        }
+        long occupied = (position.getOccupied() ^ Position.bit(from) ^ Position.bit(captured)) | Position.bit(to);
+        long queens = position.getPieces(them, Position.QUEEN);
+        return (Attacks.rook(king, occupied) & (position.getPieces(them, Position.ROOK) | queens)) == 0
+                && (Attacks.bishop(king, occupied) & (position.getPieces(them, Position.BISHOP) | queens)) == 0;
+    }
+
+    /**
+     * Adds every pseudo-legal move of the colour to the list, the moves may still leave the own king in check.
+     * En passant and castling are only generated for the side to move
+     * @param moves != null, cleared before filling
+     */
+    public static void generateMoves(Position position, int colour, MoveList moves) {
+        moves.clear();
+        long own = position.getOccupancy(colour);
+        long occupied = position.getOccupied();
+
+        generatePawnMoves(position, colour, moves);
+        for (int type = 0; type <= Position.KING; type++) {
+            if (type == Position.PAWN) {
+                continue;
+            }
+            long pieces = position.getPieces(colour, type);
+            while (pieces != 0) {
+                int from = Long.numberOfTrailingZeros(pieces);
+                addMoves(position, colour, type, from, Attacks.of(colour, type, from, occupied) & ~own, moves);
+                pieces &= pieces - 1;
+            }
+        }
+        if (colour == position.getSideToMove()) {
+            generateCastling(position, colour, moves);
+        }
+    }
+
+    private static void addMoves(Position position, int colour, int type, int from, long targets, MoveList moves) {
+        long enemy = position.getOccupancy(1 - colour);
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            int captured = (enemy & Position.bit(to)) != 0 ? position.typeAt(to) : -1;
+            moves.add(Move.of(from, to, type, captured, -1, 0));
+            targets &= targets - 1;
+        }
+    }
+
+    private static void generatePawnMoves(Position position, int colour, MoveList moves) {
+        long enemy = position.getOccupancy(1 - colour);
+        int forward = colour == Position.WHITE ? -Board.WIDTH : Board.WIDTH;
+        int startRank = colour == Position.WHITE ? Board.HEIGHT - 2 : 1;
+        int enPassant = colour == position.getSideToMove() ? position.getEnPassantSquare() : -1;
+
+        long pawns = position.getPieces(colour, Position.PAWN);
+        while (pawns != 0) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns - 1;
+
+            int to = from + forward;
+            //a pawn waiting on the last rank for its promotion piece has no pushes
+            if (to >= 0 && to < Position.SQUARES && position.isEmpty(to)) {
+                addPawnMove(from, to, -1, moves);
+                if (Position.rankOf(from) == startRank && position.isEmpty(to + forward)) {
+                    moves.add(Move.of(from, to + forward, Position.PAWN, -1, -1, Move.DOUBLE_PUSH));
+                }
+            }
+
+            long captures = Attacks.pawn(colour, from) & enemy;
+            while (captures != 0) {
+                to = Long.numberOfTrailingZeros(captures);
+                addPawnMove(from, to, position.typeAt(to), moves);
+                captures &= captures - 1;
+            }
+
+            if (enPassant != -1 && (Attacks.pawn(colour, from) & Position.bit(enPassant)) != 0) {
+                moves.add(Move.of(from, enPassant, Position.PAWN, Position.PAWN, -1, Move.EN_PASSANT));
+            }
+        }
+    }
+
+    /**
+     * Adds the pawn move, or one move per promotion piece if the pawn reaches the last rank
+     */
+    private static void addPawnMove(int from, int to, int captured, MoveList moves) {
+        int rank = Position.rankOf(to);
+        if (rank == 0 || rank == Board.HEIGHT - 1) {
+            for (int promotion : PROMOTIONS) {
+                moves.add(Move.of(from, to, Position.PAWN, captured, promotion, 0));
+            }
+        } else {
+            moves.add(Move.of(from, to, Position.PAWN, captured, -1, 0));
+        }
+    }
+
+    /**
+     * Castling needs the right, empty squares between king and rook and no attacked square on the king's path
+     */
+    private static void generateCastling(Position position, int colour, MoveList moves) {
+        int rights = position.getCastlingRights();
+        int kingside = colour == Position.WHITE ? Position.WHITE_KINGSIDE : Position.BLACK_KINGSIDE;
+        int queenside = colour == Position.WHITE ? Position.WHITE_QUEENSIDE : Position.BLACK_QUEENSIDE;
+        if ((rights & (kingside | queenside)) == 0) {
+            return;
+        }
+        int king = Position.square(4, colour == Position.WHITE ? Board.HEIGHT - 1 : 0);
+        int enemy = 1 - colour;
+        long occupied = position.getOccupied();
+        long rooks = position.getPieces(colour, Position.ROOK);
+        if ((position.getPieces(colour, Position.KING) & Position.bit(king)) == 0 || position.isSquareAttacked(king, enemy)) {
+            return;
+        }
+
+        if ((rights & kingside) != 0 && (rooks & Position.bit(king + 3)) != 0
+                && (occupied & (Position.bit(king + 1) | Position.bit(king + 2))) == 0
+                && !position.isSquareAttacked(king + 1, enemy) && !position.isSquareAttacked(king + 2, enemy)) {
+            moves.add(Move.of(king, king + 2, Position.KING, -1, -1, Move.CASTLING));
+        }
+        if ((rights & queenside) != 0 && (rooks & Position.bit(king - 4)) != 0
+                && (occupied & (Position.bit(king - 1) | Position.bit(king - 2) | Position.bit(king - 3))) == 0
+                && !position.isSquareAttacked(king - 1, enemy) && !position.isSquareAttacked(king - 2, enemy)) {
+            moves.add(Move.of(king, king - 2, Position.KING, -1, -1, Move.CASTLING));
+        }
+    }
+}
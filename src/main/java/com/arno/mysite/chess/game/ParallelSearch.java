@@ -0,0 +1,143 @@
+package com.arno.mysite.chess.game;
+
+import com.arno.mysite.chess.tablebase.Tablebases;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Lazy SMP: every thread runs its own iterative deepening search on its own copy of the position,
+ * they only share the transposition table. The threads fill the table for each other and the searches drift apart
+ * because half of the helpers start one ply deeper. The calling thread searches too, once it is done the helpers are stopped
+ */
+public class ParallelSearch {
+
+    private final TranspositionTable table;
+    private final Search[] searches;
+    //runs the helper searches, null with a single thread
+    private final ExecutorService helpers;
+
+    /**
+     * @param threads number of searching threads, the calling thread included
+     */
+    public ParallelSearch(TranspositionTable table, int threads) {
+        this.table = table;
+        this.searches = new Search[Math.max(1, threads)];
+        for (int i = 0; i < searches.length; i++) {
+            searches[i] = new Search(table);
+        }
+        if (searches.length > 1) {
+            helpers = Executors.newFixedThreadPool(searches.length - 1, runnable -> {
+                Thread thread = new Thread(runnable, "search-helper");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            helpers = null;
+        }
+    }
+
+    /**
+     * Searches copies of the position on all threads, the position itself is not touched
+     * @param timeMillis time budget
+     * @param maxNodes node budget of each thread, 0 for no limit
+     * @return best move of the deepest finished search, Move.NONE if the side to move has no legal move
+     */
+    public int search(Position position, long timeMillis, long maxNodes) {
+        table.newSearch();
+        for (Search search : searches) {
+            search.resetStop();
+        }
+
+        List<Future<?>> running = new ArrayList<>(searches.length - 1);
+        for (int i = 1; i < searches.length; i++) {
+            Search search = searches[i];
+            Position copy = new Position(position);
+            int firstDepth = 1 + (i & 1);
+            running.add(helpers.submit(() -> search.iterate(copy, timeMillis, maxNodes, firstDepth)));
+        }
+
+        searches[0].iterate(new Position(position), timeMillis, maxNodes, 1);
+
+        for (int i = 1; i < searches.length; i++) {
+            searches[i].stop();
+        }
+        for (Future<?> future : running) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        //a helper that finished a deeper iteration knows more than the main search
+        Search best = searches[0];
+        for (Search search : searches) {
+            if (search.getCompletedDepth() > best.getCompletedDepth() && search.getBestMove() != Move.NONE) {
+                best = search;
+            }
+        }
+        return best.getBestMove();
+    }
+
+    /**
+     * Stops the helper threads, the search cannot be used afterwards
+     */
+    public void shutdown() {
+        if (helpers != null) {
+            helpers.shutdownNow();
+        }
+    }
+
+    /**
+     * @return nodes searched by all threads in the last search
+     */
+    public long getNodes() {
+        long nodes = 0;
+        for (Search search : searches) {
+            nodes += search.getNodes();
+        }
+        return nodes;
+    }
+
+    /**
+     * @return deepest iteration finished by any thread in the last search
+     */
+    public int getCompletedDepth() {
+        int depth = 0;
+        for (Search search : searches) {
+            depth = Math.max(depth, search.getCompletedDepth());
+        }
+        return depth;
+    }
+
+    /**
+     * @return score of the main search from the view of the side to move
+     */
+    public int getBestScore() {
+        return searches[0].getBestScore();
+    }
+
+    /**
+     * @param tablebases probed by every thread, null for none
+     */
+    public void setTablebases(Tablebases tablebases) {
+        for (Search search : searches) {
+            search.setTablebases(tablebases);
+        }
+    }
+
+    public int getThreads() {
+        return searches.length;
+    }
+
+    public TranspositionTable getTable() {
+        return table;
+    }
+}
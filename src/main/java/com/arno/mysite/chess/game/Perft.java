@@ -0,0 +1,146 @@
+package com.arno.mysite.chess.game;
+
+import java.util.Arrays;
+
+/**
+ * Counts the leaf nodes of the legal move tree to a fixed depth.
+ * The counts of the reference positions are known, so any difference points to a move generation bug,
+ * and the time it takes measures the speed of generating, making and unmaking moves.
+ * PerftTest checks the reference positions with the tests, run this without arguments to check them with timings
+ * or with a depth and a FEN to print the divide counts
+ */
+public class Perft {
+
+    private static final int MAX_DEPTH = 32;
+
+    //FEN followed by the expected node counts for depth 1, 2, ...
+    static final Object[][] REFERENCE = {
+            {Position.START_FEN, new long[]{20, 400, 8902, 197281, 4865609}},
+            {"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq -", new long[]{48, 2039, 97862, 4085603}},
+            {"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - -", new long[]{14, 191, 2812, 43238, 674624}},
+            {"r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq -", new long[]{6, 264, 9467, 422333}},
+            {"rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ -", new long[]{44, 1486, 62379, 2103487}},
+            {"r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - -", new long[]{46, 2079, 89890, 3894594}}
+    };
+
+    private final Position position;
+    //one list and undo per ply, so counting allocates nothing
+    private final MoveList[] moveLists = new MoveList[MAX_DEPTH];
+    private final UndoInfo[] undos = new UndoInfo[MAX_DEPTH];
+
+    public Perft(Position position) {
+        this.position = position;
+        for (int i = 0; i < MAX_DEPTH; i++) {
+            moveLists[i] = new MoveList();
+            undos[i] = new UndoInfo();
+        }
+    }
+
+    /**
+     * @param depth 0 < depth <= MAX_DEPTH
+     * @return number of leaf nodes depth plies below the position
+     */
+    public long perft(int depth) {
+        return perft(depth, 0);
+    }
+
+    private long perft(int depth, int ply) {
+        MoveList moves = moveLists[ply];
+        MoveGenerator.generateLegalMoves(position, moves);
+        //the last ply only has to be counted, not played
+        if (depth == 1) {
+            return moves.size();
+        }
+        long nodes = 0;
+        UndoInfo undo = undos[ply];
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            position.makeMove(move, undo);
+            nodes += perft(depth - 1, ply + 1);
+            position.unmakeMove(move, undo);
+        }
+        return nodes;
+    }
+
+    /**
+     * Prints the node count below every root move, used to find the move a bug hides behind
+     * @return total number of leaf nodes
+     */
+    public long divide(int depth) {
+        MoveList moves = moveLists[0];
+        MoveGenerator.generateLegalMoves(position, moves);
+        long total = 0;
+        UndoInfo undo = undos[0];
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            long nodes = 1;
+            if (depth > 1) {
+                position.makeMove(move, undo);
+                nodes = perft(depth - 1, 1);
+                position.unmakeMove(move, undo);
+            }
+            System.out.println(Move.toAlgebraic(move) + ": " + nodes);
+            total += nodes;
+        }
+        return total;
+    }
+
+    /**
+     * Checks every reference position to its listed depths
+     * @return true if all counts match
+     */
+    public static boolean runReferenceSuite() {
+        boolean passed = true;
+        long totalNodes = 0;
+        long totalTime = 0;
+        for (Object[] reference : REFERENCE) {
+            String fen = (String) reference[0];
+            long[] expected = (long[]) reference[1];
+            Position position = new Position();
+            position.setFen(fen);
+            Perft perft = new Perft(position);
+            System.out.println(fen);
+            for (int depth = 1; depth <= expected.length; depth++) {
+                long start = System.nanoTime();
+                long nodes = perft.perft(depth);
+                long time = System.nanoTime() - start;
+                totalNodes += nodes;
+                totalTime += time;
+                boolean correct = nodes == expected[depth - 1];
+                passed &= correct;
+                System.out.println("  depth " + depth + ": " + nodes + (correct ? " ok" : " FAILED, expected " + expected[depth - 1])
+                        + " (" + nodesPerSecond(nodes, time) + " nodes/s)");
+            }
+        }
+        System.out.println((passed ? "All counts match" : "Counts differ") + ", " + totalNodes + " nodes in "
+                + totalTime / 1_000_000 + " ms (" + nodesPerSecond(totalNodes, totalTime) + " nodes/s)");
+        return passed;
+    }
+
+    private static long nodesPerSecond(long nodes, long nanos) {
+        return nanos == 0 ? 0 : nodes * 1_000_000_000L / nanos;
+    }
+
+    /**
+     * Usage: Perft              checks the reference positions, exits with 1 on a wrong count
+     *        Perft depth [FEN]  prints the divide counts of the position, the start position by default
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            if (!runReferenceSuite()) {
+                System.exit(1);
+            }
+            return;
+        }
+        int depth = Integer.parseInt(args[0]);
+        if (depth < 1 || depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Depth has to be between 1 and " + MAX_DEPTH);
+        }
+        Position position = new Position();
+        position.setFen(args.length > 1 ? String.join(" ", Arrays.copyOfRange(args, 1, args.length)) : Position.START_FEN);
+        long start = System.nanoTime();
+        long nodes = new Perft(position).divide(depth);
+        long time = System.nanoTime() - start;
+        System.out.println("Nodes: " + nodes + " in " + time / 1_000_000 + " ms (" + nodesPerSecond(nodes, time) + " nodes/s)");
+    }
+}
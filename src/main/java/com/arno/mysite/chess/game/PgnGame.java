@@ -0,0 +1,124 @@
+package com.arno.mysite.chess.game;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One game of a PGN file: its tags, the packed moves from the starting position and the result.
+ * The reader refills the same object for every game
+ */
+public class PgnGame {
+
+    public static final String WHITE_WINS = "1-0";
+    public static final String BLACK_WINS = "0-1";
+    public static final String DRAW = "1/2-1/2";
+    public static final String UNFINISHED = "*";
+
+    private final Map<String, String> tags;
+    private int[] moves;
+    private int moveCount;
+    private String result;
+
+    public PgnGame() {
+        this.tags = new LinkedHashMap<>();
+        this.moves = new int[128];
+        this.moveCount = 0;
+        this.result = UNFINISHED;
+    }
+
+    /**
+     * Creates the game played on the board so far, the result is taken from the board
+     */
+    public static PgnGame fromBoard(Board board) {
+        PgnGame game = new PgnGame();
+        if (board.getStartFen() != null) {
+            game.setTag("SetUp", "1");
+            game.setTag("FEN", board.getStartFen());
+        }
+        for (int move : board.getMoveHistory()) {
+            game.addMove(move);
+        }
+        if (board.isWhiteMated()) {
+            game.setResult(BLACK_WINS);
+        } else if (board.isBlackMated()) {
+            game.setResult(WHITE_WINS);
+        } else if (board.isDrawn()) {
+            game.setResult(DRAW);
+        }
+        return game;
+    }
+
+    /**
+     * Replays the moves on a new board
+     * @throws IllegalArgumentException if a move is not legal
+     */
+    public Board toBoard() {
+        String fen = getStartFen();
+        Board board = fen == null ? new Board() : Board.fromFen(fen);
+        for (int i = 0; i < moveCount; i++) {
+            if (!board.playMove(moves[i])) {
+                throw new IllegalArgumentException("Illegal move " + (i + 1) + ": " + Move.toAlgebraic(moves[i]));
+            }
+        }
+        return board;
+    }
+
+    public void clear() {
+        tags.clear();
+        moveCount = 0;
+        result = UNFINISHED;
+    }
+
+    public void addMove(int move) {
+        if (moveCount == moves.length) {
+            moves = Arrays.copyOf(moves, moves.length * 2);
+        }
+        moves[moveCount++] = move;
+    }
+
+    public int getMove(int index) {
+        return moves[index];
+    }
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    public int[] getMoves() {
+        return Arrays.copyOf(moves, moveCount);
+    }
+
+    /**
+     * @return value of the tag, null if the game has no such tag
+     */
+    public String getTag(String name) {
+        return tags.get(name);
+    }
+
+    public void setTag(String name, String value) {
+        tags.put(name, value);
+    }
+
+    public Map<String, String> getTags() {
+        return tags;
+    }
+
+    /**
+     * @return FEN of the starting position, null for the standard one
+     */
+    public String getStartFen() {
+        return tags.get("FEN");
+    }
+
+    /**
+     * @return WHITE_WINS, BLACK_WINS, DRAW or UNFINISHED
+     */
+    public String getResult() {
+        return result;
+    }
+
+    public void setResult(String result) {
+        this.result = result;
+    }
+}
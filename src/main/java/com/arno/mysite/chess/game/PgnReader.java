@@ -0,0 +1,351 @@
+package com.arno.mysite.chess.game;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads the games of a PGN file one after another. The input is read in fixed-size chunks, a file opened with map
+ * is memory-mapped one window at a time, so files of any size are read without holding them in memory.
+ * The moves are parsed and checked against the legal moves while reading, comments, variations and NAGs are skipped
+ */
+public class PgnReader implements Closeable {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+
+    //exactly one of the two sources is set
+    private final InputStream in;
+    private final FileChannel channel;
+    //file offset of the next window to map
+    private long windowStart;
+    private ByteBuffer buffer;
+    //read buffer of the stream, null when mapped
+    private final byte[] chunk;
+    private int pushback;
+
+    private final Position position;
+    private final UndoInfo undo;
+    private final San san;
+    private final StringBuilder token;
+    private byte[] value;
+    private int line;
+    private long games;
+
+    /**
+     * Reads the games from the stream in chunks, the stream is closed along with the reader
+     */
+    public PgnReader(InputStream in) {
+        this(in, null, new byte[CHUNK_SIZE]);
+    }
+
+    private PgnReader(InputStream in, FileChannel channel, byte[] chunk) {
+        this.in = in;
+        this.channel = channel;
+        this.windowStart = 0;
+        this.chunk = chunk;
+        this.buffer = chunk == null ? ByteBuffer.allocate(0) : ByteBuffer.wrap(chunk, 0, 0);
+        this.pushback = -1;
+        this.position = new Position();
+        this.undo = new UndoInfo();
+        this.san = new San();
+        this.token = new StringBuilder(32);
+        this.value = new byte[256];
+        this.line = 1;
+        this.games = 0;
+    }
+
+    /**
+     * Reads the games of the file through memory-mapped windows
+     */
+    public static PgnReader map(Path path) throws IOException {
+        return new PgnReader(null, FileChannel.open(path, StandardOpenOption.READ), null);
+    }
+
+    /**
+     * Reads the next game into the given one, its moves are checked against the rules on the way.
+     * A game with an illegal or unreadable move is still read to its end, so reading can go on with the next game
+     * @return false if there are no more games
+     * @throws IllegalArgumentException if the game has an illegal or unreadable move
+     */
+    public boolean next(PgnGame game) throws IOException {
+        game.clear();
+        boolean started = false;
+        boolean inMoves = false;
+        String error = null;
+
+        int c;
+        while ((c = skipWhitespace()) != -1) {
+            if (c == '[') {
+                if (inMoves) {
+                    //the next game started without a result
+                    pushback = c;
+                    break;
+                }
+                readTag(game);
+                started = true;
+            } else if (c == '{') {
+                skipUntil('}');
+            } else if (c == ';' || c == '%') {
+                skipUntil('\n');
+            } else if (c == '(') {
+                skipVariation();
+            } else if (c == '$') {
+                readToken(c);
+            } else if (c == ')' || c == '}') {
+                //stray closing bracket
+                continue;
+            } else {
+                if (!inMoves) {
+                    String fen = game.getStartFen();
+                    position.setFen(fen == null ? Position.START_FEN : fen);
+                    inMoves = true;
+                    started = true;
+                }
+                readToken(c);
+                String result = result();
+                if (result != null) {
+                    game.setResult(result);
+                    break;
+                }
+                if (error != null) {
+                    continue;
+                }
+                int start = skipMoveNumber();
+                if (start == token.length()) {
+                    continue;
+                }
+                try {
+                    int move = san.parse(position, token, start, token.length());
+                    position.makeMove(move, undo);
+                    game.addMove(move);
+                } catch (IllegalArgumentException e) {
+                    error = "Game " + (games + 1) + ", line " + line + ": " + e.getMessage();
+                }
+            }
+        }
+
+        if (!started) {
+            return false;
+        }
+        games++;
+        if (error != null) {
+            throw new IllegalArgumentException(error);
+        }
+        return true;
+    }
+
+    /**
+     * @return number of games read so far
+     */
+    public long getGames() {
+        return games;
+    }
+
+    /**
+     * @return position after the last move of the game read last
+     */
+    public Position getPosition() {
+        return position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        } else {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads the tag after '[' into the game, like [White "Carlsen, Magnus"]
+     */
+    private void readTag(PgnGame game) throws IOException {
+        token.setLength(0);
+        int c = skipWhitespace();
+        while (c != -1 && c != '"' && c != ']' && !Character.isWhitespace(c)) {
+            token.append((char) c);
+            c = read();
+        }
+        while (c != -1 && c != '"' && c != ']') {
+            c = read();
+        }
+        int length = 0;
+        if (c == '"') {
+            while ((c = read()) != -1 && c != '"') {
+                if (c == '\\' && (c = read()) == -1) {
+                    break;
+                }
+                if (length == value.length) {
+                    value = Arrays.copyOf(value, length * 2);
+                }
+                value[length++] = (byte) c;
+            }
+            skipUntil(']');
+        }
+        game.setTag(token.toString(), new String(value, 0, length, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads the token starting with c up to the next whitespace or PGN delimiter
+     */
+    private void readToken(int c) throws IOException {
+        token.setLength(0);
+        while (c != -1) {
+            if (Character.isWhitespace(c) || c == '{' || c == '(' || c == ')' || c == ';' || c == '[') {
+                pushback = c;
+                break;
+            }
+            token.append((char) c);
+            c = read();
+        }
+    }
+
+    /**
+     * @return the result the token stands for, null if it is no result
+     */
+    private String result() {
+        if (PgnGame.WHITE_WINS.contentEquals(token)) {
+            return PgnGame.WHITE_WINS;
+        }
+        if (PgnGame.BLACK_WINS.contentEquals(token)) {
+            return PgnGame.BLACK_WINS;
+        }
+        if (PgnGame.DRAW.contentEquals(token)) {
+            return PgnGame.DRAW;
+        }
+        if (PgnGame.UNFINISHED.contentEquals(token)) {
+            return PgnGame.UNFINISHED;
+        }
+        return null;
+    }
+
+    /**
+     * @return index in the token after a leading move number like "12." or "12...", 0 if there is none
+     */
+    private int skipMoveNumber() {
+        int i = 0;
+        while (i < token.length() && Character.isDigit(token.charAt(i))) {
+            i++;
+        }
+        if (i == token.length() || token.charAt(i) != '.') {
+            return i == token.length() ? i : 0;
+        }
+        while (i < token.length() && token.charAt(i) == '.') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Skips a variation after '(', nested variations and comments included
+     */
+    private void skipVariation() throws IOException {
+        int depth = 1;
+        int c;
+        while (depth > 0 && (c = read()) != -1) {
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '{') {
+                skipUntil('}');
+            } else if (c == ';') {
+                skipUntil('\n');
+            }
+        }
+    }
+
+    private void skipUntil(int end) throws IOException {
+        int c;
+        while ((c = read()) != -1 && c != end) {
+        }
+    }
+
+    private int skipWhitespace() throws IOException {
+        int c;
+        while ((c = read()) != -1 && Character.isWhitespace(c)) {
+        }
+        return c;
+    }
+
+    private int read() throws IOException {
+        if (pushback != -1) {
+            int c = pushback;
+            pushback = -1;
+            return c;
+        }
+        if (!buffer.hasRemaining() && !refill()) {
+            return -1;
+        }
+        int c = buffer.get() & 0xFF;
+        if (c == '\n') {
+            line++;
+        }
+        return c;
+    }
+
+    /**
+     * Maps the next window of the file or reads the next chunk of the stream
+     * @return false at the end of the input
+     */
+    private boolean refill() throws IOException {
+        if (channel != null) {
+            long size = Math.min(WINDOW_SIZE, channel.size() - windowStart);
+            if (size <= 0) {
+                return false;
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, size);
+            windowStart += size;
+            return true;
+        }
+        int read;
+        do {
+            read = in.read(chunk);
+        } while (read == 0);
+        if (read < 0) {
+            return false;
+        }
+        buffer.clear();
+        buffer.limit(read);
+        return true;
+    }
+
+    /**
+     * Reads every game of the file and prints the number of games, moves and illegal games along with the time it took
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: PgnReader <file.pgn>");
+            return;
+        }
+        long start = System.nanoTime();
+        long moves = 0;
+        long errors = 0;
+        PgnGame game = new PgnGame();
+        try (PgnReader reader = PgnReader.map(Paths.get(args[0]))) {
+            while (true) {
+                try {
+                    if (!reader.next(game)) {
+                        break;
+                    }
+                    moves += game.getMoveCount();
+                } catch (IllegalArgumentException e) {
+                    errors++;
+                    System.out.println(e.getMessage());
+                }
+            }
+            long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+            System.out.println(reader.getGames() + " games, " + moves + " moves, " + errors + " with illegal moves in "
+                    + millis + " ms (" + moves * 1000 / millis + " moves/s)");
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.arno.mysite.chess.game;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * Writes games as PGN: the seven required tags first, then the other tags, then the moves in algebraic notation
+ * wrapped at 80 columns. Each game is built in a reused buffer and written in one piece
+ */
+public class PgnWriter implements Closeable, Flushable {
+
+    private static final int LINE_LENGTH = 80;
+    private static final String[] REQUIRED_TAGS = {"Event", "Site", "Date", "Round", "White", "Black", "Result"};
+
+    private final Writer out;
+    private final Position position;
+    private final UndoInfo undo;
+    private final San san;
+    private final StringBuilder text;
+    private final StringBuilder word;
+    private int lineLength;
+
+    /**
+     * @param out closed along with the writer
+     */
+    public PgnWriter(Writer out) {
+        this.out = out;
+        this.position = new Position();
+        this.undo = new UndoInfo();
+        this.san = new San();
+        this.text = new StringBuilder(4096);
+        this.word = new StringBuilder(16);
+    }
+
+    /**
+     * @throws IllegalArgumentException if a move of the game is not legal
+     */
+    public void write(PgnGame game) throws IOException {
+        text.setLength(0);
+        for (String name : REQUIRED_TAGS) {
+            String value = name.equals("Result") ? game.getResult() : game.getTag(name);
+            appendTag(name, value == null ? "?" : value);
+        }
+        for (Map.Entry<String, String> tag : game.getTags().entrySet()) {
+            if (!isRequired(tag.getKey())) {
+                appendTag(tag.getKey(), tag.getValue());
+            }
+        }
+        text.append('\n');
+
+        String fen = game.getStartFen();
+        position.setFen(fen == null ? Position.START_FEN : fen);
+        lineLength = 0;
+        for (int i = 0; i < game.getMoveCount(); i++) {
+            int move = game.getMove(i);
+            word.setLength(0);
+            if (position.getSideToMove() == Position.WHITE) {
+                word.append(position.getFullmoveNumber()).append('.');
+                appendWord();
+                word.setLength(0);
+            } else if (i == 0) {
+                word.append(position.getFullmoveNumber()).append("...");
+                appendWord();
+                word.setLength(0);
+            }
+            san.format(position, move, word);
+            appendWord();
+            position.makeMove(move, undo);
+        }
+        word.setLength(0);
+        word.append(game.getResult());
+        appendWord();
+        text.append("\n\n");
+        out.write(text.toString());
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void appendTag(String name, String value) {
+        text.append('[').append(name).append(" \"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                text.append('\\');
+            }
+            text.append(c);
+        }
+        text.append("\"]\n");
+    }
+
+    /**
+     * Appends the word to the movetext, starting a new line if it would not fit
+     */
+    private void appendWord() {
+        if (lineLength > 0 && lineLength + 1 + word.length() > LINE_LENGTH) {
+            text.append('\n');
+            lineLength = 0;
+        }
+        if (lineLength > 0) {
+            text.append(' ');
+            lineLength++;
+        }
+        text.append(word);
+        lineLength += word.length();
+    }
+
+    private static boolean isRequired(String name) {
+        for (String required : REQUIRED_TAGS) {
+            if (required.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
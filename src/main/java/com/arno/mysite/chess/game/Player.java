@@ -1,5 +1,22 @@
 package com.arno.mysite.chess.game;
 
 public interface Player {
-    
+
+    /**
+     * @return role of the pieces the player moves, 'W' or 'B'
+     */
+    char getRole();
+
+    /**
+     * Chooses the next move of the player, the board is left as it was
+     * @param board != null, with the player's role to move
+     * @return packed move, Move.NONE if there is no legal move
+     */
+    int selectMove(Board board);
+
+    /**
+     * Called once the game is over, a player on the other end of a connection still has to hear of the last move
+     */
+    default void gameOver(Board board) {
+    }
 }
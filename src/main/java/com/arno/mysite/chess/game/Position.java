@@ -0,0 +1,717 @@
+package com.arno.mysite.chess.game;
+
+import java.util.Arrays;
+
+/**
+ * Bitboard model of the pieces on the board.
+ * Squares are indexed as y * WIDTH + x, so bit 0 is the top left square (x = 0, y = 0)
+ * and white pawns move towards lower indexes.
+ */
+public class Position {
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    public static final int PAWN = Pieces.PAWN.ordinal();
+    public static final int BISHOP = Pieces.BISHOP.ordinal();
+    public static final int ROOK = Pieces.ROOK.ordinal();
+    public static final int KNIGHT = Pieces.KNIGHT.ordinal();
+    public static final int QUEEN = Pieces.QUEEN.ordinal();
+    public static final int KING = Pieces.KING.ordinal();
+
+    public static final int SQUARES = Board.WIDTH * Board.HEIGHT;
+
+    public static final long FILE_A = 0x0101010101010101L;
+    public static final long FILE_H = FILE_A << 7;
+
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
+    public static final int ALL_CASTLING = 15;
+
+    public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq -";
+
+    //plies without a capture or pawn move after which the game is drawn
+    public static final int FIFTY_MOVE_PLIES = 100;
+    //a8 and every square of its colour
+    private static final long LIGHT_SQUARES = 0xAA55AA55AA55AA55L;
+
+    //castling rights that stay after a piece leaves or enters the square
+    private static final int[] CASTLING_MASK = new int[SQUARES];
+
+    static {
+        for (int square = 0; square < SQUARES; square++) {
+            CASTLING_MASK[square] = ALL_CASTLING;
+        }
+        CASTLING_MASK[square(0, 0)] &= ~BLACK_QUEENSIDE;
+        CASTLING_MASK[square(4, 0)] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+        CASTLING_MASK[square(7, 0)] &= ~BLACK_KINGSIDE;
+        CASTLING_MASK[square(0, Board.HEIGHT-1)] &= ~WHITE_QUEENSIDE;
+        CASTLING_MASK[square(4, Board.HEIGHT-1)] &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+        CASTLING_MASK[square(7, Board.HEIGHT-1)] &= ~WHITE_KINGSIDE;
+    }
+
+    private static final Pieces[] TYPES = Pieces.values();
+
+    //FEN letters of the piece types, indexed by Pieces.ordinal()
+    public static final String PIECE_LETTERS = "pbrnqk";
+
+    //one bitboard per colour and piece type, indexed by Pieces.ordinal()
+    private final long[][] pieces;
+    private final long[] occupancy;
+    private long occupied;
+
+    private int sideToMove;
+    private int castlingRights;
+    private int enPassantSquare;
+    //plies since the last capture or pawn move, and the number of the move starting at 1
+    private int halfmoveClock;
+    private int fullmoveNumber;
+
+    //Zobrist key, updated with every change to the position
+    private long key;
+    //keys of the positions before each move made since the position was set up, for finding repetitions
+    private long[] keyHistory;
+    private int historySize;
+    //Zobrist key of the pawns only, for caching pawn structure
+    private long pawnKey;
+
+    //material and piece-square values per colour and the game phase, kept up to date for Evaluation
+    private final int[] midgameScore;
+    private final int[] endgameScore;
+    private int phase;
+
+    public Position() {
+        this.pieces = new long[2][TYPES.length];
+        this.occupancy = new long[2];
+        this.occupied = 0L;
+
+        this.sideToMove = WHITE;
+        this.castlingRights = 0;
+        this.enPassantSquare = -1;
+        this.halfmoveClock = 0;
+        this.fullmoveNumber = 1;
+        this.key = computeKey();
+        this.pawnKey = 0L;
+        this.keyHistory = new long[256];
+        this.historySize = 0;
+
+        this.midgameScore = new int[2];
+        this.endgameScore = new int[2];
+        this.phase = 0;
+    }
+
+    /**
+     * Copies the position, the copy shares no state with the original so each thread can search its own
+     */
+    public Position(Position other) {
+        this.pieces = new long[2][];
+        this.pieces[WHITE] = other.pieces[WHITE].clone();
+        this.pieces[BLACK] = other.pieces[BLACK].clone();
+        this.occupancy = other.occupancy.clone();
+        this.occupied = other.occupied;
+
+        this.sideToMove = other.sideToMove;
+        this.castlingRights = other.castlingRights;
+        this.enPassantSquare = other.enPassantSquare;
+        this.halfmoveClock = other.halfmoveClock;
+        this.fullmoveNumber = other.fullmoveNumber;
+        this.key = other.key;
+        this.pawnKey = other.pawnKey;
+        this.keyHistory = other.keyHistory.clone();
+        this.historySize = other.historySize;
+
+        this.midgameScore = other.midgameScore.clone();
+        this.endgameScore = other.endgameScore.clone();
+        this.phase = other.phase;
+    }
+
+    public static int square(int x, int y) {
+        return y * Board.WIDTH + x;
+    }
+
+    public static int fileOf(int square) {
+        return square % Board.WIDTH;
+    }
+
+    public static int rankOf(int square) {
+        return square / Board.WIDTH;
+    }
+
+    public static long bit(int square) {
+        return 1L << square;
+    }
+
+    public static int colour(char role) {
+        return role == 'W' ? WHITE : BLACK;
+    }
+
+    public static char role(int colour) {
+        return colour == WHITE ? 'W' : 'B';
+    }
+
+    public static Pieces type(int type) {
+        return TYPES[type];
+    }
+
+    /**
+     * @return name of the square like "e4"
+     */
+    public static String squareName(int square) {
+        return "" + (char) ('a' + fileOf(square)) + (Board.HEIGHT - rankOf(square));
+    }
+
+    /**
+     * Sets up the position from a FEN string: placement, side to move, castling rights, en passant square and the move counters.
+     * The string is scanned char by char straight into the bitboards, nothing is allocated, so a single position can be reused
+     * to load any number of FEN strings. The move counters may be left out
+     */
+    public void setFen(String fen) {
+        clear();
+        historySize = 0;
+        int i = 0;
+        int x = 0;
+        int y = 0;
+        char c;
+        while (i < fen.length() && (c = fen.charAt(i++)) != ' ') {
+            if (c == '/') {
+                y++;
+                x = 0;
+            } else if (c >= '1' && c <= '8') {
+                x += c - '0';
+            } else {
+                int type = PIECE_LETTERS.indexOf(Character.toLowerCase(c));
+                if (type == -1 || x >= Board.WIDTH || y >= Board.HEIGHT) {
+                    throw new IllegalArgumentException("Invalid FEN placement: " + fen);
+                }
+                putPiece(Character.isUpperCase(c) ? WHITE : BLACK, type, square(x, y));
+                x++;
+            }
+        }
+
+        sideToMove = i < fen.length() && fen.charAt(i) == 'b' ? BLACK : WHITE;
+        i += 2;
+
+        castlingRights = 0;
+        while (i < fen.length() && (c = fen.charAt(i++)) != ' ') {
+            switch (c) {
+                case 'K' -> castlingRights |= WHITE_KINGSIDE;
+                case 'Q' -> castlingRights |= WHITE_QUEENSIDE;
+                case 'k' -> castlingRights |= BLACK_KINGSIDE;
+                case 'q' -> castlingRights |= BLACK_QUEENSIDE;
+            }
+        }
+
+        enPassantSquare = -1;
+        if (i + 1 < fen.length() && fen.charAt(i) != '-') {
+            int square = square(fen.charAt(i) - 'a', Board.HEIGHT - (fen.charAt(i + 1) - '0'));
+            //kept only if a pawn can take, like after makeMove
+            if ((Attacks.pawn(1 - sideToMove, square) & pieces[sideToMove][PAWN]) != 0) {
+                enPassantSquare = square;
+            }
+        }
+        while (i < fen.length() && fen.charAt(i) != ' ') {
+            i++;
+        }
+
+        halfmoveClock = 0;
+        while (++i < fen.length() && fen.charAt(i) != ' ') {
+            halfmoveClock = halfmoveClock * 10 + digit(fen, i);
+        }
+        fullmoveNumber = 0;
+        while (++i < fen.length() && fen.charAt(i) != ' ') {
+            fullmoveNumber = fullmoveNumber * 10 + digit(fen, i);
+        }
+        fullmoveNumber = Math.max(fullmoveNumber, 1);
+        key = computeKey();
+    }
+
+    private static int digit(String fen, int index) {
+        char c = fen.charAt(index);
+        if (c < '0' || c > '9') {
+            throw new IllegalArgumentException("Invalid FEN move counter: " + fen);
+        }
+        return c - '0';
+    }
+
+    /**
+     * @return the position as a FEN string
+     */
+    public String toFen() {
+        StringBuilder fen = new StringBuilder(90);
+        for (int y = 0; y < Board.HEIGHT; y++) {
+            int empty = 0;
+            for (int x = 0; x < Board.WIDTH; x++) {
+                int square = square(x, y);
+                if (isEmpty(square)) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    fen.append(empty);
+                    empty = 0;
+                }
+                char letter = PIECE_LETTERS.charAt(typeAt(square));
+                fen.append(colourAt(square) == WHITE ? Character.toUpperCase(letter) : letter);
+            }
+            if (empty > 0) {
+                fen.append(empty);
+            }
+            if (y < Board.HEIGHT - 1) {
+                fen.append('/');
+            }
+        }
+
+        fen.append(sideToMove == WHITE ? " w " : " b ");
+        if (castlingRights == 0) {
+            fen.append('-');
+        }
+        if ((castlingRights & WHITE_KINGSIDE) != 0) {
+            fen.append('K');
+        }
+        if ((castlingRights & WHITE_QUEENSIDE) != 0) {
+            fen.append('Q');
+        }
+        if ((castlingRights & BLACK_KINGSIDE) != 0) {
+            fen.append('k');
+        }
+        if ((castlingRights & BLACK_QUEENSIDE) != 0) {
+            fen.append('q');
+        }
+        fen.append(' ').append(enPassantSquare == -1 ? "-" : squareName(enPassantSquare));
+        fen.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber);
+        return fen.toString();
+    }
+
+    /**
+     * Removes every piece from the bitboards
+     */
+    public void clear() {
+        for (int colour = WHITE; colour <= BLACK; colour++) {
+            for (int type = 0; type < TYPES.length; type++) {
+                pieces[colour][type] = 0L;
+            }
+            occupancy[colour] = 0L;
+            midgameScore[colour] = 0;
+            endgameScore[colour] = 0;
+        }
+        occupied = 0L;
+        phase = 0;
+        key = computeKey();
+        pawnKey = 0L;
+    }
+
+    /**
+     * @param square has to be empty
+     */
+    public void putPiece(int colour, int type, int square) {
+        long bit = bit(square);
+        pieces[colour][type] |= bit;
+        occupancy[colour] |= bit;
+        occupied |= bit;
+        key ^= Zobrist.piece(colour, type, square);
+        if (type == PAWN) {
+            pawnKey ^= Zobrist.piece(colour, type, square);
+        }
+        midgameScore[colour] += Evaluation.midgame(colour, type, square);
+        endgameScore[colour] += Evaluation.endgame(colour, type, square);
+        phase += Evaluation.phase(type);
+    }
+
+    public void removePiece(int colour, int type, int square) {
+        long bit = ~bit(square);
+        pieces[colour][type] &= bit;
+        occupancy[colour] &= bit;
+        occupied &= bit;
+        key ^= Zobrist.piece(colour, type, square);
+        if (type == PAWN) {
+            pawnKey ^= Zobrist.piece(colour, type, square);
+        }
+        midgameScore[colour] -= Evaluation.midgame(colour, type, square);
+        endgameScore[colour] -= Evaluation.endgame(colour, type, square);
+        phase -= Evaluation.phase(type);
+    }
+
+    public void movePiece(int colour, int type, int from, int to) {
+        long bits = bit(from) | bit(to);
+        pieces[colour][type] ^= bits;
+        occupancy[colour] ^= bits;
+        occupied ^= bits;
+        long change = Zobrist.piece(colour, type, from) ^ Zobrist.piece(colour, type, to);
+        key ^= change;
+        if (type == PAWN) {
+            pawnKey ^= change;
+        }
+        midgameScore[colour] += Evaluation.midgame(colour, type, to) - Evaluation.midgame(colour, type, from);
+        endgameScore[colour] += Evaluation.endgame(colour, type, to) - Evaluation.endgame(colour, type, from);
+    }
+
+    /**
+     * Builds the Zobrist key from scratch, makeMove keeps it up to date afterwards
+     */
+    private long computeKey() {
+        long result = Zobrist.castling(castlingRights) ^ Zobrist.enPassant(enPassantSquare);
+        if (sideToMove == BLACK) {
+            result ^= Zobrist.side();
+        }
+        for (int colour = WHITE; colour <= BLACK; colour++) {
+            for (int type = 0; type < TYPES.length; type++) {
+                long set = pieces[colour][type];
+                while (set != 0) {
+                    result ^= Zobrist.piece(colour, type, Long.numberOfTrailingZeros(set));
+                    set &= set - 1;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return colour of the piece on the square, -1 if empty
+     */
+    public int colourAt(int square) {
+        long bit = bit(square);
+        if ((occupancy[WHITE] & bit) != 0) {
+            return WHITE;
+        }
+        if ((occupancy[BLACK] & bit) != 0) {
+            return BLACK;
+        }
+        return -1;
+    }
+
+    /**
+     * @return type of the piece on the square, -1 if empty
+     */
+    public int typeAt(int square) {
+        long bit = bit(square);
+        if ((occupied & bit) == 0) {
+            return -1;
+        }
+        int colour = (occupancy[WHITE] & bit) != 0 ? WHITE : BLACK;
+        for (int type = 0; type < TYPES.length; type++) {
+            if ((pieces[colour][type] & bit) != 0) {
+                return type;
+            }
+        }
+        return -1;
+    }
+
+    public boolean isEmpty(int square) {
+        return (occupied & bit(square)) == 0;
+    }
+
+    public long getPieces(int colour, int type) {
+        return pieces[colour][type];
+    }
+
+    public long getOccupancy(int colour) {
+        return occupancy[colour];
+    }
+
+    public long getOccupied() {
+        return occupied;
+    }
+
+    /**
+     * @return square of the king, -1 if the colour has no king
+     */
+    public int kingSquare(int colour) {
+        long king = pieces[colour][KING];
+        return king == 0 ? -1 : Long.numberOfTrailingZeros(king);
+    }
+
+    /**
+     * Builds the packed move for a piece on the from square, looking up the moving and captured pieces and the flags
+     * @param promotion piece type a pawn turns into, -1 if none
+     */
+    public int encodeMove(int from, int to, int promotion) {
+        int us = colourAt(from);
+        int type = typeAt(from);
+        int captured = (occupancy[1 - us] & bit(to)) != 0 ? typeAt(to) : -1;
+        int flags = 0;
+        if (type == PAWN) {
+            if (to == enPassantSquare && fileOf(from) != fileOf(to)) {
+                captured = PAWN;
+                flags = Move.EN_PASSANT;
+            } else if (Math.abs(to - from) == 2 * Board.WIDTH) {
+                flags = Move.DOUBLE_PUSH;
+            }
+        } else if (type == KING && Math.abs(to - from) == 2) {
+            flags = Move.CASTLING;
+        }
+        return Move.of(from, to, type, captured, promotion, flags);
+    }
+
+    /**
+     * Executes the move for the colour of the moving piece and passes the turn to the other colour
+     * @param move packed move, the from square holds the moving piece
+     * @param undo != null, filled with what unmakeMove has to restore
+     */
+    public void makeMove(int move, UndoInfo undo) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int type = Move.piece(move);
+        int us = (occupancy[WHITE] & bit(from)) != 0 ? WHITE : BLACK;
+        int them = 1 - us;
+
+        undo.save(castlingRights, enPassantSquare, halfmoveClock, key, sideToMove);
+        if (historySize == keyHistory.length) {
+            keyHistory = Arrays.copyOf(keyHistory, historySize * 2);
+        }
+        keyHistory[historySize++] = key;
+
+        if (Move.isEnPassant(move)) {
+            removePiece(them, PAWN, enPassantCapture(us, to));
+        } else if (Move.isCapture(move)) {
+            removePiece(them, Move.captured(move), to);
+        }
+
+        movePiece(us, type, from, to);
+        if (Move.isPromotion(move)) {
+            removePiece(us, PAWN, to);
+            putPiece(us, Move.promotion(move), to);
+        }
+        if (Move.isCastling(move)) {
+            //the rook jumps over the king
+            if (to > from) {
+                movePiece(us, ROOK, from + 3, from + 1);
+            } else {
+                movePiece(us, ROOK, from - 4, from - 1);
+            }
+        }
+
+        key ^= Zobrist.castling(castlingRights) ^ Zobrist.enPassant(enPassantSquare) ^ Zobrist.side();
+        castlingRights &= CASTLING_MASK[from] & CASTLING_MASK[to];
+        enPassantSquare = -1;
+        //the square is only kept when an enemy pawn can take, so equal positions get equal keys
+        if (Move.isDoublePush(move) && (Attacks.pawn(us, (from + to) / 2) & pieces[them][PAWN]) != 0) {
+            enPassantSquare = (from + to) / 2;
+        }
+        key ^= Zobrist.castling(castlingRights) ^ Zobrist.enPassant(enPassantSquare);
+        halfmoveClock = type == PAWN || Move.isCapture(move) ? 0 : halfmoveClock + 1;
+        if (us == BLACK) {
+            fullmoveNumber++;
+        }
+        sideToMove = them;
+    }
+
+    /**
+     * Takes back a move made by makeMove, the position has to be the one makeMove left behind
+     */
+    public void unmakeMove(int move, UndoInfo undo) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int type = Move.piece(move);
+        int us = (occupancy[WHITE] & bit(to)) != 0 ? WHITE : BLACK;
+        int them = 1 - us;
+
+        if (Move.isPromotion(move)) {
+            removePiece(us, Move.promotion(move), to);
+            putPiece(us, PAWN, to);
+        }
+        movePiece(us, type, to, from);
+        if (Move.isCastling(move)) {
+            if (to > from) {
+                movePiece(us, ROOK, from + 1, from + 3);
+            } else {
+                movePiece(us, ROOK, from - 1, from - 4);
+            }
+        }
+
+        if (Move.isEnPassant(move)) {
+            putPiece(them, PAWN, enPassantCapture(us, to));
+        } else if (Move.isCapture(move)) {
+            putPiece(them, Move.captured(move), to);
+        }
+
+        castlingRights = undo.getCastlingRights();
+        enPassantSquare = undo.getEnPassantSquare();
+        halfmoveClock = undo.getHalfmoveClock();
+        if (us == BLACK) {
+            fullmoveNumber--;
+        }
+        key = undo.getKey();
+        historySize--;
+        sideToMove = undo.getSideToMove();
+    }
+
+    /**
+     * Counts the earlier occurrences of the position, only back to the last capture or pawn move since no position
+     * before it can come back. Only every second key has the same side to move and the nearest one is four plies back
+     */
+    public int repetitions() {
+        int count = 0;
+        int first = Math.max(0, historySize - halfmoveClock);
+        for (int i = historySize - 4; i >= first; i -= 2) {
+            if (keyHistory[i] == key) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return whether the position occurred before, stops at the first occurrence
+     */
+    public boolean isRepeated() {
+        int first = Math.max(0, historySize - halfmoveClock);
+        for (int i = historySize - 4; i >= first; i -= 2) {
+            if (keyHistory[i] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isFiftyMoveDraw() {
+        return halfmoveClock >= FIFTY_MOVE_PLIES;
+    }
+
+    /**
+     * Checks if neither side has the pieces left to mate: no pawns, rooks or queens and either a single minor piece
+     * or only bishops all on squares of one colour
+     */
+    public boolean isInsufficientMaterial() {
+        if ((pieces[WHITE][PAWN] | pieces[BLACK][PAWN] | pieces[WHITE][ROOK] | pieces[BLACK][ROOK]
+                | pieces[WHITE][QUEEN] | pieces[BLACK][QUEEN]) != 0) {
+            return false;
+        }
+        long knights = pieces[WHITE][KNIGHT] | pieces[BLACK][KNIGHT];
+        long bishops = pieces[WHITE][BISHOP] | pieces[BLACK][BISHOP];
+        if (knights == 0) {
+            return (bishops & LIGHT_SQUARES) == 0 || (bishops & ~LIGHT_SQUARES) == 0;
+        }
+        return bishops == 0 && Long.bitCount(knights) == 1;
+    }
+
+    /**
+     * Gets the square of the pawn taken en passant
+     */
+    private static int enPassantCapture(int colour, int to) {
+        return colour == WHITE ? to + Board.WIDTH : to - Board.WIDTH;
+    }
+
+    /**
+     * Gets all the squares a piece on the square attacks, own pieces included
+     */
+    public long attacks(int colour, int type, int square) {
+        return Attacks.of(colour, type, square, occupied);
+    }
+
+    /**
+     * Gets the pieces of the given colour attacking the square, sliders see through the given occupancy
+     */
+    public long attackersTo(int square, int byColour, long occupied) {
+        long[] attacker = pieces[byColour];
+        return (Attacks.pawn(1 - byColour, square) & attacker[PAWN])
+                | (Attacks.knight(square) & attacker[KNIGHT])
+                | (Attacks.king(square) & attacker[KING])
+                | (Attacks.bishop(square, occupied) & (attacker[BISHOP] | attacker[QUEEN]))
+                | (Attacks.rook(square, occupied) & (attacker[ROOK] | attacker[QUEEN]));
+    }
+
+    /**
+     * Checks if any piece of the given colour attacks the square
+     */
+    public boolean isSquareAttacked(int square, int byColour) {
+        long[] attacker = pieces[byColour];
+        //a pawn of the other colour standing on the square would attack the attacking pawns
+        return (Attacks.pawn(1 - byColour, square) & attacker[PAWN]) != 0
+                || (Attacks.knight(square) & attacker[KNIGHT]) != 0
+                || (Attacks.king(square) & attacker[KING]) != 0
+                || (Attacks.bishop(square, occupied) & (attacker[BISHOP] | attacker[QUEEN])) != 0
+                || (Attacks.rook(square, occupied) & (attacker[ROOK] | attacker[QUEEN])) != 0;
+    }
+
+    public int getSideToMove() {
+        return sideToMove;
+    }
+
+    public void setSideToMove(int sideToMove) {
+        if (sideToMove != this.sideToMove) {
+            key ^= Zobrist.side();
+        }
+        this.sideToMove = sideToMove;
+    }
+
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    public void setCastlingRights(int castlingRights) {
+        key ^= Zobrist.castling(this.castlingRights) ^ Zobrist.castling(castlingRights);
+        this.castlingRights = castlingRights;
+    }
+
+    /**
+     * @return square a pawn can move to by taking en passant, -1 if none
+     */
+    public int getEnPassantSquare() {
+        return enPassantSquare;
+    }
+
+    public void setEnPassantSquare(int enPassantSquare) {
+        key ^= Zobrist.enPassant(this.enPassantSquare) ^ Zobrist.enPassant(enPassantSquare);
+        this.enPassantSquare = enPassantSquare;
+    }
+
+    /**
+     * @return plies since the last capture or pawn move
+     */
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public void setHalfmoveClock(int halfmoveClock) {
+        this.halfmoveClock = halfmoveClock;
+    }
+
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    public void setFullmoveNumber(int fullmoveNumber) {
+        this.fullmoveNumber = fullmoveNumber;
+    }
+
+    /**
+     * @return Zobrist key of the placement, side to move, castling rights and en passant file
+     */
+    public long getKey() {
+        return key;
+    }
+
+    /**
+     * @return Zobrist key of the pawns of both colours
+     */
+    public long getPawnKey() {
+        return pawnKey;
+    }
+
+    /**
+     * @return material and piece-square value of the colour's pieces in the middlegame
+     */
+    public int getMidgameScore(int colour) {
+        return midgameScore[colour];
+    }
+
+    /**
+     * @return material and piece-square value of the colour's pieces in the endgame
+     */
+    public int getEndgameScore(int colour) {
+        return endgameScore[colour];
+    }
+
+    /**
+     * @return weight of the pieces left on the board, Evaluation.MAX_PHASE at the start
+     */
+    public int getPhase() {
+        return phase;
+    }
+
+    public boolean isChecked(int colour) {
+        int king = kingSquare(colour);
+        return king != -1 && isSquareAttacked(king, 1 - colour);
+    }
+}
@@ -0,0 +1,210 @@
+package com.arno.mysite.chess.game;
+
+/**
+ * Reads and writes moves in standard algebraic notation, like "Nbd7", "exd6", "e8=Q+" or "O-O-O".
+ * Keeps its own move list and undo, so one instance parses any number of moves without allocating.
+ * An instance must not be shared between threads
+ */
+public class San {
+
+    private static final String PIECE_LETTERS = "PBRNQK";
+
+    private final MoveList moves;
+    private final UndoInfo undo;
+
+    public San() {
+        this.moves = new MoveList();
+        this.undo = new UndoInfo();
+    }
+
+    public int parse(Position position, CharSequence san) {
+        return parse(position, san, 0, san.length());
+    }
+
+    /**
+     * Finds the legal move of the side to move written in san[start, end).
+     * Check, mate and annotation marks are ignored, the promotion piece can be written with or without '='
+     * @return packed move
+     * @throws IllegalArgumentException if the text is no legal move or fits more than one
+     */
+    public int parse(Position position, CharSequence san, int start, int end) {
+        while (end > start && "+#!?".indexOf(san.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        if (end - start < 2) {
+            throw invalid("Invalid move", san, start, end);
+        }
+        MoveGenerator.generateLegalMoves(position, moves);
+
+        char first = san.charAt(start);
+        if (first == 'O' || first == '0') {
+            boolean kingside = end - start == 3;
+            if (!kingside && end - start != 5) {
+                throw invalid("Invalid move", san, start, end);
+            }
+            for (int i = 0; i < moves.size(); i++) {
+                int move = moves.get(i);
+                if (Move.isCastling(move) && (Move.to(move) > Move.from(move)) == kingside) {
+                    return move;
+                }
+            }
+            throw invalid("Illegal move", san, start, end);
+        }
+
+        int type = Position.PAWN;
+        int i = start;
+        if (Character.isUpperCase(first)) {
+            type = PIECE_LETTERS.indexOf(first);
+            if (type < 0) {
+                throw invalid("Invalid move", san, start, end);
+            }
+            i++;
+        }
+
+        //a letter after the target square is the promotion piece
+        int promotion = -1;
+        char last = san.charAt(end - 1);
+        if (last < '1' || last > '8') {
+            promotion = PIECE_LETTERS.indexOf(Character.toUpperCase(last));
+            if (type != Position.PAWN || promotion <= Position.PAWN || promotion == Position.KING) {
+                throw invalid("Invalid move", san, start, end);
+            }
+            end--;
+            if (end > i && san.charAt(end - 1) == '=') {
+                end--;
+            }
+        }
+        if (end - i < 2) {
+            throw invalid("Invalid move", san, start, end);
+        }
+        int to = square(san.charAt(end - 2), san.charAt(end - 1));
+        if (to < 0) {
+            throw invalid("Invalid move", san, start, end);
+        }
+
+        //what is left between the piece and the target square narrows down the starting square
+        int fromFile = -1;
+        int fromRank = -1;
+        for (int j = i; j < end - 2; j++) {
+            char c = san.charAt(j);
+            if (c >= 'a' && c <= 'h') {
+                fromFile = c - 'a';
+            } else if (c >= '1' && c <= '8') {
+                fromRank = Board.HEIGHT - (c - '0');
+            } else if (c != 'x' && c != ':' && c != '-') {
+                throw invalid("Invalid move", san, start, end);
+            }
+        }
+
+        int found = Move.NONE;
+        for (int j = 0; j < moves.size(); j++) {
+            int move = moves.get(j);
+            int from = Move.from(move);
+            if (Move.piece(move) != type || Move.to(move) != to || Move.promotion(move) != promotion
+                    || (fromFile >= 0 && Position.fileOf(from) != fromFile)
+                    || (fromRank >= 0 && Position.rankOf(from) != fromRank)) {
+                continue;
+            }
+            if (found != Move.NONE) {
+                throw invalid("Ambiguous move", san, start, end);
+            }
+            found = move;
+        }
+        if (found == Move.NONE) {
+            throw invalid("Illegal move", san, start, end);
+        }
+        return found;
+    }
+
+    public String format(Position position, int move) {
+        StringBuilder san = new StringBuilder(8);
+        format(position, move, san);
+        return san.toString();
+    }
+
+    /**
+     * Appends the legal move of the side to move in algebraic notation, with '+' or '#' if it checks or mates
+     * @throws IllegalArgumentException if the move is not legal in the position
+     */
+    public void format(Position position, int move, StringBuilder san) {
+        MoveGenerator.generateLegalMoves(position, moves);
+        if (!moves.contains(move)) {
+            throw new IllegalArgumentException("Illegal move: " + Move.toAlgebraic(move));
+        }
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int type = Move.piece(move);
+
+        if (Move.isCastling(move)) {
+            san.append(to > from ? "O-O" : "O-O-O");
+        } else {
+            if (type == Position.PAWN) {
+                if (Move.isCapture(move)) {
+                    san.append((char) ('a' + Position.fileOf(from)));
+                }
+            } else {
+                san.append(PIECE_LETTERS.charAt(type));
+                appendDisambiguation(move, san);
+            }
+            if (Move.isCapture(move)) {
+                san.append('x');
+            }
+            san.append(Position.squareName(to));
+            if (Move.isPromotion(move)) {
+                san.append('=').append(PIECE_LETTERS.charAt(Move.promotion(move)));
+            }
+        }
+
+        position.makeMove(move, undo);
+        if (position.isChecked(position.getSideToMove())) {
+            MoveGenerator.generateLegalMoves(position, moves);
+            san.append(moves.isEmpty() ? '#' : '+');
+        }
+        position.unmakeMove(move, undo);
+    }
+
+    /**
+     * Adds the file, the rank or both of the starting square if another piece of the type can reach the same square.
+     * Uses the legal moves still in the list
+     */
+    private void appendDisambiguation(int move, StringBuilder san) {
+        int from = Move.from(move);
+        boolean ambiguous = false;
+        boolean sameFile = false;
+        boolean sameRank = false;
+        for (int i = 0; i < moves.size(); i++) {
+            int other = moves.get(i);
+            if (Move.piece(other) != Move.piece(move) || Move.to(other) != Move.to(move) || Move.from(other) == from) {
+                continue;
+            }
+            ambiguous = true;
+            sameFile |= Position.fileOf(Move.from(other)) == Position.fileOf(from);
+            sameRank |= Position.rankOf(Move.from(other)) == Position.rankOf(from);
+        }
+        if (!ambiguous) {
+            return;
+        }
+        String name = Position.squareName(from);
+        if (!sameFile) {
+            san.append(name.charAt(0));
+        } else if (!sameRank) {
+            san.append(name.charAt(1));
+        } else {
+            san.append(name);
+        }
+    }
+
+    /**
+     * @return square of the file and rank characters, -1 if they are no square
+     */
+    private static int square(char file, char rank) {
+        if (file < 'a' || file > 'h' || rank < '1' || rank > '8') {
+            return -1;
+        }
+        return Position.square(file - 'a', Board.HEIGHT - (rank - '0'));
+    }
+
+    private static IllegalArgumentException invalid(String message, CharSequence san, int start, int end) {
+        return new IllegalArgumentException(message + ": " + san.subSequence(start, end));
+    }
+}
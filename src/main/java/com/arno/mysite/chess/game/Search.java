@@ -0,0 +1,504 @@
+package com.arno.mysite.chess.game;
+
+import com.arno.mysite.chess.tablebase.Tablebase;
+import com.arno.mysite.chess.tablebase.Tablebases;
+
+/**
+ * Finds the best move of the side to move with iterative deepening alpha-beta.
+ * Every iteration searches one ply deeper until the time or node budget runs out, the best move of the last iteration goes first.
+ * Leaves are extended by a quiescence search over captures, so no exchange is cut off half way.
+ * Results are kept in a transposition table, a position reached again cuts off with the stored score or searches the stored move first.
+ * Moves are tried in order: the stored move, captures by MVV-LVA, then killer moves, then quiet moves by their history score.
+ * With tablebases set, positions of few enough pieces below the root take their exact score from the tables
+ */
+public class Search {
+
+    public static final int MATE = 32000;
+    private static final int INFINITY = MATE + 1;
+    public static final int MAX_PLY = 64;
+
+    //piece values for ordering captures, indexed by Pieces.ordinal()
+    private static final int[] PIECE_VALUES = {100, 330, 500, 320, 900, 0};
+
+    //the ordering scores keep the move groups apart
+    private static final int CAPTURE_SCORE = 1 << 24;
+    private static final int KILLER_SCORE = 1 << 22;
+    private static final int HISTORY_LIMIT = 1 << 20;
+
+    //how many nodes are searched between two looks at the clock
+    private static final int CHECK_INTERVAL = 1023;
+
+    private final MoveList[] moveLists;
+    private final int[][] moveScores;
+    private final UndoInfo[] undos;
+    private final int[][] killers;
+    private final int[][][] history;
+    private final TranspositionTable table;
+    private final Evaluation evaluation;
+    //null without tablebases
+    private Tablebases tablebases;
+
+    private Position position;
+    private long nodes;
+    private long maxNodes;
+    private long deadline;
+    private boolean stopped;
+    //set by another thread to end the search early
+    private volatile boolean stopRequested;
+
+    private int bestMove;
+    private int bestScore;
+    private int completedDepth;
+    private int iterationMove;
+
+    public Search() {
+        this(new TranspositionTable(TranspositionTable.DEFAULT_MEGABYTES));
+    }
+
+    /**
+     * @param table != null, may be shared with other searches
+     */
+    public Search(TranspositionTable table) {
+        this.table = table;
+        this.evaluation = new Evaluation();
+        moveLists = new MoveList[MAX_PLY];
+        moveScores = new int[MAX_PLY][MoveList.CAPACITY];
+        undos = new UndoInfo[MAX_PLY];
+        for (int ply = 0; ply < MAX_PLY; ply++) {
+            moveLists[ply] = new MoveList();
+            undos[ply] = new UndoInfo();
+        }
+        killers = new int[MAX_PLY][2];
+        history = new int[2][Position.SQUARES][Position.SQUARES];
+    }
+
+    /**
+     * Searches the position until the budget is used up. The position is left as it was
+     * @param timeMillis time budget, a new iteration is only started in the first half of it
+     * @param maxNodes node budget, 0 for no limit
+     * @return best move found, Move.NONE if the side to move has no legal move
+     */
+    public int search(Position position, long timeMillis, long maxNodes) {
+        table.newSearch();
+        stopRequested = false;
+        return iterate(position, timeMillis, maxNodes, 1);
+    }
+
+    /**
+     * Deepens the search from the first depth until the budget is used up or stop is called,
+     * without starting a new table generation
+     */
+    int iterate(Position position, long timeMillis, long maxNodes, int firstDepth) {
+        this.position = position;
+        long start = System.currentTimeMillis();
+        this.deadline = start + timeMillis;
+        this.maxNodes = maxNodes;
+        this.nodes = 0;
+        this.stopped = false;
+        this.bestMove = Move.NONE;
+        this.bestScore = 0;
+        this.completedDepth = 0;
+        clearOrdering();
+
+        MoveList rootMoves = moveLists[0];
+        MoveGenerator.generateLegalMoves(position, rootMoves);
+        if (rootMoves.isEmpty()) {
+            return Move.NONE;
+        }
+        bestMove = rootMoves.get(0);
+        if (rootMoves.size() == 1) {
+            return bestMove;
+        }
+
+        for (int depth = firstDepth; depth < MAX_PLY; depth++) {
+            int score = searchRoot(depth);
+            //a move that finished searching in a cut off iteration is still at least as good as the last best
+            if (iterationMove != Move.NONE) {
+                bestMove = iterationMove;
+            }
+            if (stopped) {
+                break;
+            }
+            bestScore = score;
+            completedDepth = depth;
+            if (Math.abs(score) >= MATE - MAX_PLY || System.currentTimeMillis() - start > timeMillis / 2) {
+                break;
+            }
+        }
+        return bestMove;
+    }
+
+    /**
+     * Searches every root move, the best move of the last iteration first
+     */
+    private int searchRoot(int depth) {
+        MoveList moves = moveLists[0];
+        UndoInfo undo = undos[0];
+        scoreMoves(0, bestMove);
+        iterationMove = Move.NONE;
+
+        int alpha = -INFINITY;
+        int beta = INFINITY;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = pickMove(0, i);
+            position.makeMove(move, undo);
+            int score;
+            if (i == 0) {
+                score = -alphaBeta(depth - 1, -beta, -alpha, 1);
+            } else {
+                score = -alphaBeta(depth - 1, -alpha - 1, -alpha, 1);
+                if (score > alpha && !stopped) {
+                    score = -alphaBeta(depth - 1, -beta, -alpha, 1);
+                }
+            }
+            position.unmakeMove(move, undo);
+            if (stopped) {
+                break;
+            }
+            if (score > alpha) {
+                alpha = score;
+                iterationMove = move;
+            }
+        }
+        if (!stopped) {
+            table.store(position.getKey(), iterationMove, toTable(alpha, 0), depth, TranspositionTable.EXACT);
+        }
+        return alpha;
+    }
+
+    /**
+     * Principal variation search: the first move gets the full window, the rest only have to prove they are not better
+     * @return score from the view of the side to move
+     */
+    private int alphaBeta(int depth, int alpha, int beta, int ply) {
+        int us = position.getSideToMove();
+        boolean inCheck = position.isChecked(us);
+        //a check is never answered at the horizon
+        if (inCheck) {
+            depth++;
+        }
+        if (depth <= 0) {
+            return quiesce(alpha, beta, ply);
+        }
+        if (countNode() || ply >= MAX_PLY - 1) {
+            return evaluate();
+        }
+        //a position seen before on the way here or in the game is scored as the draw it can be steered into
+        if (position.isRepeated() || position.isFiftyMoveDraw() || position.isInsufficientMaterial()) {
+            return 0;
+        }
+
+        long key = position.getKey();
+        long entry = table.probe(key);
+        int hashMove = Move.NONE;
+        if (entry != 0) {
+            hashMove = TranspositionTable.move(entry);
+            if (TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        if (tablebases != null && Long.bitCount(position.getOccupied()) <= Tablebases.MAX_PIECES) {
+            int code = tablebases.probe(position);
+            if (code != Tablebases.UNKNOWN) {
+                return tablebaseScore(code, ply);
+            }
+        }
+
+        MoveList moves = moveLists[ply];
+        MoveGenerator.generateLegalMoves(position, moves);
+        if (moves.isEmpty()) {
+            return inCheck ? -MATE + ply : 0;
+        }
+        scoreMoves(ply, hashMove);
+
+        UndoInfo undo = undos[ply];
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestMove = Move.NONE;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = pickMove(ply, i);
+            position.makeMove(move, undo);
+            int score;
+            if (i == 0) {
+                score = -alphaBeta(depth - 1, -beta, -alpha, ply + 1);
+            } else {
+                score = -alphaBeta(depth - 1, -alpha - 1, -alpha, ply + 1);
+                if (score > alpha && score < beta && !stopped) {
+                    score = -alphaBeta(depth - 1, -beta, -alpha, ply + 1);
+                }
+            }
+            position.unmakeMove(move, undo);
+            if (stopped) {
+                return 0;
+            }
+
+            if (score > best) {
+                best = score;
+                if (score > alpha) {
+                    alpha = score;
+                    bestMove = move;
+                    if (alpha >= beta) {
+                        if (!Move.isCapture(move) && !Move.isPromotion(move)) {
+                            storeQuietCutoff(move, us, depth, ply);
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+
+        int bound = best >= beta ? TranspositionTable.LOWER : best > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+        table.store(key, bestMove, toTable(best, ply), depth, bound);
+        return best;
+    }
+
+    /**
+     * Mate scores count the plies from the root, a mate too far for MAX_PLY still scores above any evaluation
+     */
+    private static int tablebaseScore(int code, int ply) {
+        int plies = Tablebase.plies(code);
+        if (plies < 0) {
+            return 0;
+        }
+        return Tablebase.wdl(code) == Tablebase.WIN ? MATE - ply - plies : -MATE + ply + plies;
+    }
+
+    /**
+     * Mate scores are stored as the distance from the position instead of from the root
+     */
+    private static int toTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) {
+            return score + ply;
+        }
+        if (score <= -MATE + MAX_PLY) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) {
+            return score - ply;
+        }
+        if (score <= -MATE + MAX_PLY) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    /**
+     * Only searches captures and promotions until the position is quiet, every evasion when in check
+     */
+    private int quiesce(int alpha, int beta, int ply) {
+        if (countNode() || ply >= MAX_PLY - 1) {
+            return evaluate();
+        }
+        boolean inCheck = position.isChecked(position.getSideToMove());
+        int best = -INFINITY;
+        if (!inCheck) {
+            //the side to move does not have to take, standing pat is the lower bound
+            best = evaluate();
+            if (best >= beta) {
+                return best;
+            }
+            if (best > alpha) {
+                alpha = best;
+            }
+        }
+
+        MoveList moves = moveLists[ply];
+        MoveGenerator.generateLegalMoves(position, moves);
+        if (inCheck && moves.isEmpty()) {
+            return -MATE + ply;
+        }
+        scoreMoves(ply, Move.NONE);
+
+        UndoInfo undo = undos[ply];
+        for (int i = 0; i < moves.size(); i++) {
+            int move = pickMove(ply, i);
+            if (!inCheck && !Move.isCapture(move) && !Move.isPromotion(move)) {
+                //captures are ordered first, the rest are quiet
+                break;
+            }
+            position.makeMove(move, undo);
+            int score = -quiesce(-beta, -alpha, ply + 1);
+            position.unmakeMove(move, undo);
+            if (stopped) {
+                return 0;
+            }
+
+            if (score > best) {
+                best = score;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Static score from the view of the side to move
+     */
+    private int evaluate() {
+        return evaluation.evaluate(position);
+    }
+
+    /**
+     * Counts the node and stops the search once the budget is used up
+     * @return whether the search is stopped
+     */
+    private boolean countNode() {
+        nodes++;
+        if ((nodes & CHECK_INTERVAL) == 0 && (stopRequested || System.currentTimeMillis() >= deadline)) {
+            stopped = true;
+        }
+        if (maxNodes > 0 && nodes >= maxNodes) {
+            stopped = true;
+        }
+        return stopped;
+    }
+
+    /**
+     * Gives every move of the ply its ordering score
+     * @param first move searched before all others, Move.NONE if none
+     */
+    private void scoreMoves(int ply, int first) {
+        MoveList moves = moveLists[ply];
+        int[] scores = moveScores[ply];
+        int colour = position.getSideToMove();
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            if (move == first) {
+                scores[i] = Integer.MAX_VALUE;
+            } else if (Move.isCapture(move) || Move.isPromotion(move)) {
+                //most valuable victim first, least valuable attacker breaks ties
+                int victim = Move.isCapture(move) ? PIECE_VALUES[Move.captured(move)] : 0;
+                int promotion = Move.isPromotion(move) ? PIECE_VALUES[Move.promotion(move)] : 0;
+                scores[i] = CAPTURE_SCORE + (victim + promotion) * 8 - Move.piece(move);
+            } else if (move == killers[ply][0]) {
+                scores[i] = KILLER_SCORE + 1;
+            } else if (move == killers[ply][1]) {
+                scores[i] = KILLER_SCORE;
+            } else {
+                scores[i] = history[colour][Move.from(move)][Move.to(move)];
+            }
+        }
+    }
+
+    /**
+     * Moves the best scored of the remaining moves to the index, sorting only as far as the search gets
+     */
+    private int pickMove(int ply, int index) {
+        MoveList moves = moveLists[ply];
+        int[] scores = moveScores[ply];
+        int best = index;
+        for (int i = index + 1; i < moves.size(); i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        if (best != index) {
+            moves.swap(index, best);
+            int score = scores[index];
+            scores[index] = scores[best];
+            scores[best] = score;
+        }
+        return moves.get(index);
+    }
+
+    /**
+     * Remembers a quiet move that caused a cut off, as killer of the ply and in the history of the colour
+     */
+    private void storeQuietCutoff(int move, int colour, int depth, int ply) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        int[] fromHistory = history[colour][Move.from(move)];
+        fromHistory[Move.to(move)] += depth * depth;
+        //history scores must stay below the killers
+        if (fromHistory[Move.to(move)] >= HISTORY_LIMIT) {
+            ageHistory();
+        }
+    }
+
+    private void ageHistory() {
+        for (int[][] colour : history) {
+            for (int[] from : colour) {
+                for (int to = 0; to < from.length; to++) {
+                    from[to] /= 2;
+                }
+            }
+        }
+    }
+
+    private void clearOrdering() {
+        for (int[] ply : killers) {
+            ply[0] = Move.NONE;
+            ply[1] = Move.NONE;
+        }
+        ageHistory();
+    }
+
+    /**
+     * Asks a running search to return its best move soon, may be called from any thread
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+    /**
+     * Clears a stop request, has to happen before the search is started
+     */
+    void resetStop() {
+        stopRequested = false;
+    }
+
+    /**
+     * @return best move of the last search
+     */
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return score of the last finished iteration from the view of the side to move
+     */
+    public int getBestScore() {
+        return bestScore;
+    }
+
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    /**
+     * @param tablebases probed below the root, null for none
+     */
+    public void setTablebases(Tablebases tablebases) {
+        this.tablebases = tablebases;
+    }
+
+    public Tablebases getTablebases() {
+        return tablebases;
+    }
+}
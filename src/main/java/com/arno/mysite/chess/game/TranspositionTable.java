@@ -0,0 +1,146 @@
+package com.arno.mysite.chess.game;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size table of search results keyed by the Zobrist key of the position, shared by every thread searching the same game.
+ * An entry is two longs: the data and the key XORed with the data. Entries are written and read without locks,
+ * a torn entry whose halves come from two different writes does not XOR back to its key and reads as missing.
+ * Every bucket holds two entries, a new result replaces the shallower or older one
+ */
+public class TranspositionTable {
+
+    public static final int EXACT = 1;
+    //score is at least the stored one (the search failed high)
+    public static final int LOWER = 2;
+    //score is at most the stored one (the search failed low)
+    public static final int UPPER = 3;
+
+    public static final int DEFAULT_MEGABYTES = 16;
+
+    //two entries of two longs
+    private static final int BUCKET_LONGS = 4;
+    private static final int BUCKET_BYTES = BUCKET_LONGS * Long.BYTES;
+
+    //data layout: move 24 bits, score 16 bits, depth 8 bits, bound 2 bits, generation 8 bits
+    private static final int SCORE_SHIFT = 24;
+    private static final int DEPTH_SHIFT = 40;
+    private static final int BOUND_SHIFT = 48;
+    private static final int GENERATION_SHIFT = 50;
+    private static final long MOVE_MASK = (1L << SCORE_SHIFT) - 1;
+
+    private final long[] table;
+    private final long bucketMask;
+    private int generation;
+
+    /**
+     * @param megabytes size of the table, rounded down to a power of two number of buckets
+     */
+    public TranspositionTable(int megabytes) {
+        long buckets = Long.highestOneBit(Math.max(1, (long) megabytes * 1024 * 1024 / BUCKET_BYTES));
+        this.table = new long[(int) Math.min(buckets * BUCKET_LONGS, Integer.highestOneBit(Integer.MAX_VALUE - 8))];
+        this.bucketMask = table.length / BUCKET_LONGS - 1;
+        this.generation = 0;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0L);
+        generation = 0;
+    }
+
+    /**
+     * Marks the entries of earlier searches as old, they are replaced first
+     */
+    public void newSearch() {
+        generation = (generation + 1) & 0xFF;
+    }
+
+    /**
+     * @return data of the entry, 0 if the position is not in the table
+     */
+    public long probe(long key) {
+        int index = index(key);
+        for (int slot = index; slot < index + BUCKET_LONGS; slot += 2) {
+            long data = table[slot + 1];
+            if ((table[slot] ^ data) == key && data != 0) {
+                return data;
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * @param move best move found, Move.NONE keeps the move already stored for the position
+     * @param bound EXACT, LOWER or UPPER
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        int index = index(key);
+        int slot = index;
+        long current = 0L;
+        //the same position is overwritten, otherwise the shallower entry of an older search goes
+        for (int i = index; i < index + BUCKET_LONGS; i += 2) {
+            long data = table[i + 1];
+            if ((table[i] ^ data) == key) {
+                slot = i;
+                current = data;
+                break;
+            }
+            if (replaceValue(data) < replaceValue(table[slot + 1])) {
+                slot = i;
+            }
+        }
+        if (move == Move.NONE && current != 0) {
+            move = move(current);
+        }
+
+        long data = (move & MOVE_MASK)
+                | ((long) (score & 0xFFFF) << SCORE_SHIFT)
+                | ((long) Math.min(Math.max(depth, 0), 0xFF) << DEPTH_SHIFT)
+                | ((long) bound << BOUND_SHIFT)
+                | ((long) generation << GENERATION_SHIFT);
+        table[slot + 1] = data;
+        table[slot] = key ^ data;
+    }
+
+    /**
+     * Entries of older searches and shallow entries are worth less
+     */
+    private int replaceValue(long data) {
+        if (data == 0) {
+            return Integer.MIN_VALUE;
+        }
+        int age = (generation - generation(data)) & 0xFF;
+        return depth(data) - 8 * age;
+    }
+
+    private int index(long key) {
+        return (int) ((key & bucketMask) * BUCKET_LONGS);
+    }
+
+    public static int move(long data) {
+        return (int) (data & MOVE_MASK);
+    }
+
+    public static int score(long data) {
+        return (short) (data >>> SCORE_SHIFT);
+    }
+
+    public static int depth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & 0xFF;
+    }
+
+    public static int bound(long data) {
+        return (int) (data >>> BOUND_SHIFT) & 0x3;
+    }
+
+    private static int generation(long data) {
+        return (int) (data >>> GENERATION_SHIFT) & 0xFF;
+    }
+
+    /**
+     * @return number of entries the table holds
+     */
+    public int capacity() {
+        return table.length / 2;
+    }
+}
@@ -0,0 +1,47 @@
+package com.arno.mysite.chess.game;
+
+/**
+ * State that a move destroys and that has to be put back when the move is taken back.
+ * Filled by Position.makeMove, so one instance per ply can be reused for every move
+ */
+public class UndoInfo {
+    private int castlingRights;
+    private int enPassantSquare;
+    private int halfmoveClock;
+    private long key;
+    //restored as it was, Board also tries moves of the side that is not to move
+    private int sideToMove;
+
+    public UndoInfo() {
+        this.castlingRights = 0;
+        this.enPassantSquare = -1;
+    }
+
+    void save(int castlingRights, int enPassantSquare, int halfmoveClock, long key, int sideToMove) {
+        this.castlingRights = castlingRights;
+        this.enPassantSquare = enPassantSquare;
+        this.halfmoveClock = halfmoveClock;
+        this.key = key;
+        this.sideToMove = sideToMove;
+    }
+
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    public int getEnPassantSquare() {
+        return enPassantSquare;
+    }
+
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public long getKey() {
+        return key;
+    }
+
+    public int getSideToMove() {
+        return sideToMove;
+    }
+}
@@ -0,0 +1,74 @@
+package com.arno.mysite.chess.game;
+
+/**
+ * Random 64-bit keys for every piece on every square, the castling rights, the en passant file and the side to move.
+ * The key of a position is the XOR of the keys of everything in it, so a move only XORs out what changed.
+ * The keys come from a fixed seed, the same position gets the same key in every run
+ */
+public class Zobrist {
+
+    private static final long[][][] PIECE = new long[2][Pieces.values().length][Position.SQUARES];
+    private static final long[] CASTLING = new long[Position.ALL_CASTLING + 1];
+    private static final long[] EN_PASSANT = new long[Board.WIDTH];
+    private static final long SIDE;
+
+    private static long seed = 0x9E3779B97F4A7C15L;
+
+    static {
+        for (long[][] colour : PIECE) {
+            for (long[] type : colour) {
+                for (int square = 0; square < Position.SQUARES; square++) {
+                    type[square] = next();
+                }
+            }
+        }
+        //every combination of rights gets its own key, so changing the rights takes a single XOR
+        long[] rights = {next(), next(), next(), next()};
+        for (int i = 0; i < CASTLING.length; i++) {
+            for (int bit = 0; bit < rights.length; bit++) {
+                if ((i & (1 << bit)) != 0) {
+                    CASTLING[i] ^= rights[bit];
+                }
+            }
+        }
+        for (int file = 0; file < Board.WIDTH; file++) {
+            EN_PASSANT[file] = next();
+        }
+        SIDE = next();
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * SplitMix64, only used to fill the tables
+     */
+    private static long next() {
+        long z = (seed += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    public static long piece(int colour, int type, int square) {
+        return PIECE[colour][type][square];
+    }
+
+    public static long castling(int castlingRights) {
+        return CASTLING[castlingRights];
+    }
+
+    /**
+     * @param square en passant square, -1 for none
+     */
+    public static long enPassant(int square) {
+        return square == -1 ? 0L : EN_PASSANT[Position.fileOf(square)];
+    }
+
+    /**
+     * Key XORed in while black is to move
+     */
+    public static long side() {
+        return SIDE;
+    }
+}
@@ -2,16 +2,65 @@ package com.arno.mysite.chess.net;
 
 import com.arno.mysite.chess.game.Game;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.net.DatagramSocket;
-import java.net.Inet6Address;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
 
-public class GameClient implements Runnable {
+/**
+ * Joins a game hosted by a GameHost over UDP. The host's side is played by a RemotePlayer added to the game,
+ * run() says hello to the host and then receives until the client is closed
+ */
+public class GameClient implements Runnable, Closeable {
+
+    private final InetSocketAddress hostAddress;
+    private final DatagramSocket datagramSocket;
+    private final Game game;
+    private final char role;
+    private final ReliableChannel channel;
+
+    /**
+     * @param role the side played on this end, 'W' or 'B'
+     */
+    public GameClient(Game game, char role, InetSocketAddress hostAddress) throws SocketException {
+        this.hostAddress = hostAddress;
+        this.datagramSocket = new DatagramSocket();
+        this.game = game;
+        this.role = role;
+        this.channel = new ReliableChannel(datagramSocket, hostAddress);
+        game.addPlayer(new RemotePlayer(role == 'W' ? 'B' : 'W', channel));
+    }
 
-    private Inet6Address inet6Address;
-    private DatagramSocket datagramSocket;
-    private Game game;
     @Override
     public void run() {
+        try {
+            channel.send(MovePacket.HELLO, role);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        channel.run();
+    }
+
+    @Override
+    public void close() {
+        channel.close();
+    }
+
+    public ReliableChannel getChannel() {
+        return channel;
+    }
+
+    public InetSocketAddress getHostAddress() {
+        return hostAddress;
+    }
+
+    public Game getGame() {
+        return game;
+    }
 
+    public char getRole() {
+        return role;
     }
 }
@@ -0,0 +1,74 @@
+package com.arno.mysite.chess.net;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Message of the GameServer protocol, 7 bytes on a TCP stream: type, game id (32 bits) and a 16-bit payload.
+ * Every frame names its game, so one connection can play any number of games at once
+ */
+public class GameFrame {
+
+    public static final int SIZE = 7;
+
+    //client to server, the payload is the role 'W' or 'B', the first player creates the game
+    public static final int JOIN = 1;
+    //both ways, the payload is a 16-bit ArchiveMove
+    public static final int MOVE = 2;
+    //client to server, gives the game up
+    public static final int LEAVE = 3;
+    //server to client, the payload is the role the client got
+    public static final int JOINED = 4;
+    //server to client, the payload is one of the reasons below
+    public static final int REJECTED = 5;
+    //server to client, the payload is one of the results below, the game is gone afterwards
+    public static final int OVER = 6;
+
+    public static final int ROLE_TAKEN = 1;
+    public static final int NOT_IN_GAME = 2;
+    public static final int NOT_YOUR_TURN = 3;
+    public static final int ILLEGAL_MOVE = 4;
+    public static final int UNKNOWN_TYPE = 5;
+
+    public static final int WHITE_WINS = 1;
+    public static final int BLACK_WINS = 2;
+    public static final int DRAWN = 3;
+    public static final int ABANDONED = 4;
+
+    private final int type;
+    private final int gameId;
+    private final int payload;
+
+    public GameFrame(int type, int gameId, int payload) {
+        this.type = type;
+        this.gameId = gameId;
+        this.payload = payload & 0xFFFF;
+    }
+
+    /**
+     * @param buffer with at least SIZE bytes left
+     */
+    public void write(ByteBuffer buffer) {
+        buffer.put((byte) type);
+        buffer.putInt(gameId);
+        buffer.putShort((short) payload);
+    }
+
+    /**
+     * @param buffer with at least SIZE bytes left
+     */
+    public static GameFrame read(ByteBuffer buffer) {
+        return new GameFrame(buffer.get(), buffer.getInt(), buffer.getShort());
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public int getGameId() {
+        return gameId;
+    }
+
+    public int getPayload() {
+        return payload;
+    }
+}
@@ -0,0 +1,66 @@
+package com.arno.mysite.chess.net;
+
+import com.arno.mysite.chess.game.Game;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.SocketException;
+
+/**
+ * Server side of a UDP game: waits on a port for one GameClient and plays against it.
+ * The client's side is played by a RemotePlayer added to the game, the channel learns the client's address from its hello.
+ * The host says hello with its role as well, the RemotePlayer on either end closes the channel if both play the same side
+ */
+public class GameHost implements Runnable, Closeable {
+
+    private final DatagramSocket datagramSocket;
+    private final Game game;
+    private final char role;
+    private final ReliableChannel channel;
+
+    /**
+     * @param role the side played on this end, 'W' or 'B'
+     * @param port UDP port to listen on, 0 for any free one
+     */
+    public GameHost(Game game, char role, int port) throws SocketException {
+        this.datagramSocket = new DatagramSocket(port);
+        this.game = game;
+        this.role = role;
+        this.channel = new ReliableChannel(datagramSocket, null);
+        game.addPlayer(new RemotePlayer(role == 'W' ? 'B' : 'W', channel));
+    }
+
+    @Override
+    public void run() {
+        try {
+            //queued until the client's hello tells where to send it
+            channel.send(MovePacket.HELLO, role);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        channel.run();
+    }
+
+    @Override
+    public void close() {
+        channel.close();
+    }
+
+    public int getPort() {
+        return datagramSocket.getLocalPort();
+    }
+
+    public ReliableChannel getChannel() {
+        return channel;
+    }
+
+    public Game getGame() {
+        return game;
+    }
+
+    public char getRole() {
+        return role;
+    }
+}
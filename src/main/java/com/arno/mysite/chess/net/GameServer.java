@@ -0,0 +1,352 @@
+package com.arno.mysite.chess.net;
+
+import com.arno.mysite.chess.game.GameListener;
+import com.arno.mysite.chess.game.GameSession;
+import com.arno.mysite.chess.game.PgnGame;
+import com.arno.mysite.chess.game.Position;
+import com.arno.mysite.chess.persistence.ArchiveMove;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Headless server hosting any number of games over TCP, all on one thread with a Selector.
+ * Connections are non-blocking and cost two small buffers each, games cost one GameSession each.
+ * Frames are routed by their game id, the server plays every move on the game's session, which checks it,
+ * passes it to the opponent and ends the game once it is mated, drawn or left. Everything is touched by the selector thread only
+ */
+public class GameServer implements Runnable, Closeable {
+
+    private static final int BACKLOG = 1024;
+    private static final int READ_BUFFER_SIZE = GameFrame.SIZE * 64;
+    //a client letting this much output pile up is disconnected instead of growing its buffer further
+    private static final int MAX_PENDING = 64 * 1024;
+
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Map<Integer, HostedGame> games;
+    private int connections;
+    private volatile boolean closed;
+
+    /**
+     * @param port TCP port to listen on, 0 for any free one
+     */
+    public GameServer(int port) throws IOException {
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), BACKLOG);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        this.games = new HashMap<>();
+    }
+
+    /**
+     * Serves until the server is closed
+     */
+    @Override
+    public void run() {
+        try {
+            while (!closed) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            read(connection);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(connection);
+                        }
+                    } catch (IOException e) {
+                        disconnect(connection);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                e.printStackTrace();
+            }
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                try {
+                    key.channel().close();
+                } catch (IOException ignored) {
+                    //closing anyway
+                }
+            }
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+                //closing anyway
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Connection connection = new Connection(channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            connections++;
+        }
+    }
+
+    private void read(Connection connection) throws IOException {
+        if (connection.channel.read(connection.in) < 0) {
+            disconnect(connection);
+            return;
+        }
+        connection.in.flip();
+        while (connection.in.remaining() >= GameFrame.SIZE && connection.key.isValid()) {
+            handle(connection, GameFrame.read(connection.in));
+        }
+        connection.in.compact();
+    }
+
+    private void handle(Connection connection, GameFrame frame) {
+        switch (frame.getType()) {
+            case GameFrame.JOIN -> join(connection, frame.getGameId(), (char) frame.getPayload());
+            case GameFrame.MOVE -> move(connection, frame.getGameId(), frame.getPayload());
+            case GameFrame.LEAVE -> leave(connection, frame.getGameId());
+            default -> send(connection, GameFrame.REJECTED, frame.getGameId(), GameFrame.UNKNOWN_TYPE);
+        }
+    }
+
+    /**
+     * Takes the role in the game, creating the game if it does not exist. A late joiner gets the moves played so far.
+     * A rejected join leaves no game behind
+     */
+    private void join(Connection connection, int gameId, char role) {
+        HostedGame game = games.get(gameId);
+        if ((role != 'W' && role != 'B') || (game != null && game.player(role) != null) || connection.games.contains(gameId)) {
+            send(connection, GameFrame.REJECTED, gameId, GameFrame.ROLE_TAKEN);
+            return;
+        }
+        if (game == null) {
+            game = new HostedGame(gameId);
+            games.put(gameId, game);
+        }
+        game.setPlayer(role, connection);
+        connection.games.add(gameId);
+        send(connection, GameFrame.JOINED, gameId, role);
+        for (int move : game.session.getBoard().getMoveHistory()) {
+            send(connection, GameFrame.MOVE, gameId, ArchiveMove.encode(move));
+        }
+    }
+
+    /**
+     * Plays the move if it is the sender's turn and legal, the game's listener passes it on
+     */
+    private void move(Connection connection, int gameId, int archiveMove) {
+        HostedGame game = games.get(gameId);
+        if (game == null || !connection.games.contains(gameId)) {
+            send(connection, GameFrame.REJECTED, gameId, GameFrame.NOT_IN_GAME);
+            return;
+        }
+        Position position = game.session.getBoard().getPosition();
+        if (game.player(game.session.getRoleToMove()) != connection) {
+            send(connection, GameFrame.REJECTED, gameId, GameFrame.NOT_YOUR_TURN);
+            return;
+        }
+        if (position.isEmpty(ArchiveMove.from(archiveMove))
+                || !game.session.submitMove(ArchiveMove.decode(position, archiveMove))) {
+            send(connection, GameFrame.REJECTED, gameId, GameFrame.ILLEGAL_MOVE);
+        }
+    }
+
+    private void leave(Connection connection, int gameId) {
+        HostedGame game = games.get(gameId);
+        if (game == null || !connection.games.contains(gameId)) {
+            send(connection, GameFrame.REJECTED, gameId, GameFrame.NOT_IN_GAME);
+            return;
+        }
+        game.session.end();
+    }
+
+    /**
+     * Tells both players the result and forgets the game
+     */
+    private void end(HostedGame game, int result) {
+        games.remove(game.id);
+        for (Connection player : new Connection[]{game.white, game.black}) {
+            if (player != null) {
+                player.games.remove(game.id);
+                send(player, GameFrame.OVER, game.id, result);
+            }
+        }
+    }
+
+    /**
+     * Queues the frame and writes as much as the socket takes right away
+     */
+    private void send(Connection connection, int type, int gameId, int payload) {
+        if (!connection.key.isValid()) {
+            return;
+        }
+        if (connection.out.remaining() < GameFrame.SIZE) {
+            if (connection.out.capacity() >= MAX_PENDING) {
+                disconnect(connection);
+                return;
+            }
+            ByteBuffer grown = ByteBuffer.allocate(connection.out.capacity() * 2);
+            connection.out.flip();
+            grown.put(connection.out);
+            connection.out = grown;
+        }
+        new GameFrame(type, gameId, payload).write(connection.out);
+        try {
+            write(connection);
+        } catch (IOException e) {
+            disconnect(connection);
+        }
+    }
+
+    private void write(Connection connection) throws IOException {
+        connection.out.flip();
+        connection.channel.write(connection.out);
+        connection.out.compact();
+        connection.key.interestOps(connection.out.position() > 0
+                ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    /**
+     * Closes the connection, the games it was playing end as abandoned
+     */
+    private void disconnect(Connection connection) {
+        if (!connection.key.isValid()) {
+            return;
+        }
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException ignored) {
+            //the connection is gone anyway
+        }
+        connections--;
+        for (int gameId : connection.games.toArray(new Integer[0])) {
+            HostedGame game = games.get(gameId);
+            if (game != null) {
+                game.session.end();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        selector.wakeup();
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * @return number of games being played, read from the selector thread or after the server stopped
+     */
+    public int getGameCount() {
+        return games.size();
+    }
+
+    public int getConnectionCount() {
+        return connections;
+    }
+
+    /**
+     * Game on the server with the connections playing white and black, listens to its session
+     * to pass the moves on and to end the game
+     */
+    private class HostedGame implements GameListener {
+        private final int id;
+        private final GameSession session;
+        private Connection white;
+        private Connection black;
+
+        HostedGame(int id) {
+            this.id = id;
+            this.session = new GameSession();
+            session.addListener(this);
+        }
+
+        @Override
+        public void movePlayed(GameSession session, int move) {
+            //the side that moved is no longer to move
+            Connection opponent = player(session.getRoleToMove());
+            if (opponent != null) {
+                send(opponent, GameFrame.MOVE, id, ArchiveMove.encode(move));
+            }
+        }
+
+        @Override
+        public void gameOver(GameSession session, String result) {
+            switch (result) {
+                case PgnGame.WHITE_WINS -> end(this, GameFrame.WHITE_WINS);
+                case PgnGame.BLACK_WINS -> end(this, GameFrame.BLACK_WINS);
+                case PgnGame.DRAW -> end(this, GameFrame.DRAWN);
+                default -> end(this, GameFrame.ABANDONED);
+            }
+        }
+
+        Connection player(char role) {
+            return role == 'W' ? white : black;
+        }
+
+        void setPlayer(char role, Connection connection) {
+            if (role == 'W') {
+                white = connection;
+            } else {
+                black = connection;
+            }
+        }
+    }
+
+    private static class Connection {
+        private final SocketChannel channel;
+        private SelectionKey key;
+        private final ByteBuffer in;
+        private ByteBuffer out;
+        //ids of the games the connection plays in
+        private final Set<Integer> games;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+            this.in = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            this.out = ByteBuffer.allocate(GameFrame.SIZE * 16);
+            this.games = new HashSet<>();
+        }
+    }
+
+    /**
+     * Runs a server until the process is stopped
+     * @param args TCP port
+     */
+    public static void main(String[] args) throws IOException {
+        GameServer server = new GameServer(args.length > 0 ? Integer.parseInt(args[0]) : 0);
+        System.out.println("Game server listening on port " + server.getPort());
+        server.run();
+    }
+}
@@ -0,0 +1,81 @@
+package com.arno.mysite.chess.net;
+
+/**
+ * Datagram of the game protocol, 7 bytes: type, sequence number (16 bits), the sequence number of the last packet
+ * received in order (16 bits) and a 16-bit payload. A move travels as its ArchiveMove, so one move costs 7 bytes
+ * and every packet acknowledges what the sender got so far. Sequence numbers wrap around
+ */
+public class MovePacket {
+
+    public static final int SIZE = 7;
+
+    //first packet of either end, the payload is the role it plays
+    public static final int HELLO = 1;
+    //the payload is a 16-bit ArchiveMove
+    public static final int MOVE = 2;
+    //only acknowledges, has no sequence number of its own and is never acknowledged
+    public static final int ACK = 3;
+
+    private final int type;
+    private final int sequence;
+    private final int ack;
+    private final int payload;
+
+    public MovePacket(int type, int sequence, int ack, int payload) {
+        this.type = type;
+        this.sequence = sequence & 0xFFFF;
+        this.ack = ack & 0xFFFF;
+        this.payload = payload & 0xFFFF;
+    }
+
+    /**
+     * @param buffer at least SIZE bytes
+     */
+    public void write(byte[] buffer) {
+        buffer[0] = (byte) type;
+        buffer[1] = (byte) (sequence >>> 8);
+        buffer[2] = (byte) sequence;
+        buffer[3] = (byte) (ack >>> 8);
+        buffer[4] = (byte) ack;
+        buffer[5] = (byte) (payload >>> 8);
+        buffer[6] = (byte) payload;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the datagram is not a packet of the protocol
+     */
+    public static MovePacket read(byte[] buffer, int length) {
+        if (length != SIZE || buffer[0] < HELLO || buffer[0] > ACK) {
+            throw new IllegalArgumentException("Not a game packet: " + length + " bytes");
+        }
+        return new MovePacket(buffer[0], readShort(buffer, 1), readShort(buffer, 3), readShort(buffer, 5));
+    }
+
+    private static int readShort(byte[] buffer, int offset) {
+        return ((buffer[offset] & 0xFF) << 8) | (buffer[offset + 1] & 0xFF);
+    }
+
+    /**
+     * Compares sequence numbers across the wrap around
+     * @return negative if a was sent before b, 0 if they are equal, positive if after
+     */
+    public static int compare(int a, int b) {
+        return (short) (a - b);
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    public int getAck() {
+        return ack;
+    }
+
+    public int getPayload() {
+        return payload;
+    }
+}
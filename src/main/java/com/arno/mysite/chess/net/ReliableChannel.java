@@ -0,0 +1,214 @@
+package com.arno.mysite.chess.net;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers MovePackets over UDP in order and exactly once. Every sent packet stays queued until the peer acknowledges it
+ * and the whole queue is sent again whenever the oldest packet goes unacknowledged for RETRANSMIT_MILLIS.
+ * The receiver takes only the next packet in sequence and acknowledges every packet it gets, duplicates included,
+ * so a lost acknowledgement is repaired by the next retransmission. run() is the receiving loop and has to run on its own thread
+ */
+public class ReliableChannel implements Runnable, Closeable {
+
+    public static final long RETRANSMIT_MILLIS = 100;
+    //how long a receive waits before looking at the retransmission queue
+    private static final int POLL_MILLIS = 20;
+
+    private final DatagramSocket socket;
+    //null until the first packet arrives, a host learns its client from it
+    private SocketAddress peer;
+    private final BlockingQueue<MovePacket> received;
+    //sent packets the peer has not acknowledged, oldest first
+    private final ArrayDeque<MovePacket> unacked;
+    private int nextSequence;
+    //sequence number of the next packet to take from the peer
+    private int expected;
+    private long lastTransmit;
+    private long retransmissions;
+
+    //simulated packet loss, for trying the protocol on loopback
+    private double loss;
+    private final Random random;
+
+    private volatile boolean closed;
+
+    /**
+     * @param peer address packets are sent to, null to take it from the first packet received
+     */
+    public ReliableChannel(DatagramSocket socket, SocketAddress peer) {
+        this.socket = socket;
+        this.peer = peer;
+        this.received = new LinkedBlockingQueue<>();
+        this.unacked = new ArrayDeque<>();
+        this.random = new Random();
+    }
+
+    /**
+     * Queues the packet and sends it, it is sent again until the peer acknowledges it
+     */
+    public synchronized void send(int type, int payload) throws IOException {
+        MovePacket packet = new MovePacket(type, nextSequence, expected - 1, payload);
+        nextSequence = (nextSequence + 1) & 0xFFFF;
+        unacked.addLast(packet);
+        if (peer != null) {
+            if (unacked.size() == 1) {
+                lastTransmit = System.currentTimeMillis();
+            }
+            transmit(packet);
+        }
+    }
+
+    /**
+     * Waits for the next packet of the peer, in the order it was sent
+     */
+    public MovePacket receive() throws InterruptedException {
+        return received.take();
+    }
+
+    /**
+     * @return the next packet of the peer, null if none arrives in time
+     */
+    public MovePacket receive(long timeoutMillis) throws InterruptedException {
+        return received.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Waits until the peer has acknowledged every packet sent
+     * @return false if that took longer than the timeout
+     */
+    public synchronized boolean flush(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!unacked.isEmpty()) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0 || closed) {
+                return false;
+            }
+            wait(left);
+        }
+        return true;
+    }
+
+    /**
+     * Receives until the channel is closed
+     */
+    @Override
+    public void run() {
+        byte[] buffer = new byte[MovePacket.SIZE + 1];
+        DatagramPacket datagram = new DatagramPacket(buffer, buffer.length);
+        try {
+            socket.setSoTimeout(POLL_MILLIS);
+            while (!closed) {
+                try {
+                    datagram.setLength(buffer.length);
+                    socket.receive(datagram);
+                    if (!dropped()) {
+                        handle(MovePacket.read(buffer, datagram.getLength()), datagram.getSocketAddress());
+                    }
+                } catch (SocketTimeoutException | IllegalArgumentException e) {
+                    //nothing arrived in time or something else than a game packet did
+                }
+                retransmit();
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private synchronized void handle(MovePacket packet, SocketAddress from) throws IOException {
+        if (peer == null) {
+            peer = from;
+            lastTransmit = System.currentTimeMillis();
+            for (MovePacket queued : unacked) {
+                transmit(queued);
+            }
+        } else if (!peer.equals(from)) {
+            return;
+        }
+        while (!unacked.isEmpty() && MovePacket.compare(unacked.peekFirst().getSequence(), packet.getAck()) <= 0) {
+            unacked.removeFirst();
+            lastTransmit = System.currentTimeMillis();
+        }
+        if (unacked.isEmpty()) {
+            notifyAll();
+        }
+        if (packet.getType() == MovePacket.ACK) {
+            return;
+        }
+        if (packet.getSequence() == expected) {
+            received.add(packet);
+            expected = (expected + 1) & 0xFFFF;
+        }
+        transmit(new MovePacket(MovePacket.ACK, 0, expected - 1, 0));
+    }
+
+    /**
+     * Sends the queued packets again if the oldest one waited too long, with the latest acknowledgement
+     */
+    private synchronized void retransmit() throws IOException {
+        if (peer == null || unacked.isEmpty() || System.currentTimeMillis() - lastTransmit < RETRANSMIT_MILLIS) {
+            return;
+        }
+        for (MovePacket packet : unacked) {
+            transmit(new MovePacket(packet.getType(), packet.getSequence(), expected - 1, packet.getPayload()));
+            retransmissions++;
+        }
+        lastTransmit = System.currentTimeMillis();
+    }
+
+    private void transmit(MovePacket packet) throws IOException {
+        if (dropped()) {
+            return;
+        }
+        byte[] buffer = new byte[MovePacket.SIZE];
+        packet.write(buffer);
+        socket.send(new DatagramPacket(buffer, buffer.length, peer));
+    }
+
+    private synchronized boolean dropped() {
+        return loss > 0 && random.nextDouble() < loss;
+    }
+
+    /**
+     * Drops sent and received packets at random, both directions of the channel lose packets
+     * @param probability of losing a packet, 0 for none
+     */
+    public synchronized void setLoss(double probability) {
+        this.loss = probability;
+    }
+
+    /**
+     * @return packets sent again because they went unacknowledged
+     */
+    public synchronized long getRetransmissions() {
+        return retransmissions;
+    }
+
+    public synchronized SocketAddress getPeer() {
+        return peer;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        socket.close();
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.arno.mysite.chess.net;
+
+import com.arno.mysite.chess.game.Board;
+import com.arno.mysite.chess.game.Move;
+import com.arno.mysite.chess.game.MoveGenerator;
+import com.arno.mysite.chess.game.MoveList;
+import com.arno.mysite.chess.game.Player;
+import com.arno.mysite.chess.persistence.ArchiveMove;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Player on the other end of a channel. Before waiting for its move it sends the moves played on this side since,
+ * by then the promotion piece of the last move has been chosen
+ */
+public class RemotePlayer implements Player {
+
+    private final char role;
+    private final ReliableChannel channel;
+    //moves of the board that were sent or received already
+    private int synced;
+    private final MoveList legalMoves;
+
+    public RemotePlayer(char role, ReliableChannel channel) {
+        this.role = role;
+        this.channel = channel;
+        this.legalMoves = new MoveList();
+    }
+
+    @Override
+    public char getRole() {
+        return role;
+    }
+
+    /**
+     * Blocks until a legal move of the remote player arrives, illegal ones are skipped.
+     * A hello of the remote end claiming another role than this player's means both ends play the same side,
+     * the channel is closed then
+     * @return packed move, Move.NONE if the thread got interrupted or the channel is closed
+     */
+    @Override
+    public int selectMove(Board board) {
+        if (channel.isClosed()) {
+            return Move.NONE;
+        }
+        sendMoves(board);
+        MoveGenerator.generateLegalMoves(board.getPosition(), legalMoves);
+        try {
+            while (true) {
+                MovePacket packet = channel.receive();
+                if (packet.getType() == MovePacket.HELLO && packet.getPayload() != role) {
+                    channel.close();
+                    return Move.NONE;
+                }
+                if (packet.getType() != MovePacket.MOVE) {
+                    continue;
+                }
+                int move = ArchiveMove.decode(board.getPosition(), packet.getPayload());
+                if (legalMoves.contains(move)) {
+                    synced++;
+                    return move;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Move.NONE;
+        }
+    }
+
+    /**
+     * Sends the last move, the remote side cannot tell the game is over without it
+     */
+    @Override
+    public void gameOver(Board board) {
+        sendMoves(board);
+    }
+
+    /**
+     * Sends the moves played on the board since the last move of the remote player
+     */
+    public void sendMoves(Board board) {
+        int[] history = board.getMoveHistory();
+        try {
+            for (; synced < history.length; synced++) {
+                channel.send(MovePacket.MOVE, ArchiveMove.encode(history[synced]));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public ReliableChannel getChannel() {
+        return channel;
+    }
+}
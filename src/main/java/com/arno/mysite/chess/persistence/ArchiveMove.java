@@ -0,0 +1,47 @@
+package com.arno.mysite.chess.persistence;
+
+import com.arno.mysite.chess.game.Move;
+import com.arno.mysite.chess.game.Position;
+
+/**
+ * Moves of the archive are 16 bits: bits 0-5 from square, 6-11 to square, 12-15 promotion type + 1.
+ * The moving and captured pieces and the flags are left out, decode looks them up in the position before the move
+ */
+public class ArchiveMove {
+
+    private static final int SQUARE_MASK = 0x3F;
+
+    private ArchiveMove() {
+    }
+
+    public static short encode(int move) {
+        return (short) (Move.from(move) | (Move.to(move) << 6) | ((Move.promotion(move) + 1) << 12));
+    }
+
+    /**
+     * @param position position before the move
+     * @return packed move, Move.NONE if the from square is empty. Any other move read from untrusted input
+     * still has to be checked against the legal moves
+     */
+    public static int decode(Position position, int move) {
+        if (position.isEmpty(from(move))) {
+            return Move.NONE;
+        }
+        return position.encodeMove(from(move), to(move), promotion(move));
+    }
+
+    public static int from(int move) {
+        return move & SQUARE_MASK;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & SQUARE_MASK;
+    }
+
+    /**
+     * @return piece type the pawn turns into, -1 if none
+     */
+    public static int promotion(int move) {
+        return ((move >>> 12) & 0xF) - 1;
+    }
+}
@@ -0,0 +1,202 @@
+package com.arno.mysite.chess.persistence;
+
+import com.arno.mysite.chess.game.PgnGame;
+import com.arno.mysite.chess.game.Position;
+import com.arno.mysite.chess.game.UndoInfo;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only view of a binary game archive, both of its files are memory-mapped.
+ * The data file (.games) holds the games one after another: result byte, flags byte, number of moves (short),
+ * the starting FEN (length byte and ASCII) if the flags say so, then the moves as 16-bit ArchiveMoves.
+ * The index file (.index) holds the offset of every game in the data file as a long, so game N is found without reading the others.
+ * Numbers are big-endian. Reads use absolute positions only, so one archive can be read by many threads
+ */
+public class GameArchive {
+
+    public static final int MAX_MOVES = 0xFFFF;
+    public static final int MAX_FEN_LENGTH = 0xFF;
+    static final int HEADER_SIZE = 4;
+    static final int HAS_FEN = 1;
+
+    private static final String[] RESULTS = {PgnGame.UNFINISHED, PgnGame.WHITE_WINS, PgnGame.BLACK_WINS, PgnGame.DRAW};
+
+    //the data file is mapped in segments overlapping by the longest game, so every game lies within one segment
+    private static final long SEGMENT_SIZE = 1L << 30;
+    private static final int MAX_RECORD = HEADER_SIZE + 1 + MAX_FEN_LENGTH + 2 * MAX_MOVES;
+
+    private final MappedByteBuffer index;
+    private final MappedByteBuffer[] segments;
+    private final int games;
+
+    private GameArchive(MappedByteBuffer index, MappedByteBuffer[] segments) {
+        this.index = index;
+        this.segments = segments;
+        this.games = index.capacity() / Long.BYTES;
+    }
+
+    /**
+     * Maps the archive, games appended afterwards are not seen
+     * @param base path of the archive without extension
+     */
+    public static GameArchive open(Path base) throws IOException {
+        MappedByteBuffer index;
+        try (FileChannel channel = FileChannel.open(indexFile(base), StandardOpenOption.READ)) {
+            index = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        MappedByteBuffer[] segments;
+        try (FileChannel channel = FileChannel.open(dataFile(base), StandardOpenOption.READ)) {
+            long size = channel.size();
+            segments = new MappedByteBuffer[(int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = i * SEGMENT_SIZE;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE + MAX_RECORD, size - start));
+            }
+        }
+        return new GameArchive(index, segments);
+    }
+
+    static Path dataFile(Path base) {
+        return Paths.get(base + ".games");
+    }
+
+    static Path indexFile(Path base) {
+        return Paths.get(base + ".index");
+    }
+
+    static int resultCode(String result) {
+        for (int i = 0; i < RESULTS.length; i++) {
+            if (RESULTS[i].equals(result)) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return number of games in the archive
+     */
+    public int size() {
+        return games;
+    }
+
+    /**
+     * @return offset of the game in the data file
+     */
+    public long getOffset(int game) {
+        return index.getLong(game * Long.BYTES);
+    }
+
+    /**
+     * @return PgnGame.WHITE_WINS, BLACK_WINS, DRAW or UNFINISHED
+     */
+    public String getResult(int game) {
+        long offset = getOffset(game);
+        return RESULTS[segment(offset).get(local(offset)) & 0x3];
+    }
+
+    public int getMoveCount(int game) {
+        long offset = getOffset(game);
+        return segment(offset).getShort(local(offset) + 2) & 0xFFFF;
+    }
+
+    /**
+     * @return FEN of the starting position, null for the standard one
+     */
+    public String getStartFen(int game) {
+        long offset = getOffset(game);
+        MappedByteBuffer segment = segment(offset);
+        int start = local(offset);
+        if ((segment.get(start + 1) & HAS_FEN) == 0) {
+            return null;
+        }
+        int length = segment.get(start + HEADER_SIZE) & 0xFF;
+        byte[] fen = new byte[length];
+        for (int i = 0; i < length; i++) {
+            fen[i] = segment.get(start + HEADER_SIZE + 1 + i);
+        }
+        return new String(fen, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @param ply index of the move in the game
+     * @return the move as a 16-bit ArchiveMove
+     */
+    public int getMove(int game, int ply) {
+        long offset = getOffset(game);
+        return getMove(segment(offset), movesStart(offset), ply);
+    }
+
+    /**
+     * Copies the game's moves as 16-bit ArchiveMoves, without decoding them
+     * @param moves at least getMoveCount(game) long
+     * @return number of moves
+     */
+    public int getMoves(int game, short[] moves) {
+        long offset = getOffset(game);
+        MappedByteBuffer segment = segment(offset);
+        int start = movesStart(offset);
+        int count = segment.getShort(local(offset) + 2) & 0xFFFF;
+        for (int i = 0; i < count; i++) {
+            moves[i] = segment.getShort(start + 2 * i);
+        }
+        return count;
+    }
+
+    /**
+     * Reads the game into the given one, the moves are decoded by playing them from the starting position
+     */
+    public void read(int game, PgnGame into) {
+        into.clear();
+        String fen = getStartFen(game);
+        if (fen != null) {
+            into.setTag("SetUp", "1");
+            into.setTag("FEN", fen);
+        }
+        into.setResult(getResult(game));
+
+        Position position = new Position();
+        position.setFen(fen == null ? Position.START_FEN : fen);
+        UndoInfo undo = new UndoInfo();
+        long offset = getOffset(game);
+        MappedByteBuffer segment = segment(offset);
+        int start = movesStart(offset);
+        int count = segment.getShort(local(offset) + 2) & 0xFFFF;
+        for (int i = 0; i < count; i++) {
+            int move = ArchiveMove.decode(position, getMove(segment, start, i));
+            position.makeMove(move, undo);
+            into.addMove(move);
+        }
+    }
+
+    private static int getMove(MappedByteBuffer segment, int movesStart, int ply) {
+        return segment.getShort(movesStart + 2 * ply) & 0xFFFF;
+    }
+
+    /**
+     * @return position of the first move of the game within its segment
+     */
+    private int movesStart(long offset) {
+        MappedByteBuffer segment = segment(offset);
+        int start = local(offset);
+        if ((segment.get(start + 1) & HAS_FEN) == 0) {
+            return start + HEADER_SIZE;
+        }
+        return start + HEADER_SIZE + 1 + (segment.get(start + HEADER_SIZE) & 0xFF);
+    }
+
+    private MappedByteBuffer segment(long offset) {
+        return segments[(int) (offset / SEGMENT_SIZE)];
+    }
+
+    private static int local(long offset) {
+        return (int) (offset % SEGMENT_SIZE);
+    }
+}
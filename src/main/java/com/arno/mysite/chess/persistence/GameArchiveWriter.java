@@ -0,0 +1,129 @@
+package com.arno.mysite.chess.persistence;
+
+import com.arno.mysite.chess.game.PgnGame;
+import com.arno.mysite.chess.game.PgnReader;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends games to a binary archive, see GameArchive for the format.
+ * An existing archive is continued, its games keep their numbers
+ */
+public class GameArchiveWriter implements Closeable, Flushable {
+
+    private final DataOutputStream data;
+    private final DataOutputStream index;
+    //offset of the next game in the data file
+    private long offset;
+    private int games;
+
+    /**
+     * @param base path of the archive without extension
+     */
+    public GameArchiveWriter(Path base) throws IOException {
+        Path dataFile = GameArchive.dataFile(base);
+        Path indexFile = GameArchive.indexFile(base);
+        this.offset = Files.exists(dataFile) ? Files.size(dataFile) : 0;
+        this.games = Files.exists(indexFile) ? (int) (Files.size(indexFile) / Long.BYTES) : 0;
+        this.data = open(dataFile);
+        this.index = open(indexFile);
+    }
+
+    private static DataOutputStream open(Path path) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND), 64 * 1024));
+    }
+
+    /**
+     * @return number of the game in the archive
+     * @throws IllegalArgumentException if the game has too many moves or a FEN too long for the format
+     */
+    public int append(PgnGame game) throws IOException {
+        String fen = game.getStartFen();
+        byte[] fenBytes = fen == null ? null : fen.getBytes(StandardCharsets.US_ASCII);
+        if (game.getMoveCount() > GameArchive.MAX_MOVES) {
+            throw new IllegalArgumentException("Game has more than " + GameArchive.MAX_MOVES + " moves");
+        }
+        if (fenBytes != null && fenBytes.length > GameArchive.MAX_FEN_LENGTH) {
+            throw new IllegalArgumentException("FEN too long: " + fen);
+        }
+
+        data.writeByte(GameArchive.resultCode(game.getResult()));
+        data.writeByte(fenBytes == null ? 0 : GameArchive.HAS_FEN);
+        data.writeShort(game.getMoveCount());
+        int length = GameArchive.HEADER_SIZE;
+        if (fenBytes != null) {
+            data.writeByte(fenBytes.length);
+            data.write(fenBytes);
+            length += 1 + fenBytes.length;
+        }
+        for (int i = 0; i < game.getMoveCount(); i++) {
+            data.writeShort(ArchiveMove.encode(game.getMove(i)));
+        }
+        length += 2 * game.getMoveCount();
+
+        index.writeLong(offset);
+        offset += length;
+        return games++;
+    }
+
+    /**
+     * @return number of games in the archive, earlier ones included
+     */
+    public int getGames() {
+        return games;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        data.flush();
+        index.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            data.close();
+        } finally {
+            index.close();
+        }
+    }
+
+    /**
+     * Adds the games of a PGN file to the archive, games with illegal moves are left out
+     * @param args PGN file and archive path without extension
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: GameArchiveWriter <file.pgn> <archive>");
+            return;
+        }
+        long start = System.nanoTime();
+        long skipped = 0;
+        PgnGame game = new PgnGame();
+        try (PgnReader reader = PgnReader.map(Paths.get(args[0]));
+             GameArchiveWriter writer = new GameArchiveWriter(Paths.get(args[1]))) {
+            while (true) {
+                try {
+                    if (!reader.next(game)) {
+                        break;
+                    }
+                    writer.append(game);
+                } catch (IllegalArgumentException e) {
+                    skipped++;
+                }
+            }
+            System.out.println(writer.getGames() + " games in the archive, " + skipped + " skipped in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.arno.mysite.chess.persistence;
+
+/**
+ * Sorting of (key, value) pairs kept in two parallel long arrays, so millions of pairs are sorted without boxing them
+ */
+class LongPairs {
+
+    private LongPairs() {
+    }
+
+    /**
+     * Quicksort of the pairs in [from, to) by key, then by the masked bits of the value
+     * @param valueMask bits of the value the order depends on, -1 for all
+     */
+    static void sort(long[] keys, long[] values, int from, int to, long valueMask) {
+        while (to - from > 16) {
+            int middle = (from + to) >>> 1;
+            long pivotKey = keys[middle];
+            long pivotValue = values[middle] & valueMask;
+            int i = from;
+            int j = to - 1;
+            while (i <= j) {
+                while (compare(keys[i], values[i] & valueMask, pivotKey, pivotValue) < 0) {
+                    i++;
+                }
+                while (compare(keys[j], values[j] & valueMask, pivotKey, pivotValue) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(keys, values, i++, j--);
+                }
+            }
+            //recursing into the smaller part keeps the stack shallow
+            if (j - from < to - i) {
+                sort(keys, values, from, j + 1, valueMask);
+                from = i;
+            } else {
+                sort(keys, values, i, to, valueMask);
+                to = j + 1;
+            }
+        }
+        for (int i = from + 1; i < to; i++) {
+            for (int j = i; j > from && compare(keys[j - 1], values[j - 1] & valueMask, keys[j], values[j] & valueMask) > 0; j--) {
+                swap(keys, values, j - 1, j);
+            }
+        }
+    }
+
+    static int compare(long key, long value, long otherKey, long otherValue) {
+        int result = Long.compare(key, otherKey);
+        return result != 0 ? result : Long.compare(value, otherValue);
+    }
+
+    private static void swap(long[] keys, long[] values, int i, int j) {
+        long key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+        long value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+}
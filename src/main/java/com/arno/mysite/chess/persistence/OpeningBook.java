@@ -0,0 +1,145 @@
+package com.arno.mysite.chess.persistence;
+
+import com.arno.mysite.chess.game.Move;
+import com.arno.mysite.chess.game.MoveGenerator;
+import com.arno.mysite.chess.game.MoveList;
+import com.arno.mysite.chess.game.Position;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Opening book in the layout of Polyglot books: 16-byte entries of Zobrist key (long), 16-bit ArchiveMove (short),
+ * weight (short) and the number of games the move was played in (int), sorted by key, the moves of a position by falling weight.
+ * The keys are the Zobrist keys of Position, so the books are not compatible with Polyglot's own.
+ * The file is memory-mapped and searched by binary search, reads use absolute positions only
+ */
+public class OpeningBook {
+
+    static final int ENTRY_SIZE = 16;
+
+    private final MappedByteBuffer entries;
+    private final int size;
+
+    private OpeningBook(MappedByteBuffer entries) {
+        this.entries = entries;
+        this.size = entries.capacity() / ENTRY_SIZE;
+    }
+
+    /**
+     * @throws IOException also if the book is larger than 2 GB
+     */
+    public static OpeningBook open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Opening book too large: " + file);
+            }
+            return new OpeningBook(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * @return number of entries in the book
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return number of book moves of the position
+     */
+    public int count(long key) {
+        int count = 0;
+        for (int i = lowerBound(key); i < size && key(i) == key; i++) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Picks one of the book moves of the position at random, moves of higher weight more often
+     * @return packed move, Move.NONE if the position is not in the book
+     */
+    public int probe(Position position) {
+        long key = position.getKey();
+        int first = lowerBound(key);
+        long total = 0;
+        for (int i = first; i < size && key(i) == key; i++) {
+            total += weight(i);
+        }
+        if (total == 0) {
+            return Move.NONE;
+        }
+        long pick = ThreadLocalRandom.current().nextLong(total);
+        for (int i = first; ; i++) {
+            pick -= weight(i);
+            if (pick < 0) {
+                return toMove(position, move(i));
+            }
+        }
+    }
+
+    /**
+     * @return packed book move of the position with the highest weight, Move.NONE if the position is not in the book
+     */
+    public int bestMove(Position position) {
+        int first = lowerBound(position.getKey());
+        if (first == size || key(first) != position.getKey()) {
+            return Move.NONE;
+        }
+        return toMove(position, move(first));
+    }
+
+    /**
+     * Looks the book move up among the legal moves, a key collision could bring up a move of another position
+     * @return packed move, Move.NONE if it is not legal
+     */
+    private static int toMove(Position position, int bookMove) {
+        MoveList moves = new MoveList();
+        MoveGenerator.generateLegalMoves(position, moves);
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            if (Move.from(move) == ArchiveMove.from(bookMove) && Move.to(move) == ArchiveMove.to(bookMove)
+                    && Move.promotion(move) == ArchiveMove.promotion(bookMove)) {
+                return move;
+            }
+        }
+        return Move.NONE;
+    }
+
+    /**
+     * @return first entry with a key not below the given one
+     */
+    private int lowerBound(long key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (key(middle) < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private long key(int entry) {
+        return entries.getLong(entry * ENTRY_SIZE);
+    }
+
+    /**
+     * @return 16-bit ArchiveMove of the entry
+     */
+    private int move(int entry) {
+        return entries.getShort(entry * ENTRY_SIZE + 8) & 0xFFFF;
+    }
+
+    private int weight(int entry) {
+        return entries.getShort(entry * ENTRY_SIZE + 10) & 0xFFFF;
+    }
+}
@@ -0,0 +1,235 @@
+package com.arno.mysite.chess.persistence;
+
+import com.arno.mysite.chess.game.PgnGame;
+import com.arno.mysite.chess.game.Position;
+import com.arno.mysite.chess.game.UndoInfo;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Builds an OpeningBook from the opening moves of the games in an archive.
+ * Every thread replays a range of games and counts how often each move was played in each position and how it scored,
+ * duplicates are merged whenever the buffer fills up, so the buffer grows only with the number of different moves.
+ * The weight of a move is its score: 2 for every win and 1 for every draw or unfinished game of the side playing it
+ */
+public class OpeningBookBuilder {
+
+    public static final int DEFAULT_MAX_PLY = 20;
+
+    //a value packs the 16-bit ArchiveMove, the number of games (24 bits) and the score (24 bits)
+    private static final long MOVE_MASK = 0xFFFF;
+    private static final int GAMES_SHIFT = 16;
+    private static final int SCORE_SHIFT = 40;
+    private static final long COUNTER_MAX = (1L << 24) - 1;
+
+    private final GameArchive archive;
+    private final int threads;
+    private final int maxPly;
+    private final int minGames;
+
+    public OpeningBookBuilder(GameArchive archive) {
+        this(archive, Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_PLY, 1);
+    }
+
+    /**
+     * @param maxPly moves after this many plies are left out
+     * @param minGames moves played in fewer games are left out
+     */
+    public OpeningBookBuilder(GameArchive archive, int threads, int maxPly, int minGames) {
+        this.archive = archive;
+        this.threads = Math.max(1, threads);
+        this.maxPly = maxPly;
+        this.minGames = minGames;
+    }
+
+    public void build(Path file) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Moves all;
+        try {
+            List<Future<Moves>> tasks = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                int first = (int) ((long) archive.size() * i / threads);
+                int last = (int) ((long) archive.size() * (i + 1) / threads);
+                tasks.add(executor.submit(() -> collect(first, last)));
+            }
+            all = new Moves(1024);
+            for (Future<Moves> task : tasks) {
+                all.addAll(task.get());
+            }
+            all.compact();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while building the book", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Building the book failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        write(all, file);
+    }
+
+    /**
+     * Replays the opening of every game of the range that starts from the standard position
+     */
+    private Moves collect(int first, int last) {
+        Moves moves = new Moves(64 * 1024);
+        Position position = new Position();
+        UndoInfo undo = new UndoInfo();
+        short[] gameMoves = new short[GameArchive.MAX_MOVES];
+        for (int game = first; game < last; game++) {
+            if (archive.getStartFen(game) != null) {
+                continue;
+            }
+            String result = archive.getResult(game);
+            position.setFen(Position.START_FEN);
+            int count = Math.min(archive.getMoves(game, gameMoves), maxPly);
+            for (int ply = 0; ply < count; ply++) {
+                int move = gameMoves[ply] & 0xFFFF;
+                long score = score(result, position.getSideToMove());
+                moves.add(position.getKey(), move | (1L << GAMES_SHIFT) | (score << SCORE_SHIFT));
+                position.makeMove(ArchiveMove.decode(position, move), undo);
+            }
+        }
+        moves.compact();
+        return moves;
+    }
+
+    /**
+     * @return points of the game for the colour: 2 for a win, 1 for a draw or an unfinished game, 0 for a loss
+     */
+    private static long score(String result, int colour) {
+        if (result.equals(PgnGame.WHITE_WINS)) {
+            return colour == Position.WHITE ? 2 : 0;
+        }
+        if (result.equals(PgnGame.BLACK_WINS)) {
+            return colour == Position.BLACK ? 2 : 0;
+        }
+        return 1;
+    }
+
+    /**
+     * Writes the entries of the sorted moves, the moves of a position by falling weight.
+     * Weights above 16 bits are scaled down per position, so their proportions stay
+     */
+    private void write(Moves moves, Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024))) {
+            long[] group = new long[64];
+            int start = 0;
+            while (start < moves.size) {
+                long key = moves.keys[start];
+                int end = start;
+                long maxScore = 0;
+                while (end < moves.size && moves.keys[end] == key) {
+                    maxScore = Math.max(maxScore, moves.values[end] >>> SCORE_SHIFT);
+                    end++;
+                }
+                if (end - start > group.length) {
+                    group = new long[end - start];
+                }
+                int count = 0;
+                for (int i = start; i < end; i++) {
+                    long value = moves.values[i];
+                    long score = value >>> SCORE_SHIFT;
+                    long weight = maxScore > 0xFFFF ? score * 0xFFFF / maxScore : score;
+                    if (((value >>> GAMES_SHIFT) & COUNTER_MAX) >= minGames && weight > 0) {
+                        //the weight goes above the move, so sorting the group sorts it by weight
+                        group[count++] = (weight << 40) | (value & ((1L << SCORE_SHIFT) - 1));
+                    }
+                }
+                Arrays.sort(group, 0, count);
+                for (int i = count - 1; i >= 0; i--) {
+                    out.writeLong(key);
+                    out.writeShort((int) (group[i] & MOVE_MASK));
+                    out.writeShort((int) (group[i] >>> 40));
+                    out.writeInt((int) ((group[i] >>> GAMES_SHIFT) & COUNTER_MAX));
+                }
+                start = end;
+            }
+        }
+    }
+
+    /**
+     * Growing buffer of (key, value) pairs, compact merges the pairs of the same position and move
+     */
+    private static class Moves {
+        private long[] keys;
+        private long[] values;
+        private int size;
+
+        Moves(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new long[capacity];
+        }
+
+        void add(long key, long value) {
+            if (size == keys.length) {
+                compact();
+                //still more than half full, merging again soon would not gain much
+                if (size > keys.length / 2) {
+                    keys = Arrays.copyOf(keys, keys.length * 2);
+                    values = Arrays.copyOf(values, values.length * 2);
+                }
+            }
+            keys[size] = key;
+            values[size] = value;
+            size++;
+        }
+
+        void addAll(Moves other) {
+            if (size + other.size > keys.length) {
+                keys = Arrays.copyOf(keys, size + other.size);
+                values = Arrays.copyOf(values, size + other.size);
+            }
+            System.arraycopy(other.keys, 0, keys, size, other.size);
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+
+        /**
+         * Sorts the pairs by key and move and adds up the counters of equal ones
+         */
+        void compact() {
+            LongPairs.sort(keys, values, 0, size, MOVE_MASK);
+            int merged = 0;
+            for (int i = 0; i < size; i++) {
+                if (merged > 0 && keys[merged - 1] == keys[i] && (values[merged - 1] & MOVE_MASK) == (values[i] & MOVE_MASK)) {
+                    long games = Math.min(COUNTER_MAX, ((values[merged - 1] >>> GAMES_SHIFT) & COUNTER_MAX) + ((values[i] >>> GAMES_SHIFT) & COUNTER_MAX));
+                    long score = Math.min(COUNTER_MAX, (values[merged - 1] >>> SCORE_SHIFT) + (values[i] >>> SCORE_SHIFT));
+                    values[merged - 1] = (values[i] & MOVE_MASK) | (games << GAMES_SHIFT) | (score << SCORE_SHIFT);
+                } else {
+                    keys[merged] = keys[i];
+                    values[merged] = values[i];
+                    merged++;
+                }
+            }
+            size = merged;
+        }
+    }
+
+    /**
+     * Builds the book of an archive
+     * @param args archive path without extension and book file
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: OpeningBookBuilder <archive> <book.bin>");
+            return;
+        }
+        long start = System.nanoTime();
+        new OpeningBookBuilder(GameArchive.open(Paths.get(args[0]))).build(Paths.get(args[1]));
+        OpeningBook book = OpeningBook.open(Paths.get(args[1]));
+        System.out.println(book.size() + " book entries in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+}
@@ -0,0 +1,225 @@
+package com.arno.mysite.chess.persistence;
+
+import com.arno.mysite.chess.game.Board;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Finds the games of an archive that reached a position, looked up by the Zobrist key of the position.
+ * The key file (.keys) is the directory: one entry per position, sorted by key, holding the key (long),
+ * the offset of its postings (long) and their number (int), found by binary search.
+ * The postings file (.postings) holds for every position the games and plies it was reached at,
+ * sorted and delta-encoded as varints in blocks, see PositionIndexBuilder.
+ * Both files are memory-mapped, reads use absolute positions only, so one index can be queried by many threads
+ */
+public class PositionIndex {
+
+    public static final int BLOCK_SIZE = 128;
+    static final int ENTRY_SIZE = 20;
+
+    //whole entries and 1 GB of postings per mapped segment
+    private static final long ENTRIES_PER_SEGMENT = 1L << 26;
+    private static final int POSTINGS_SHIFT = 30;
+    private static final long POSTINGS_MASK = (1L << POSTINGS_SHIFT) - 1;
+
+    private final MappedByteBuffer[] keys;
+    private final MappedByteBuffer[] postings;
+    private final long entries;
+
+    private PositionIndex(MappedByteBuffer[] keys, MappedByteBuffer[] postings, long entries) {
+        this.keys = keys;
+        this.postings = postings;
+        this.entries = entries;
+    }
+
+    /**
+     * @param base path of the index without extension
+     */
+    public static PositionIndex open(Path base) throws IOException {
+        MappedByteBuffer[] keys;
+        long entries;
+        try (FileChannel channel = FileChannel.open(keysFile(base), StandardOpenOption.READ)) {
+            entries = channel.size() / ENTRY_SIZE;
+            keys = map(channel, ENTRIES_PER_SEGMENT * ENTRY_SIZE);
+        }
+        MappedByteBuffer[] postings;
+        try (FileChannel channel = FileChannel.open(postingsFile(base), StandardOpenOption.READ)) {
+            postings = map(channel, 1L << POSTINGS_SHIFT);
+        }
+        return new PositionIndex(keys, postings, entries);
+    }
+
+    private static MappedByteBuffer[] map(FileChannel channel, long segmentSize) throws IOException {
+        long size = channel.size();
+        MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((size + segmentSize - 1) / segmentSize)];
+        for (int i = 0; i < segments.length; i++) {
+            long start = i * segmentSize;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segmentSize, size - start));
+        }
+        return segments;
+    }
+
+    static Path keysFile(Path base) {
+        return Paths.get(base + ".keys");
+    }
+
+    static Path postingsFile(Path base) {
+        return Paths.get(base + ".postings");
+    }
+
+    /**
+     * A posting packs the game number into the upper bits and the ply into the lowest 16
+     */
+    static long posting(int game, int ply) {
+        return ((long) game << 16) | ply;
+    }
+
+    static int game(long posting) {
+        return (int) (posting >>> 16);
+    }
+
+    static int ply(long posting) {
+        return (int) (posting & 0xFFFF);
+    }
+
+    /**
+     * @return number of different positions in the index
+     */
+    public long size() {
+        return entries;
+    }
+
+    /**
+     * @return number of times the position was reached in the games
+     */
+    public int count(long key) {
+        long entry = findEntry(key);
+        return entry < 0 ? 0 : entryCount(entry);
+    }
+
+    public int count(Board board) {
+        return count(board.getKey());
+    }
+
+    /**
+     * Fills games and plies with the games that reached the position and the number of moves played before it,
+     * ordered by game and ply, as many as the arrays hold
+     * @return number of times the position was reached, may be more than were filled in
+     */
+    public int find(long key, int[] games, int[] plies) {
+        long entry = findEntry(key);
+        if (entry < 0) {
+            return 0;
+        }
+        int count = entryCount(entry);
+        int wanted = Math.min(count, Math.min(games.length, plies.length));
+        PostingReader reader = new PostingReader(entryOffset(entry));
+        int found = 0;
+        while (found < wanted) {
+            int length = reader.readVarint();
+            long blockEnd = reader.offset + length;
+            int game = reader.readVarint();
+            int ply = reader.readVarint();
+            games[found] = game;
+            plies[found] = ply;
+            found++;
+            while (found < wanted && reader.offset < blockEnd) {
+                int delta = reader.readVarint();
+                int next = reader.readVarint();
+                ply = delta == 0 ? ply + next : next;
+                game += delta;
+                games[found] = game;
+                plies[found] = ply;
+                found++;
+            }
+            reader.offset = blockEnd;
+        }
+        return count;
+    }
+
+    /**
+     * Counts the moves played next in the games that reached the position, like an opening explorer
+     * @return 16-bit ArchiveMove and the number of games it was played in
+     */
+    public Map<Integer, Integer> nextMoves(long key, GameArchive archive) {
+        int count = count(key);
+        int[] games = new int[count];
+        int[] plies = new int[count];
+        find(key, games, plies);
+        Map<Integer, Integer> moves = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            if (plies[i] < archive.getMoveCount(games[i])) {
+                moves.merge(archive.getMove(games[i], plies[i]), 1, Integer::sum);
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * Binary search over the sorted key directory
+     * @return number of the entry of the key, -1 if the position is not in the index
+     */
+    private long findEntry(long key) {
+        long low = 0;
+        long high = entries - 1;
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            long middleKey = entryBuffer(middle).getLong(entryStart(middle));
+            if (middleKey < key) {
+                low = middle + 1;
+            } else if (middleKey > key) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private long entryOffset(long entry) {
+        return entryBuffer(entry).getLong(entryStart(entry) + Long.BYTES);
+    }
+
+    private int entryCount(long entry) {
+        return entryBuffer(entry).getInt(entryStart(entry) + 2 * Long.BYTES);
+    }
+
+    private MappedByteBuffer entryBuffer(long entry) {
+        return keys[(int) (entry / ENTRIES_PER_SEGMENT)];
+    }
+
+    private static int entryStart(long entry) {
+        return (int) (entry % ENTRIES_PER_SEGMENT) * ENTRY_SIZE;
+    }
+
+    /**
+     * Reads the postings file from an offset on, a posting list may cross from one segment into the next
+     */
+    private class PostingReader {
+        private long offset;
+
+        PostingReader(long offset) {
+            this.offset = offset;
+        }
+
+        int readVarint() {
+            int value = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = postings[(int) (offset >>> POSTINGS_SHIFT)].get((int) (offset & POSTINGS_MASK));
+                offset++;
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,411 @@
+package com.arno.mysite.chess.persistence;
+
+import com.arno.mysite.chess.game.Position;
+import com.arno.mysite.chess.game.UndoInfo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Builds the PositionIndex of a game archive with an external sort.
+ * The games are split into ranges replayed on several threads, every thread collects (key, posting) pairs
+ * of the positions it passes, sorts them once its buffer is full and writes them out as a sorted run.
+ * The runs are then merged into the postings and key files, at most MAX_FAN_IN at a time, so neither the memory used
+ * nor the open files grow with the archive
+ */
+public class PositionIndexBuilder {
+
+    //16 MB of pairs per thread
+    public static final int DEFAULT_RUN_SIZE = 1024 * 1024;
+    //runs read at once by one merge, each with its own 64 KB buffer
+    public static final int MAX_FAN_IN = 128;
+
+    private final GameArchive archive;
+    private final Path base;
+    private final int threads;
+    private final int runSize;
+    private final int maxPly;
+    private final int fanIn;
+
+    /**
+     * Indexes every position of every game, using all processors
+     */
+    public PositionIndexBuilder(GameArchive archive, Path base) {
+        this(archive, base, Runtime.getRuntime().availableProcessors(), DEFAULT_RUN_SIZE, GameArchive.MAX_MOVES);
+    }
+
+    /**
+     * @param base path of the index without extension
+     * @param runSize pairs each thread sorts in memory before writing a run
+     * @param maxPly positions after more moves than this are left out
+     */
+    public PositionIndexBuilder(GameArchive archive, Path base, int threads, int runSize, int maxPly) {
+        this(archive, base, threads, runSize, maxPly, MAX_FAN_IN);
+    }
+
+    /**
+     * @param fanIn runs merged at once, more runs are first merged into longer ones
+     */
+    public PositionIndexBuilder(GameArchive archive, Path base, int threads, int runSize, int maxPly, int fanIn) {
+        this.archive = archive;
+        this.base = base;
+        this.threads = Math.max(1, threads);
+        this.runSize = Math.max(1, runSize);
+        this.maxPly = maxPly;
+        this.fanIn = Math.max(2, fanIn);
+    }
+
+    public void build() throws IOException {
+        Path directory = base.toAbsolutePath().getParent();
+        List<Path> runs = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            //one contiguous range of games per thread, so every thread fills whole runs
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                int first = (int) ((long) archive.size() * i / threads);
+                int last = (int) ((long) archive.size() * (i + 1) / threads);
+                tasks.add(executor.submit(() -> {
+                    sortRange(first, last, directory, runs);
+                    return null;
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+            merge(runs, directory);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while building the index", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Building the index failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+        }
+    }
+
+    /**
+     * Replays the games of the range and writes their positions as sorted runs
+     */
+    private void sortRange(int first, int last, Path directory, List<Path> runs) throws IOException {
+        Run run = new Run(runSize);
+        Position position = new Position();
+        UndoInfo undo = new UndoInfo();
+        short[] moves = new short[GameArchive.MAX_MOVES];
+        for (int game = first; game < last; game++) {
+            String fen = archive.getStartFen(game);
+            position.setFen(fen == null ? Position.START_FEN : fen);
+            int count = archive.getMoves(game, moves);
+            for (int ply = 0; ply <= Math.min(count, maxPly); ply++) {
+                if (run.size == run.keys.length) {
+                    runs.add(run.write(directory));
+                }
+                run.add(position.getKey(), PositionIndex.posting(game, ply));
+                if (ply < count) {
+                    position.makeMove(ArchiveMove.decode(position, moves[ply] & 0xFFFF), undo);
+                }
+            }
+        }
+        if (run.size > 0) {
+            runs.add(run.write(directory));
+        }
+    }
+
+    /**
+     * In-memory buffer of (key, posting) pairs of one thread
+     */
+    private static class Run {
+        private final long[] keys;
+        private final long[] postings;
+        private int size;
+
+        Run(int capacity) {
+            this.keys = new long[capacity];
+            this.postings = new long[capacity];
+        }
+
+        void add(long key, long posting) {
+            keys[size] = key;
+            postings[size] = posting;
+            size++;
+        }
+
+        /**
+         * Sorts the pairs and writes them to a new temporary file, the buffer is emptied
+         */
+        Path write(Path directory) throws IOException {
+            LongPairs.sort(keys, postings, 0, size, -1L);
+            Path path = Files.createTempFile(directory, "positions", ".run");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 64 * 1024))) {
+                for (int i = 0; i < size; i++) {
+                    out.writeLong(keys[i]);
+                    out.writeLong(postings[i]);
+                }
+            }
+            size = 0;
+            return path;
+        }
+    }
+
+    /**
+     * Merges the sorted runs into the postings and key files.
+     * While there are more runs than the fan-in, groups of them are merged into longer runs first,
+     * the merged runs are deleted and the new ones added to runs, so they are deleted at the end as well
+     */
+    private void merge(List<Path> runs, Path directory) throws IOException {
+        List<Path> pending = new ArrayList<>(runs);
+        while (pending.size() > fanIn) {
+            List<Path> merged = new ArrayList<>();
+            for (int i = 0; i < pending.size(); i += fanIn) {
+                List<Path> group = pending.subList(i, Math.min(i + fanIn, pending.size()));
+                if (group.size() == 1) {
+                    merged.add(group.get(0));
+                    continue;
+                }
+                Path path = Files.createTempFile(directory, "positions", ".run");
+                runs.add(path);
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 64 * 1024))) {
+                    merge(group, (key, posting) -> {
+                        out.writeLong(key);
+                        out.writeLong(posting);
+                    });
+                }
+                for (Path run : group) {
+                    Files.deleteIfExists(run);
+                }
+                merged.add(path);
+            }
+            pending = merged;
+        }
+
+        try (DataOutputStream postingsOut = new DataOutputStream(new BufferedOutputStream(
+                     Files.newOutputStream(PositionIndex.postingsFile(base)), 256 * 1024));
+             DataOutputStream keysOut = new DataOutputStream(new BufferedOutputStream(
+                     Files.newOutputStream(PositionIndex.keysFile(base)), 256 * 1024))) {
+            KeyWriter writer = new KeyWriter(new PostingWriter(postingsOut), keysOut);
+            merge(pending, writer);
+            writer.finish();
+        }
+    }
+
+    /**
+     * Receives the merged pairs in order
+     */
+    private interface PairSink {
+        void accept(long key, long posting) throws IOException;
+    }
+
+    /**
+     * Groups the merged postings by key, one posting list and key entry per key
+     */
+    private static class KeyWriter implements PairSink {
+        private final PostingWriter postings;
+        private final DataOutputStream keys;
+        private long key;
+        private boolean open;
+
+        KeyWriter(PostingWriter postings, DataOutputStream keys) {
+            this.postings = postings;
+            this.keys = keys;
+        }
+
+        @Override
+        public void accept(long next, long posting) throws IOException {
+            if (!open || next != key) {
+                finish();
+                key = next;
+                postings.start();
+                open = true;
+            }
+            postings.add(posting);
+        }
+
+        /**
+         * Ends the list of the last key
+         */
+        void finish() throws IOException {
+            if (open) {
+                postings.finish(keys, key);
+                open = false;
+            }
+        }
+    }
+
+    /**
+     * Merges the sorted runs in one pass, every run is open until it is read to the end
+     */
+    private static void merge(List<Path> runs, PairSink sink) throws IOException {
+        PriorityQueue<RunReader> queue = new PriorityQueue<>(Math.max(1, runs.size()),
+                (a, b) -> LongPairs.compare(a.key, a.posting, b.key, b.posting));
+        try {
+            for (Path run : runs) {
+                RunReader reader = new RunReader(run);
+                if (reader.next()) {
+                    queue.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+            while (!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+                sink.accept(reader.key, reader.posting);
+                if (reader.next()) {
+                    queue.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+        } finally {
+            for (RunReader reader : queue) {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Reads the pairs of a run one after another
+     */
+    private static class RunReader {
+        private final DataInputStream in;
+        private long key;
+        private long posting;
+
+        RunReader(Path path) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 64 * 1024));
+        }
+
+        boolean next() throws IOException {
+            try {
+                key = in.readLong();
+                posting = in.readLong();
+                return true;
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+
+        void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes the posting list of one key as blocks of at most PositionIndex.BLOCK_SIZE postings.
+     * A block is its length in bytes followed by the first posting and the deltas to the ones after it, all as varints,
+     * so every block can be decoded or skipped on its own
+     */
+    private static class PostingWriter {
+        private final DataOutputStream out;
+        private final long[] block;
+        private int size;
+        private final ByteArrayOutputStream bytes;
+        //offset of the next byte in the postings file
+        private long offset;
+        //offset and size of the list being written
+        private long listOffset;
+        private int count;
+
+        PostingWriter(DataOutputStream out) {
+            this.out = out;
+            this.block = new long[PositionIndex.BLOCK_SIZE];
+            this.bytes = new ByteArrayOutputStream(PositionIndex.BLOCK_SIZE * 4);
+            this.offset = 0;
+        }
+
+        void start() {
+            listOffset = offset;
+            count = 0;
+        }
+
+        void add(long posting) throws IOException {
+            block[size++] = posting;
+            count++;
+            if (size == block.length) {
+                writeBlock();
+            }
+        }
+
+        /**
+         * Writes the last block of the list and its entry in the key directory
+         */
+        void finish(DataOutputStream keys, long key) throws IOException {
+            if (size > 0) {
+                writeBlock();
+            }
+            keys.writeLong(key);
+            keys.writeLong(listOffset);
+            keys.writeInt(count);
+        }
+
+        private void writeBlock() throws IOException {
+            bytes.reset();
+            int game = PositionIndex.game(block[0]);
+            int ply = PositionIndex.ply(block[0]);
+            writeVarint(bytes, game);
+            writeVarint(bytes, ply);
+            for (int i = 1; i < size; i++) {
+                int nextGame = PositionIndex.game(block[i]);
+                int nextPly = PositionIndex.ply(block[i]);
+                writeVarint(bytes, nextGame - game);
+                //the ply is a delta only within the same game
+                writeVarint(bytes, nextGame == game ? nextPly - ply : nextPly);
+                game = nextGame;
+                ply = nextPly;
+            }
+            offset += writeVarint(out, bytes.size());
+            bytes.writeTo(out);
+            offset += bytes.size();
+            size = 0;
+        }
+    }
+
+    /**
+     * Writes the value in 7-bit groups, lowest first, the high bit marks that more groups follow
+     * @return number of bytes written
+     */
+    private static int writeVarint(OutputStream out, int value) throws IOException {
+        int length = 1;
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+            length++;
+        }
+        out.write(value);
+        return length;
+    }
+
+    /**
+     * Builds the index of an archive
+     * @param args archive path and index path, both without extension
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: PositionIndexBuilder <archive> <index>");
+            return;
+        }
+        long start = System.nanoTime();
+        GameArchive archive = GameArchive.open(Paths.get(args[0]));
+        new PositionIndexBuilder(archive, Paths.get(args[1])).build();
+        System.out.println(archive.size() + " games indexed in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+}
@@ -0,0 +1,429 @@
+package com.arno.mysite.chess.tablebase;
+
+import com.arno.mysite.chess.game.Position;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Table of one material signature like "KQvKR", white's pieces before the 'v'. One byte per position, the result for the side to move
+ * with the exact moves to mate: 0 illegal, 1 drawn, 2 + moves for a loss and 128 + moves for a win, so mates of up to MAX_DTM moves fit.
+ * A position is indexed by the side to move and the squares of the white king, the black king and the other pieces in signature order.
+ * The board is mirrored so the white king stands in the a1-d1-d4 triangle, and with the king on the diagonal
+ * it is also mirrored along it if that gives the smaller index. With pawns it is only mirrored left to right so the king stands on files a-d.
+ * Identical pieces are indexed in ascending order of their squares, so every position has exactly one index.
+ * Castling rights and en passant squares are not part of the index
+ */
+public class Tablebase {
+
+    public static final int ILLEGAL = 0;
+    public static final int LOSS = 1;
+    public static final int DRAW = 2;
+    public static final int WIN = 3;
+    //longest mate a byte holds, the generator gives up on longer ones
+    public static final int MAX_DTM = 126;
+    private static final int DRAW_CODE = 1;
+    private static final int LOSS_CODES = 2;
+    private static final int WIN_CODES = 128;
+
+    private static final String PIECE_LETTERS = "QRBNP";
+    private static final int[] LETTER_TYPES = {Position.QUEEN, Position.ROOK, Position.BISHOP, Position.KNIGHT, Position.PAWN};
+
+    //symmetries: 1 mirrors the files, 2 mirrors the ranks, 4 mirrors along the a1-h8 diagonal
+    private static final int[][] TRANSFORM = new int[8][Position.SQUARES];
+    //symmetry that brings the white king into its area, without and with pawns
+    private static final int[] KING_TRANSFORM = new int[Position.SQUARES];
+    private static final int[] PAWN_KING_TRANSFORM = new int[Position.SQUARES];
+    //squares the white king is indexed on and the index of each square, -1 outside the area
+    private static final int[] KING_SQUARES;
+    private static final int[] KING_SLOTS = new int[Position.SQUARES];
+    private static final int[] PAWN_KING_SQUARES;
+    private static final int[] PAWN_KING_SLOTS = new int[Position.SQUARES];
+
+    static {
+        List<Integer> kingSquares = new ArrayList<>();
+        List<Integer> pawnKingSquares = new ArrayList<>();
+        for (int square = 0; square < Position.SQUARES; square++) {
+            for (int t = 0; t < 8; t++) {
+                TRANSFORM[t][square] = transform(square, t);
+            }
+            int file = Position.fileOf(square);
+            int rank = 7 - Position.rankOf(square);
+            int t = (file > 3 ? 1 : 0) | (rank > 3 ? 2 : 0);
+            int mirrored = transform(square, t);
+            if (7 - Position.rankOf(mirrored) > Position.fileOf(mirrored)) {
+                t |= 4;
+            }
+            KING_TRANSFORM[square] = t;
+            PAWN_KING_TRANSFORM[square] = file > 3 ? 1 : 0;
+
+            KING_SLOTS[square] = -1;
+            PAWN_KING_SLOTS[square] = -1;
+            if (file <= 3 && rank <= 3 && rank <= file) {
+                KING_SLOTS[square] = kingSquares.size();
+                kingSquares.add(square);
+            }
+            if (file <= 3) {
+                PAWN_KING_SLOTS[square] = pawnKingSquares.size();
+                pawnKingSquares.add(square);
+            }
+        }
+        KING_SQUARES = kingSquares.stream().mapToInt(Integer::intValue).toArray();
+        PAWN_KING_SQUARES = pawnKingSquares.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private final String signature;
+    //pieces in index order: white king, black king, then the others in signature order
+    private final int[] colours;
+    private final int[] types;
+    private final boolean pawns;
+    private final int size;
+    //null while the table is generated
+    private final ByteBuffer data;
+
+    private Tablebase(String signature, ByteBuffer data) {
+        this.signature = signature;
+        int split = signature.indexOf('v');
+        if (!signature.startsWith("K") || split < 1 || signature.charAt(split + 1) != 'K'
+                || signature.length() - 1 > Tablebases.MAX_PIECES) {
+            throw new IllegalArgumentException("Invalid material signature: " + signature);
+        }
+        int pieces = signature.length() - 1;
+        colours = new int[pieces];
+        types = new int[pieces];
+        colours[0] = Position.WHITE;
+        types[0] = Position.KING;
+        colours[1] = Position.BLACK;
+        types[1] = Position.KING;
+        int slot = 2;
+        boolean hasPawns = false;
+        for (int i = 1; i < signature.length(); i++) {
+            if (i == split || i == split + 1) {
+                continue;
+            }
+            int letter = PIECE_LETTERS.indexOf(signature.charAt(i));
+            if (letter < 0) {
+                throw new IllegalArgumentException("Invalid material signature: " + signature);
+            }
+            colours[slot] = i < split ? Position.WHITE : Position.BLACK;
+            types[slot] = LETTER_TYPES[letter];
+            hasPawns |= types[slot] == Position.PAWN;
+            slot++;
+        }
+        this.pawns = hasPawns;
+        long entries = 2L * (pawns ? PAWN_KING_SQUARES.length : KING_SQUARES.length) << (6 * (pieces - 1));
+        this.size = (int) entries;
+        this.data = data;
+    }
+
+    /**
+     * Index layout of the signature without any data, for generating it
+     */
+    static Tablebase layout(String signature) {
+        return new Tablebase(signature, null);
+    }
+
+    /**
+     * Maps the table file read-only
+     */
+    public static Tablebase open(Path file, String signature) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Tablebase table = new Tablebase(signature, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            if (channel.size() != table.size) {
+                throw new IOException("Table " + file + " has " + channel.size() + " entries instead of " + table.size);
+            }
+            return table;
+        }
+    }
+
+    public String getSignature() {
+        return signature;
+    }
+
+    /**
+     * @return number of entries of the table
+     */
+    public int size() {
+        return size;
+    }
+
+    boolean hasPawns() {
+        return pawns;
+    }
+
+    public int get(int index) {
+        return data.get(index) & 0xFF;
+    }
+
+    /**
+     * @param flipped whether the position has the colours of the table swapped, the board is then mirrored top to bottom
+     * @param squares scratch space for the squares of the pieces, at least MAX_PIECES long
+     * @return index of the position, which must have the material of the table
+     */
+    int index(Position position, boolean flipped, int[] squares) {
+        int flip = flipped ? 1 : 0;
+        long bits = 0;
+        for (int slot = 0; slot < colours.length; slot++) {
+            if (slot == 0 || !sameKind(slot - 1, slot)) {
+                bits = position.getPieces(colours[slot] ^ flip, types[slot]);
+            }
+            int square = Long.numberOfTrailingZeros(bits);
+            bits &= bits - 1;
+            squares[slot] = flipped ? square ^ 56 : square;
+        }
+        int side = position.getSideToMove() ^ flip;
+        int[] transform = TRANSFORM[pawns ? PAWN_KING_TRANSFORM[squares[0]] : KING_TRANSFORM[squares[0]]];
+        for (int slot = 0; slot < colours.length; slot++) {
+            squares[slot] = transform[squares[slot]];
+        }
+        int index = pack(side, squares);
+        if (!pawns && onDiagonal(squares[0])) {
+            //the king stays on the diagonal when mirrored along it, the smaller of the two indexes is the position's
+            index = Math.min(index, mirror(side, squares));
+        }
+        return index;
+    }
+
+    /**
+     * Puts the position of the index on the board, without castling rights and en passant square
+     * @param squares scratch space for the squares of the pieces, at least MAX_PIECES long
+     * @return false if two pieces share a square, a pawn stands on the first or last rank
+     * or the index is not the one index() gives the position: identical pieces out of order,
+     * or the larger index of a position mirrored along the a1-h8 diagonal
+     */
+    boolean setup(int index, Position position, int[] squares) {
+        int side = unpack(index, squares);
+        for (int slot = 1; slot < colours.length; slot++) {
+            if (sameKind(slot - 1, slot) && squares[slot] <= squares[slot - 1]) {
+                return false;
+            }
+        }
+        if (!pawns && onDiagonal(squares[0])) {
+            if (mirror(side, squares) < index) {
+                return false;
+            }
+            unpack(index, squares);
+        }
+        long used = 0;
+        for (int slot = 0; slot < colours.length; slot++) {
+            long bit = Position.bit(squares[slot]);
+            int rank = Position.rankOf(squares[slot]);
+            if ((used & bit) != 0 || (types[slot] == Position.PAWN && (rank == 0 || rank == 7))) {
+                return false;
+            }
+            used |= bit;
+        }
+        position.clear();
+        for (int slot = 0; slot < colours.length; slot++) {
+            position.putPiece(colours[slot], types[slot], squares[slot]);
+        }
+        position.setSideToMove(side);
+        position.setCastlingRights(0);
+        position.setEnPassantSquare(-1);
+        return true;
+    }
+
+    /**
+     * Sorts identical pieces by square and packs the side to move and the squares into an index
+     */
+    private int pack(int side, int[] squares) {
+        for (int slot = 2; slot < colours.length; slot++) {
+            int square = squares[slot];
+            int i = slot;
+            while (sameKind(i - 1, slot) && squares[i - 1] > square) {
+                squares[i] = squares[i - 1];
+                i--;
+            }
+            squares[i] = square;
+        }
+        int kingCount = pawns ? PAWN_KING_SQUARES.length : KING_SQUARES.length;
+        int index = side * kingCount + (pawns ? PAWN_KING_SLOTS : KING_SLOTS)[squares[0]];
+        for (int slot = 1; slot < colours.length; slot++) {
+            index = (index << 6) | squares[slot];
+        }
+        return index;
+    }
+
+    /**
+     * @return the side to move, the squares of the pieces go into squares
+     */
+    private int unpack(int index, int[] squares) {
+        for (int slot = colours.length - 1; slot > 0; slot--) {
+            squares[slot] = index & 0x3F;
+            index >>>= 6;
+        }
+        int kingCount = pawns ? PAWN_KING_SQUARES.length : KING_SQUARES.length;
+        squares[0] = (pawns ? PAWN_KING_SQUARES : KING_SQUARES)[index % kingCount];
+        return index / kingCount;
+    }
+
+    /**
+     * Mirrors the squares along the a1-h8 diagonal in place
+     * @return index of the mirrored position
+     */
+    private int mirror(int side, int[] squares) {
+        for (int slot = 0; slot < colours.length; slot++) {
+            squares[slot] = TRANSFORM[4][squares[slot]];
+        }
+        return pack(side, squares);
+    }
+
+    private boolean sameKind(int slot, int other) {
+        return colours[slot] == colours[other] && types[slot] == types[other];
+    }
+
+    /**
+     * @param flipped the colours swapped
+     * @return material signature of the position, like "KRPvKR"
+     */
+    public static String signature(Position position, boolean flipped) {
+        StringBuilder signature = new StringBuilder(Tablebases.MAX_PIECES + 1);
+        for (int side = 0; side < 2; side++) {
+            int colour = flipped ? 1 - side : side;
+            signature.append(side == 0 ? "K" : "vK");
+            for (int letter = 0; letter < LETTER_TYPES.length; letter++) {
+                for (int i = Long.bitCount(position.getPieces(colour, LETTER_TYPES[letter])); i > 0; i--) {
+                    signature.append(PIECE_LETTERS.charAt(letter));
+                }
+            }
+        }
+        return signature.toString();
+    }
+
+    /**
+     * @return the signature with the colours swapped, "KQvKR" becomes "KRvKQ"
+     */
+    public static String flip(String signature) {
+        int split = signature.indexOf('v');
+        return signature.substring(split + 1) + "v" + signature.substring(0, split);
+    }
+
+    /**
+     * @return signatures a capture or a promotion leads to
+     */
+    List<String> successors() {
+        List<String> successors = new ArrayList<>();
+        int split = signature.indexOf('v');
+        for (int i = 1; i < signature.length(); i++) {
+            char letter = signature.charAt(i);
+            if (letter == 'v' || letter == 'K') {
+                continue;
+            }
+            successors.add(normalize(signature.substring(0, i) + signature.substring(i + 1)));
+            if (letter == 'P') {
+                for (char promotion : new char[]{'Q', 'R', 'B', 'N'}) {
+                    successors.add(normalize(signature.substring(0, i) + promotion + signature.substring(i + 1)));
+                }
+            }
+        }
+        successors.removeIf(successor -> successor.equals(signature));
+        return successors;
+    }
+
+    /**
+     * Sorts the pieces of both sides into signature order
+     */
+    static String normalize(String signature) {
+        int split = signature.indexOf('v');
+        return sortSide(signature.substring(0, split)) + "v" + sortSide(signature.substring(split + 1));
+    }
+
+    private static String sortSide(String side) {
+        StringBuilder sorted = new StringBuilder("K");
+        for (int letter = 0; letter < PIECE_LETTERS.length(); letter++) {
+            for (int i = 0; i < side.length(); i++) {
+                if (side.charAt(i) == PIECE_LETTERS.charAt(letter)) {
+                    sorted.append(side.charAt(i));
+                }
+            }
+        }
+        return sorted.toString();
+    }
+
+    /**
+     * @param dtm moves to mate, ignored unless the result is a win or a loss
+     * @throws IllegalArgumentException if the mate is longer than MAX_DTM
+     */
+    public static int code(int wdl, int dtm) {
+        if ((wdl == WIN || wdl == LOSS) && dtm > MAX_DTM) {
+            throw new IllegalArgumentException("Mate in " + dtm + " is longer than " + MAX_DTM + " moves");
+        }
+        switch (wdl) {
+            case WIN:
+                return WIN_CODES + dtm;
+            case LOSS:
+                return LOSS_CODES + dtm;
+            case DRAW:
+                return DRAW_CODE;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * @return ILLEGAL, LOSS, DRAW or WIN for the side to move
+     */
+    public static int wdl(int code) {
+        if (code > WIN_CODES) {
+            return WIN;
+        }
+        if (code >= LOSS_CODES) {
+            return LOSS;
+        }
+        return code == DRAW_CODE ? DRAW : ILLEGAL;
+    }
+
+    /**
+     * @return moves to mate, 0 for a draw or a checkmated side to move
+     */
+    public static int dtm(int code) {
+        switch (wdl(code)) {
+            case WIN:
+                return code - WIN_CODES;
+            case LOSS:
+                return code - LOSS_CODES;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * @return plies to mate: odd when the side to move mates, even when it gets mated, -1 for a draw
+     */
+    public static int plies(int code) {
+        switch (wdl(code)) {
+            case WIN:
+                return 2 * dtm(code) - 1;
+            case LOSS:
+                return 2 * dtm(code);
+            default:
+                return -1;
+        }
+    }
+
+    private static boolean onDiagonal(int square) {
+        return Position.fileOf(square) == 7 - Position.rankOf(square);
+    }
+
+    private static int transform(int square, int t) {
+        int x = Position.fileOf(square);
+        int y = Position.rankOf(square);
+        if ((t & 1) != 0) {
+            x = 7 - x;
+        }
+        if ((t & 2) != 0) {
+            y = 7 - y;
+        }
+        if ((t & 4) != 0) {
+            int file = x;
+            x = 7 - y;
+            y = 7 - file;
+        }
+        return Position.square(x, y);
+    }
+}
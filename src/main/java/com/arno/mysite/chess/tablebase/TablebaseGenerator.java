@@ -0,0 +1,421 @@
+package com.arno.mysite.chess.tablebase;
+
+import com.arno.mysite.chess.game.Move;
+import com.arno.mysite.chess.game.MoveGenerator;
+import com.arno.mysite.chess.game.MoveList;
+import com.arno.mysite.chess.game.Position;
+import com.arno.mysite.chess.game.UndoInfo;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates tables by retrograde analysis. The tables captures and promotions lead to are generated first.
+ * A first pass marks illegal positions, mates and stalemates and notes for every position how far the best
+ * capture or promotion is from mate. Pass k then takes every position decided in k-1 plies, unmakes a move
+ * of the side that just moved and evaluates the positions it gets to from the values of all their moves:
+ * a win if one move reaches a lost position, a loss once every move reaches a won one.
+ * Every pass runs on a fork/join pool over ranges of the index, positions nothing decides are draws
+ */
+public class TablebaseGenerator {
+
+    //values of the working array, a decided position holds its plies to mate plus one
+    private static final int UNDECIDED = 0;
+    private static final int DRAWN = 254;
+    private static final int INVALID = 255;
+    //the longest mate a table stores, a win in MAX_DTM moves takes one ply less
+    private static final int MAX_PLIES = 2 * Tablebase.MAX_DTM;
+    //no un-move reaches this far, positions without a value of their own are never candidates
+    private static final int NO_LEVEL = 255;
+    private static final int RANGE = 1 << 14;
+    //rough piece values deciding which side of a signature comes first, in the order Q R B N P
+    private static final int[] PIECE_STRENGTH = {9, 5, 3, 3, 1};
+
+    private final Tablebases tablebases;
+    private final ForkJoinPool pool;
+
+    public TablebaseGenerator(Tablebases tablebases) {
+        this(tablebases, Runtime.getRuntime().availableProcessors());
+    }
+
+    public TablebaseGenerator(Tablebases tablebases, int threads) {
+        this.tablebases = tablebases;
+        this.pool = new ForkJoinPool(Math.max(1, threads));
+    }
+
+    /**
+     * Generates the table and every table it depends on that is not in the directory yet
+     * @return the table, mapped from its new file
+     */
+    public Tablebase generate(String signature) throws IOException {
+        Tablebase layout = Tablebase.layout(Tablebase.normalize(signature));
+        for (String successor : layout.successors()) {
+            if (!tablebases.contains(successor)) {
+                generate(successor);
+            }
+        }
+        Path file = Tablebases.file(tablebases.getDirectory(), layout.getSignature());
+        Files.createDirectories(tablebases.getDirectory());
+        new Job(layout).run(file);
+        Tablebase table = Tablebase.open(file, layout.getSignature());
+        tablebases.add(table);
+        return table;
+    }
+
+    /**
+     * Generates every table of up to the given number of pieces, one of each pair of colour-swapped signatures
+     */
+    public void generateAll(int pieces) throws IOException {
+        for (String signature : signatures(pieces)) {
+            if (!tablebases.contains(signature)) {
+                generate(signature);
+            }
+        }
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * @return signatures of up to the given number of pieces, the stronger side first
+     */
+    static List<String> signatures(int pieces) {
+        List<String> sides = new ArrayList<>();
+        collectSides("K", 0, pieces - 2, sides);
+        Set<String> signatures = new LinkedHashSet<>();
+        for (String white : sides) {
+            for (String black : sides) {
+                int strength = strength(white) - strength(black);
+                if (white.length() + black.length() <= pieces && strength >= 0
+                        && (strength > 0 || !signatures.contains(black + "v" + white))) {
+                    signatures.add(white + "v" + black);
+                }
+            }
+        }
+        return new ArrayList<>(signatures);
+    }
+
+    private static int strength(String side) {
+        int strength = 0;
+        for (int i = 1; i < side.length(); i++) {
+            strength += PIECE_STRENGTH["QRBNP".indexOf(side.charAt(i))];
+        }
+        return strength;
+    }
+
+    private static void collectSides(String side, int letter, int left, List<String> sides) {
+        sides.add(side);
+        if (left == 0) {
+            return;
+        }
+        for (int i = letter; i < 5; i++) {
+            collectSides(side + "QRBNP".charAt(i), i, left - 1, sides);
+        }
+    }
+
+    /**
+     * Generation of one table: the working array of values and, per position, the pass its captures and promotions decide it in
+     */
+    private class Job {
+        private final Tablebase table;
+        private final byte[] values;
+        private final byte[] levels;
+        //highest pass any position may get decided in so far
+        private final AtomicInteger lastLevel = new AtomicInteger();
+
+        Job(Tablebase table) {
+            this.table = table;
+            this.values = new byte[table.size()];
+            this.levels = new byte[table.size()];
+        }
+
+        void run(Path file) throws IOException {
+            forEach((index, scratch) -> initialize(index, scratch));
+            for (int level = 1; level <= lastLevel.get() + 1; level++) {
+                int target = level;
+                forEach((index, scratch) -> {
+                    if ((values[index] & 0xFF) == target) {
+                        unmoves(index, scratch);
+                    }
+                    if ((levels[index] & 0xFF) == target) {
+                        evaluate(index, scratch);
+                    }
+                });
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, values.length);
+                for (int index = 0; index < values.length; index++) {
+                    out.put(index, (byte) code(values[index] & 0xFF));
+                }
+                out.force();
+            }
+        }
+
+        /**
+         * Marks illegal positions, mates and stalemates and sets the level of the other positions from their captures and promotions
+         */
+        private void initialize(int index, Scratch scratch) {
+            Position position = scratch.position;
+            if (!table.setup(index, position, scratch.squares) || position.isChecked(1 - position.getSideToMove())) {
+                values[index] = (byte) INVALID;
+                return;
+            }
+            MoveGenerator.generateLegalMoves(position, scratch.moves);
+            if (scratch.moves.isEmpty()) {
+                values[index] = (byte) (position.isChecked(position.getSideToMove()) ? 1 : DRAWN);
+                return;
+            }
+            int minLoss = Integer.MAX_VALUE;
+            int maxWin = -1;
+            boolean drawn = false;
+            for (int i = 0; i < scratch.moves.size(); i++) {
+                int move = scratch.moves.get(i);
+                if (!leavesTable(move)) {
+                    continue;
+                }
+                int value = value(position, move, scratch);
+                if (value == DRAWN) {
+                    drawn = true;
+                } else if ((value - 1) % 2 == 0) {
+                    minLoss = Math.min(minLoss, value - 1);
+                } else {
+                    maxWin = Math.max(maxWin, value - 1);
+                }
+            }
+            int level = NO_LEVEL;
+            if (minLoss != Integer.MAX_VALUE) {
+                level = minLoss + 1;
+            } else if (!drawn && maxWin >= 0) {
+                level = maxWin + 1;
+            }
+            if (level != NO_LEVEL) {
+                levels[index] = (byte) level;
+                lastLevel.accumulateAndGet(level, Math::max);
+            }
+        }
+
+        /**
+         * Evaluates every position the side that moved last could have come from
+         */
+        private void unmoves(int index, Scratch scratch) {
+            Position position = scratch.unmoved;
+            table.setup(index, position, scratch.unmovedSquares);
+            int colour = 1 - position.getSideToMove();
+            long empty = ~position.getOccupied();
+            for (int type = 0; type <= Position.KING; type++) {
+                long pieces = position.getPieces(colour, type);
+                while (pieces != 0) {
+                    int to = Long.numberOfTrailingZeros(pieces);
+                    pieces &= pieces - 1;
+                    long froms;
+                    if (type == Position.PAWN) {
+                        froms = pawnOrigins(colour, to, empty);
+                    } else {
+                        froms = position.attacks(colour, type, to) & empty;
+                    }
+                    while (froms != 0) {
+                        int from = Long.numberOfTrailingZeros(froms);
+                        froms &= froms - 1;
+                        position.movePiece(colour, type, to, from);
+                        position.setSideToMove(colour);
+                        evaluate(table.index(position, false, scratch.unmovedSquares), scratch);
+                        position.setSideToMove(1 - colour);
+                        position.movePiece(colour, type, from, to);
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return squares a pawn on the square could have pushed from, never the first rank of its colour
+         */
+        private long pawnOrigins(int colour, int square, long empty) {
+            int back = colour == Position.WHITE ? 8 : -8;
+            int from = square + back;
+            int rank = Position.rankOf(square);
+            if (from < 0 || from >= Position.SQUARES || (empty & Position.bit(from)) == 0) {
+                return 0;
+            }
+            long origins = 0;
+            if (Position.rankOf(from) != (colour == Position.WHITE ? 7 : 0)) {
+                origins |= Position.bit(from);
+            }
+            //a double push crosses the square in front of the pawn's home rank
+            if (rank == (colour == Position.WHITE ? 4 : 3) && (empty & Position.bit(from + back)) != 0) {
+                origins |= Position.bit(from + back);
+            }
+            return origins;
+        }
+
+        /**
+         * Decides the position if its moves are known well enough: a win as soon as one move reaches a lost position,
+         * a loss once every move reaches a won one
+         */
+        private void evaluate(int index, Scratch scratch) {
+            if (values[index] != UNDECIDED) {
+                return;
+            }
+            Position position = scratch.position;
+            table.setup(index, position, scratch.squares);
+            MoveGenerator.generateLegalMoves(position, scratch.moves);
+            int minLoss = Integer.MAX_VALUE;
+            int maxWin = -1;
+            boolean open = false;
+            for (int i = 0; i < scratch.moves.size(); i++) {
+                int value = value(position, scratch.moves.get(i), scratch);
+                if (value == UNDECIDED || value == DRAWN) {
+                    open = true;
+                } else if ((value - 1) % 2 == 0) {
+                    minLoss = Math.min(minLoss, value - 1);
+                } else {
+                    maxWin = Math.max(maxWin, value - 1);
+                }
+            }
+            if (minLoss != Integer.MAX_VALUE) {
+                decide(index, minLoss + 1);
+            } else if (!open) {
+                decide(index, maxWin + 1);
+            }
+        }
+
+        private void decide(int index, int plies) {
+            if (plies > MAX_PLIES) {
+                throw new IllegalStateException(table.getSignature() + " has a mate longer than " + MAX_PLIES + " plies");
+            }
+            values[index] = (byte) (plies + 1);
+            lastLevel.accumulateAndGet(plies + 1, Math::max);
+        }
+
+        /**
+         * @return working value of the position after the move, taken from another table for captures and promotions
+         */
+        private int value(Position position, int move, Scratch scratch) {
+            position.makeMove(move, scratch.undo);
+            int value;
+            if (leavesTable(move)) {
+                value = external(position);
+            } else {
+                value = values[table.index(position, false, scratch.squares)] & 0xFF;
+            }
+            position.unmakeMove(move, scratch.undo);
+            return value;
+        }
+
+        private boolean leavesTable(int move) {
+            return Move.isCapture(move) || Move.isPromotion(move);
+        }
+
+        private int external(Position position) {
+            if (Long.bitCount(position.getOccupied()) == 2) {
+                return DRAWN;
+            }
+            int code = tablebases.probe(position);
+            if (code == Tablebases.UNKNOWN) {
+                throw new IllegalStateException("No table for " + Tablebase.signature(position, false));
+            }
+            int plies = Tablebase.plies(code);
+            return plies < 0 ? DRAWN : plies + 1;
+        }
+
+        private void forEach(IndexAction action) {
+            pool.invoke(new RangeTask(0, values.length, action));
+        }
+    }
+
+    private static int code(int value) {
+        if (value == INVALID) {
+            return Tablebase.code(Tablebase.ILLEGAL, 0);
+        }
+        if (value == UNDECIDED || value == DRAWN) {
+            return Tablebase.code(Tablebase.DRAW, 0);
+        }
+        int plies = value - 1;
+        return plies % 2 == 0 ? Tablebase.code(Tablebase.LOSS, plies / 2) : Tablebase.code(Tablebase.WIN, (plies + 1) / 2);
+    }
+
+    private interface IndexAction {
+        void run(int index, Scratch scratch);
+    }
+
+    /**
+     * Boards and buffers of one worker, reused for every index of its range
+     */
+    private static class Scratch {
+        final Position position = new Position();
+        final Position unmoved = new Position();
+        final MoveList moves = new MoveList();
+        final UndoInfo undo = new UndoInfo();
+        final int[] squares = new int[Tablebases.MAX_PIECES];
+        final int[] unmovedSquares = new int[Tablebases.MAX_PIECES];
+    }
+
+    /**
+     * Splits the index range until it is small enough, races on the working array only ever write the same value
+     */
+    private static class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final IndexAction action;
+
+        RangeTask(int from, int to, IndexAction action) {
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > RANGE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RangeTask(from, middle, action), new RangeTask(middle, to, action));
+                return;
+            }
+            Scratch scratch = new Scratch();
+            for (int index = from; index < to; index++) {
+                action.run(index, scratch);
+            }
+        }
+    }
+
+    /**
+     * Generates tables into a directory
+     * @param args directory, then signatures like KQvKR or a number of pieces to generate every table of up to that many pieces
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: TablebaseGenerator <directory> <signature|pieces>...");
+            return;
+        }
+        Tablebases tablebases = new Tablebases(Paths.get(args[0]));
+        TablebaseGenerator generator = new TablebaseGenerator(tablebases);
+        try {
+            for (int i = 1; i < args.length; i++) {
+                long start = System.nanoTime();
+                if (Character.isDigit(args[i].charAt(0))) {
+                    generator.generateAll(Integer.parseInt(args[i]));
+                } else {
+                    generator.generate(args[i]);
+                }
+                System.out.println(args[i] + " generated in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            }
+        } finally {
+            generator.shutdown();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.arno.mysite.chess.tablebase;
+
+import com.arno.mysite.chess.game.Move;
+import com.arno.mysite.chess.game.MoveGenerator;
+import com.arno.mysite.chess.game.MoveList;
+import com.arno.mysite.chess.game.Position;
+import com.arno.mysite.chess.game.UndoInfo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tables of one directory, a table is mapped the first time a position with its material is probed.
+ * The files are named after the signature, like "KQvKR.tb", a position with the colours of a table swapped
+ * is looked up in the table mirrored. Safe to probe from many search threads at once
+ */
+public class Tablebases {
+
+    public static final int MAX_PIECES = 5;
+    public static final int UNKNOWN = -1;
+
+    private final Path directory;
+    private final Map<String, Tablebase> tables = new ConcurrentHashMap<>();
+    //signatures without a file, so they are not looked up again on every probe
+    private final Set<String> missing = ConcurrentHashMap.newKeySet();
+
+    public Tablebases(Path directory) {
+        this.directory = directory;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public static Path file(Path directory, String signature) {
+        return directory.resolve(signature + ".tb");
+    }
+
+    /**
+     * @return the table of exactly this signature, null if there is no file for it
+     */
+    public Tablebase get(String signature) {
+        Tablebase table = tables.get(signature);
+        if (table != null || missing.contains(signature)) {
+            return table;
+        }
+        Path file = file(directory, signature);
+        if (!Files.exists(file)) {
+            missing.add(signature);
+            return null;
+        }
+        try {
+            return tables.computeIfAbsent(signature, key -> {
+                try {
+                    return Tablebase.open(file, key);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            missing.add(signature);
+            return null;
+        }
+    }
+
+    /**
+     * @return whether the signature or the one with the colours swapped has a table
+     */
+    public boolean contains(String signature) {
+        return get(signature) != null || get(Tablebase.flip(signature)) != null;
+    }
+
+    void add(Tablebase table) {
+        tables.put(table.getSignature(), table);
+        missing.remove(table.getSignature());
+    }
+
+    /**
+     * Looks the position up as if it had no en passant square
+     * @return code of the position for the side to move, see Tablebase, UNKNOWN with more than MAX_PIECES pieces,
+     * castling rights or no table for the material
+     */
+    public int probe(Position position) {
+        if (Long.bitCount(position.getOccupied()) > MAX_PIECES || position.getCastlingRights() != 0) {
+            return UNKNOWN;
+        }
+        boolean flipped = false;
+        Tablebase table = get(Tablebase.signature(position, false));
+        if (table == null) {
+            flipped = true;
+            table = get(Tablebase.signature(position, true));
+        }
+        if (table == null) {
+            return UNKNOWN;
+        }
+        int code = table.get(table.index(position, flipped, new int[MAX_PIECES]));
+        return Tablebase.wdl(code) == Tablebase.ILLEGAL ? UNKNOWN : code;
+    }
+
+    /**
+     * @return Tablebase.WIN, DRAW or LOSS for the side to move, UNKNOWN if the position is not in the tables
+     */
+    public int wdl(Position position) {
+        int code = probe(position);
+        return code == UNKNOWN ? UNKNOWN : Tablebase.wdl(code);
+    }
+
+    /**
+     * @return whether the side to move is checkmated, without generating its moves
+     */
+    public boolean isMated(Position position) {
+        int code = probe(position);
+        return code != UNKNOWN && Tablebase.wdl(code) == Tablebase.LOSS && Tablebase.dtm(code) == 0;
+    }
+
+    /**
+     * Picks the move keeping the result: the fastest mate when winning, the longest resistance when losing
+     * @return packed move, Move.NONE if the position is not in the tables or the side to move has no moves
+     */
+    public int bestMove(Position position) {
+        int code = probe(position);
+        if (code == UNKNOWN) {
+            return Move.NONE;
+        }
+        int wdl = Tablebase.wdl(code);
+        Position copy = new Position(position);
+        MoveList moves = new MoveList();
+        UndoInfo undo = new UndoInfo();
+        MoveGenerator.generateLegalMoves(copy, moves);
+        int best = Move.NONE;
+        int bestPlies = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            copy.makeMove(move, undo);
+            int child = probe(copy);
+            copy.unmakeMove(move, undo);
+            if (child == UNKNOWN) {
+                continue;
+            }
+            int childWdl = Tablebase.wdl(child);
+            int plies = Tablebase.plies(child);
+            if (wdl == Tablebase.WIN && childWdl == Tablebase.LOSS) {
+                if (best == Move.NONE || plies < bestPlies) {
+                    best = move;
+                    bestPlies = plies;
+                }
+            } else if (wdl == Tablebase.LOSS && childWdl == Tablebase.WIN) {
+                if (best == Move.NONE || plies > bestPlies) {
+                    best = move;
+                    bestPlies = plies;
+                }
+            } else if (wdl == Tablebase.DRAW && childWdl == Tablebase.DRAW && best == Move.NONE) {
+                best = move;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,36 @@
+package com.arno.mysite.chess.game;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AttackMapTest {
+
+    @Test
+    void incrementalUpdatesMatchARebuild() {
+        String[] fens = {
+                Position.START_FEN,
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+                "n1n5/PPPk4/8/8/8/8/4Kppp/5N1N b - - 0 1"
+        };
+        MoveList moves = new MoveList();
+        AttackMap fresh = new AttackMap();
+        for (String fen : fens) {
+            Board board = Board.fromFen(fen);
+            //castling, en passant and promotions all come up when cycling through the legal moves
+            for (int ply = 0; ply < 80 && !board.isGameOver(); ply++) {
+                MoveGenerator.generateLegalMoves(board.getPosition(), moves);
+                board.playMove(moves.get(ply * 7 % moves.size()));
+                fresh.rebuild(board.getPosition());
+                for (int square = 0; square < Position.SQUARES; square++) {
+                    String where = board.toFen() + " square " + square;
+                    assertEquals(fresh.getAttacks(square), board.getAttackMap().getAttacks(square), where);
+                    for (int colour = Position.WHITE; colour <= Position.BLACK; colour++) {
+                        assertEquals(fresh.getAttackCount(colour, square), board.getAttackMap().getAttackCount(colour, square), where);
+                    }
+                }
+            }
+        }
+    }
+}
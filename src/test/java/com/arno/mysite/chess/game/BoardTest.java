@@ -0,0 +1,62 @@
+package com.arno.mysite.chess.game;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BoardTest {
+
+    @Test
+    void fenRoundTrips() {
+        String[] fens = {
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3",
+                "8/5pk1/6p1/3R3p/r6P/6P1/5PK1/8 b - - 12 47"
+        };
+        for (String fen : fens) {
+            assertEquals(fen, Board.fromFen(fen).toFen());
+        }
+    }
+
+    @Test
+    void fenPlacesPieceObjects() {
+        Board board = Board.fromFen("4k3/8/8/8/8/8/4P3/4K2R w K - 0 1");
+        assertEquals(Pieces.KING, board.getPiece(4, 0).getName());
+        assertEquals('B', board.getPiece(4, 0).getRole());
+        assertEquals(Pieces.PAWN, board.getPiece(4, 6).getName());
+        assertEquals(Pieces.ROOK, board.getPiece(7, 7).getName());
+        assertNull(board.getPiece(0, 0));
+    }
+
+    @Test
+    void enPassantSquareIsOnlyKeptWhenAPawnCanTake() {
+        assertEquals("4k3/8/8/8/4P3/8/8/4K3 b - - 0 1", Board.fromFen("4k3/8/8/8/4P3/8/8/4K3 b - e3 0 1").toFen());
+    }
+
+    @Test
+    void setFenReplacesThePosition() {
+        Board board = new Board();
+        board.setPiece(4, 6, 4, 4, false);
+        board.setFen("4k3/8/8/8/8/8/8/4K2R b K - 3 20");
+        assertEquals("4k3/8/8/8/8/8/8/4K2R b K - 3 20", board.toFen());
+        assertEquals(0, board.getMoveCount());
+        assertTrue(board.isReversed());
+    }
+
+    @Test
+    void movesShowInTheFen() {
+        Board board = new Board();
+        board.setPiece(4, 6, 4, 4, false);
+        assertEquals("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1", board.toFen());
+    }
+
+    @Test
+    void invalidFenIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> Board.fromFen("rnbqkbnr/ppppxppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1"));
+        assertThrows(IllegalArgumentException.class, () -> Board.fromFen(null));
+    }
+}
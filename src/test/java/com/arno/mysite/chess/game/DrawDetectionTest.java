@@ -0,0 +1,65 @@
+package com.arno.mysite.chess.game;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DrawDetectionTest {
+
+    private final San san = new San();
+
+    @Test
+    void thirdRepetitionDraws() {
+        GameSession session = GameSession.fromFen(Position.START_FEN);
+        play(session, "Nf3", "Nf6", "Ng1", "Ng8", "Nf3", "Nf6", "Ng1");
+        assertFalse(session.getBoard().isThreefoldRepetition());
+        play(session, "Ng8");
+        assertTrue(session.getBoard().isThreefoldRepetition());
+        assertTrue(session.isOver());
+        assertEquals(PgnGame.DRAW, session.getResult());
+    }
+
+    @Test
+    void positionWithOtherRightsIsNoRepetition() {
+        GameSession session = GameSession.fromFen("r3k3/8/8/8/8/8/8/4K2R w Kq - 0 1");
+        //the first round gives up the castling rights, so only the later positions repeat
+        play(session, "Rh2", "Ra7", "Rh1", "Ra8", "Rh2", "Ra7", "Rh1", "Ra8");
+        assertFalse(session.getBoard().isThreefoldRepetition());
+        play(session, "Rh2", "Ra7");
+        assertTrue(session.getBoard().isThreefoldRepetition());
+    }
+
+    @Test
+    void fiftyMovesWithoutCaptureOrPawnMoveDraw() {
+        GameSession session = GameSession.fromFen("4k3/8/8/8/8/8/4P3/R3K3 w - - 99 80");
+        assertFalse(session.getBoard().isFiftyMoveRule());
+        play(session, "Ra2");
+        assertTrue(session.getBoard().isFiftyMoveRule());
+        assertEquals(PgnGame.DRAW, session.getResult());
+
+        //a pawn move starts the count again
+        session = GameSession.fromFen("4k3/8/8/8/8/8/4P3/R3K3 w - - 99 80");
+        play(session, "e4");
+        assertFalse(session.getBoard().isFiftyMoveRule());
+        assertFalse(session.isOver());
+    }
+
+    @Test
+    void insufficientMaterial() {
+        assertTrue(Board.fromFen("8/8/4k3/8/8/3K4/8/8 w - - 0 1").isInsufficientMaterial());
+        assertTrue(Board.fromFen("8/8/4k3/8/8/3KN3/8/8 w - - 0 1").isInsufficientMaterial());
+        assertTrue(Board.fromFen("8/8/4kb2/8/8/3KB3/8/8 w - - 0 1").isInsufficientMaterial());
+        //bishops on squares of both colours or two knights can still mate
+        assertFalse(Board.fromFen("8/8/4k1b1/8/8/3KB3/8/8 w - - 0 1").isInsufficientMaterial());
+        assertFalse(Board.fromFen("8/8/4k3/8/8/3KNN2/8/8 w - - 0 1").isInsufficientMaterial());
+        assertFalse(Board.fromFen("8/8/4k3/8/8/3K4/7P/8 w - - 0 1").isInsufficientMaterial());
+    }
+
+    private void play(GameSession session, String... moves) {
+        for (String move : moves) {
+            assertTrue(session.submitMove(san.parse(session.getBoard().getPosition(), move)), move);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.arno.mysite.chess.game;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EvaluationTest {
+
+    private static final String[] FENS = {
+            Position.START_FEN,
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "r1bq1rk1/1pp2ppp/p1np1n2/2b1p3/2B1P3/2PP1N2/PP1N1PPP/R1BQ1RK1 w - - 0 1",
+            "8/5pk1/6p1/3R3p/r6P/6P1/5PK1/8 b - - 0 1"
+    };
+
+    @Test
+    void incrementalScoresMatchAFreshPosition() {
+        MoveList moves = new MoveList();
+        UndoInfo undo = new UndoInfo();
+        for (String fen : FENS) {
+            Position position = new Position();
+            position.setFen(fen);
+            for (int ply = 0; ply < 40; ply++) {
+                MoveGenerator.generateLegalMoves(position, moves);
+                if (moves.isEmpty()) {
+                    break;
+                }
+                position.makeMove(moves.get(ply * 5 % moves.size()), undo);
+                Position fresh = new Position();
+                fresh.setFen(position.toFen());
+                for (int colour = Position.WHITE; colour <= Position.BLACK; colour++) {
+                    assertEquals(fresh.getMidgameScore(colour), position.getMidgameScore(colour), position.toFen());
+                    assertEquals(fresh.getEndgameScore(colour), position.getEndgameScore(colour), position.toFen());
+                }
+                assertEquals(fresh.getPhase(), position.getPhase());
+                assertEquals(fresh.getPawnKey(), position.getPawnKey());
+            }
+        }
+    }
+
+    @Test
+    void mirroredPositionScoresTheSame() {
+        Evaluation evaluation = new Evaluation();
+        for (String fen : FENS) {
+            assertEquals(evaluation.evaluate(position(fen)), evaluation.evaluate(position(mirror(fen))), fen);
+        }
+    }
+
+    @Test
+    void extraQueenIsWorthAboutAQueen() {
+        Evaluation evaluation = new Evaluation();
+        int score = evaluation.evaluate(position("4k3/8/8/8/8/8/8/3QK3 w - - 0 1"));
+        assertTrue(score > 700 && score < 1400, "score " + score);
+        int defending = evaluation.evaluate(position("4k3/8/8/8/8/8/8/3QK3 b - - 0 1"));
+        assertTrue(defending < -700 && defending > -1400, "score " + defending);
+    }
+
+    private static Position position(String fen) {
+        Position position = new Position();
+        position.setFen(fen);
+        return position;
+    }
+
+    /**
+     * @return the FEN with the board turned top to bottom and the colours swapped
+     */
+    private static String mirror(String fen) {
+        String[] fields = fen.split(" ");
+        String[] ranks = fields[0].split("/");
+        StringBuilder mirrored = new StringBuilder();
+        for (int i = ranks.length - 1; i >= 0; i--) {
+            mirrored.append(swapCase(ranks[i])).append(i > 0 ? "/" : " ");
+        }
+        mirrored.append(fields[1].equals("w") ? "b" : "w").append(' ');
+        String castling = swapCase(fields[2]);
+        mirrored.append(castling.equals("-") ? "-" : sortCastling(castling)).append(" -");
+        for (int i = 4; i < fields.length; i++) {
+            mirrored.append(' ').append(fields[i]);
+        }
+        return mirrored.toString();
+    }
+
+    private static String sortCastling(String castling) {
+        StringBuilder sorted = new StringBuilder();
+        for (char c : "KQkq".toCharArray()) {
+            if (castling.indexOf(c) >= 0) {
+                sorted.append(c);
+            }
+        }
+        return sorted.toString();
+    }
+
+    private static String swapCase(String text) {
+        StringBuilder swapped = new StringBuilder(text.length());
+        for (char c : text.toCharArray()) {
+            swapped.append(Character.isUpperCase(c) ? Character.toLowerCase(c) : Character.toUpperCase(c));
+        }
+        return swapped.toString();
+    }
+}
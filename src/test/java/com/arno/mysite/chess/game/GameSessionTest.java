@@ -0,0 +1,57 @@
+package com.arno.mysite.chess.game;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameSessionTest {
+
+    @Test
+    void mateEndsTheGame() {
+        GameSession session = GameSession.fromFen(Position.START_FEN);
+        List<String> results = new ArrayList<>();
+        session.addListener(new GameListener() {
+            @Override
+            public void gameOver(GameSession session, String result) {
+                results.add(result);
+            }
+        });
+        play(session, "f3", "e5", "g4", "Qh4#");
+        assertTrue(session.isOver());
+        assertEquals(PgnGame.BLACK_WINS, session.getResult());
+        assertEquals(List.of(PgnGame.BLACK_WINS), results);
+    }
+
+    @Test
+    void gameEndedByAListenerIsNotEndedAgain() {
+        GameSession session = GameSession.fromFen(Position.START_FEN);
+        List<String> results = new ArrayList<>();
+        session.addListener(new GameListener() {
+            @Override
+            public void movePlayed(GameSession session, int move) {
+                //like a server whose opponent is gone by the time the mate is passed on
+                if (session.getBoard().getMoveCount() == 4) {
+                    session.end();
+                }
+            }
+
+            @Override
+            public void gameOver(GameSession session, String result) {
+                results.add(result);
+            }
+        });
+        play(session, "f3", "e5", "g4", "Qh4#");
+        assertEquals(List.of(PgnGame.BLACK_WINS), results);
+    }
+
+    private static void play(GameSession session, String... moves) {
+        San san = new San();
+        for (String move : moves) {
+            assertTrue(session.submitMove(san.parse(session.getBoard().getPosition(), move)), move);
+        }
+    }
+}
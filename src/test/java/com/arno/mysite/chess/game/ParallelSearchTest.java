@@ -0,0 +1,27 @@
+package com.arno.mysite.chess.game;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelSearchTest {
+
+    @Test
+    void threadsAgreeOnTheMate() {
+        String fen = "1k6/ppp5/8/8/8/8/8/4K2R w K - 0 1";
+        Position position = new Position();
+        position.setFen(fen);
+        ParallelSearch search = new ParallelSearch(new TranspositionTable(4), 3);
+        try {
+            int move = search.search(position, 5000, 200_000);
+            assertEquals("Rh8#", new San().format(position, move));
+            assertTrue(search.getBestScore() >= Search.MATE - Search.MAX_PLY, "score " + search.getBestScore());
+            assertTrue(search.getNodes() > 0);
+            //the threads search copies, the position is not touched
+            assertEquals(fen, position.toFen());
+        } finally {
+            search.shutdown();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.arno.mysite.chess.game;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PerftTest {
+
+    @Test
+    void referencePositionsMatchKnownCounts() {
+        for (Object[] reference : Perft.REFERENCE) {
+            String fen = (String) reference[0];
+            long[] expected = (long[]) reference[1];
+            Position position = new Position();
+            position.setFen(fen);
+            Perft perft = new Perft(position);
+            for (int depth = 1; depth <= expected.length; depth++) {
+                assertEquals(expected[depth - 1], perft.perft(depth), fen + " depth " + depth);
+            }
+            //counting plays and takes back every move, the position has to come out unchanged
+            assertEquals(fen, position.toFen().substring(0, fen.length()));
+        }
+    }
+}
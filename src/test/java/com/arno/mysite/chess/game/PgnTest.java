@@ -0,0 +1,120 @@
+package com.arno.mysite.chess.game;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PgnTest {
+
+    private static final String[] FENS = {
+            Position.START_FEN,
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq -",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq -",
+            "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3"
+    };
+
+    @Test
+    void sanOfEveryLegalMoveParsesBack() {
+        San san = new San();
+        MoveList moves = new MoveList();
+        for (String fen : FENS) {
+            Position position = new Position();
+            position.setFen(fen);
+            MoveGenerator.generateLegalMoves(position, moves);
+            for (int i = 0; i < moves.size(); i++) {
+                String text = san.format(position, moves.get(i));
+                assertEquals(moves.get(i), san.parse(position, text), fen + " " + text);
+            }
+        }
+    }
+
+    @Test
+    void sanMarksCastlingPromotionAndDisambiguation() {
+        San san = new San();
+        Position position = new Position();
+        position.setFen("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq -");
+        assertEquals("O-O", san.format(position, san.parse(position, "O-O")));
+        assertEquals("O-O-O", san.format(position, san.parse(position, "O-O-O")));
+        position.setFen("k7/8/8/8/8/8/K7/R6R w - -");
+        assertEquals("Rad1", san.format(position, san.parse(position, "Rad1")));
+        position.setFen("4k3/1P6/8/8/8/8/8/4K3 w - -");
+        assertEquals("b8=Q+", san.format(position, san.parse(position, "b8=Q")));
+        assertThrows(IllegalArgumentException.class, () -> san.parse(position, "Qh5"));
+    }
+
+    @Test
+    void writtenGamesReadBack() throws IOException {
+        PgnGame game = new PgnGame();
+        game.setTag("White", "Morphy");
+        game.setTag("Black", "Amateur");
+        Position position = new Position();
+        position.setFen(Position.START_FEN);
+        UndoInfo undo = new UndoInfo();
+        San san = new San();
+        for (String text : new String[]{"e4", "e5", "Nf3", "d6", "d4", "Bg4", "dxe5", "Bxf3", "Qxf3", "dxe5", "Bc4", "Nf6",
+                "Qb3", "Qe7", "Nc3", "c6", "Bg5", "b5", "Nxb5", "cxb5", "Bxb5+", "Nbd7", "O-O-O", "Rd8",
+                "Rxd7", "Rxd7", "Rd1", "Qe6", "Bxd7+", "Nxd7", "Qb8+", "Nxb8", "Rd8#"}) {
+            int move = san.parse(position, text);
+            position.makeMove(move, undo);
+            game.addMove(move);
+        }
+        game.setResult(PgnGame.WHITE_WINS);
+
+        StringWriter out = new StringWriter();
+        try (PgnWriter writer = new PgnWriter(out)) {
+            writer.write(game);
+            writer.write(game);
+        }
+        assertTrue(out.toString().contains("17. Rd8# 1-0"));
+
+        PgnGame read = new PgnGame();
+        try (PgnReader reader = new PgnReader(new ByteArrayInputStream(out.toString().getBytes(StandardCharsets.UTF_8)))) {
+            for (int i = 0; i < 2; i++) {
+                assertTrue(reader.next(read));
+                assertArrayEquals(game.getMoves(), read.getMoves());
+                assertEquals("Morphy", read.getTag("White"));
+                assertEquals(PgnGame.WHITE_WINS, read.getResult());
+            }
+            assertFalse(reader.next(read));
+            assertEquals(2, reader.getGames());
+        }
+    }
+
+    @Test
+    void commentsVariationsAndStartFenAreHandled() throws IOException {
+        String pgn = "[Event \"?\"]\n[FEN \"4k3/8/8/8/8/8/8/R3K3 w Q - 0 1\"]\n\n"
+                + "1. O-O-O {castles} (1. Ra8+ Kd7) 1... Kf7 $1 ; to the side\n2. Kb1 *\n";
+        PgnGame game = new PgnGame();
+        try (PgnReader reader = new PgnReader(new ByteArrayInputStream(pgn.getBytes(StandardCharsets.UTF_8)))) {
+            assertTrue(reader.next(game));
+            assertEquals(3, game.getMoveCount());
+            assertEquals("8/5k2/8/8/8/8/8/1K1R4 b - - 3 2", reader.getPosition().toFen());
+            assertEquals(PgnGame.UNFINISHED, game.getResult());
+        }
+    }
+
+    @Test
+    void illegalMoveFailsOnlyItsGame(@TempDir Path directory) throws IOException {
+        String pgn = "[Event \"1\"]\n\n1. e4 e5 2. Ke3 Nc6 1-0\n\n[Event \"2\"]\n\n1. d4 d5 0-1\n";
+        Path file = Files.write(directory.resolve("games.pgn"), pgn.getBytes(StandardCharsets.UTF_8));
+        PgnGame game = new PgnGame();
+        try (PgnReader reader = PgnReader.map(file)) {
+            assertThrows(IllegalArgumentException.class, () -> reader.next(game));
+            assertTrue(reader.next(game));
+            assertEquals("2", game.getTag("Event"));
+            assertEquals(2, game.getMoveCount());
+        }
+    }
+}
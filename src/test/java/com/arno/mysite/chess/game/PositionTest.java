@@ -0,0 +1,62 @@
+package com.arno.mysite.chess.game;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PositionTest {
+
+    private static final String[] FENS = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3"
+    };
+
+    @Test
+    void unmakeMoveRestoresEveryMove() {
+        MoveList moves = new MoveList();
+        UndoInfo undo = new UndoInfo();
+        for (String fen : FENS) {
+            Position position = new Position();
+            position.setFen(fen);
+            long key = position.getKey();
+            MoveGenerator.generateLegalMoves(position, moves);
+            for (int i = 0; i < moves.size(); i++) {
+                int move = moves.get(i);
+                position.makeMove(move, undo);
+                assertEquals(keyOf(position), position.getKey(), "key after " + Move.toString(move));
+                position.unmakeMove(move, undo);
+                assertEquals(fen, position.toFen());
+                assertEquals(key, position.getKey());
+            }
+        }
+    }
+
+    @Test
+    void unmakeMoveRestoresSideToMoveOfMoveOutOfTurn() {
+        Position position = new Position();
+        position.setFen("4k3/8/8/8/8/8/8/4RK2 w - - 0 1");
+        long key = position.getKey();
+        UndoInfo undo = new UndoInfo();
+        //black's king move while white is to move, the way Board tests whether a move leaves a king in check
+        int move = position.encodeMove(Position.square(4, 0), Position.square(3, 0), -1);
+        position.makeMove(move, undo);
+        position.unmakeMove(move, undo);
+        assertEquals(Position.WHITE, position.getSideToMove());
+        assertEquals("4k3/8/8/8/8/8/8/4RK2 w - - 0 1", position.toFen());
+        assertEquals(key, position.getKey());
+    }
+
+    @Test
+    void boardFenSurvivesMateTests() {
+        Board board = Board.fromFen("4k3/8/8/8/8/8/8/4RK2 w - - 0 1");
+        assertEquals("4k3/8/8/8/8/8/8/4RK2 w - - 0 1", board.toFen());
+    }
+
+    private static long keyOf(Position position) {
+        Position fresh = new Position();
+        fresh.setFen(position.toFen());
+        return fresh.getKey();
+    }
+}
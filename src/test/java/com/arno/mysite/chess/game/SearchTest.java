@@ -0,0 +1,51 @@
+package com.arno.mysite.chess.game;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchTest {
+
+    private final San san = new San();
+
+    @Test
+    void findsMateInOne() {
+        Position position = position("6k1/5ppp/8/8/8/8/5PPP/R5K1 w - - 0 1");
+        long key = position.getKey();
+        Search search = new Search();
+        int move = search.search(position, 5000, 200_000);
+        assertEquals("Ra8#", san.format(position, move));
+        assertTrue(search.getBestScore() >= Search.MATE - Search.MAX_PLY, "score " + search.getBestScore());
+        //the search leaves the position as it was
+        assertEquals(key, position.getKey());
+        assertEquals("6k1/5ppp/8/8/8/8/5PPP/R5K1 w - - 0 1", position.toFen());
+    }
+
+    @Test
+    void takesTheHangingQueen() {
+        Position position = position("3qk3/8/8/8/8/8/3R4/4K3 w - - 0 1");
+        int move = new Search().search(position, 5000, 200_000);
+        assertEquals("Rxd8+", san.format(position, move));
+    }
+
+    @Test
+    void noMoveWhenMated() {
+        Position position = position("R5k1/5ppp/8/8/8/8/5PPP/6K1 b - - 0 1");
+        assertEquals(Move.NONE, new Search().search(position, 1000, 10_000));
+    }
+
+    @Test
+    void enginePlayerPlaysALegalMove() {
+        EnginePlayer player = new EnginePlayer('W', 200, 20_000);
+        Board board = Board.fromFen(Position.START_FEN);
+        assertTrue(board.playMove(player.selectMove(board)));
+        player.getSearch().shutdown();
+    }
+
+    private static Position position(String fen) {
+        Position position = new Position();
+        position.setFen(fen);
+        return position;
+    }
+}
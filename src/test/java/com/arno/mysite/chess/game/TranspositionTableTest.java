@@ -0,0 +1,50 @@
+package com.arno.mysite.chess.game;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TranspositionTableTest {
+
+    @Test
+    void storedEntryReadsBack() {
+        TranspositionTable table = new TranspositionTable(1);
+        Position position = new Position();
+        position.setFen(Position.START_FEN);
+        int move = new San().parse(position, "e4");
+        long key = position.getKey();
+
+        table.store(key, move, -123, 7, TranspositionTable.LOWER);
+        long data = table.probe(key);
+        assertEquals(move, TranspositionTable.move(data));
+        assertEquals(-123, TranspositionTable.score(data));
+        assertEquals(7, TranspositionTable.depth(data));
+        assertEquals(TranspositionTable.LOWER, TranspositionTable.bound(data));
+        //another key of the same bucket is not mistaken for it
+        assertEquals(0L, table.probe(key ^ (1L << 62)));
+
+        //storing without a move keeps the one found before
+        table.store(key, Move.NONE, 40, 8, TranspositionTable.EXACT);
+        data = table.probe(key);
+        assertEquals(move, TranspositionTable.move(data));
+        assertEquals(40, TranspositionTable.score(data));
+
+        table.clear();
+        assertEquals(0L, table.probe(key));
+    }
+
+    @Test
+    void bucketKeepsTheDeeperEntryOfTheSameSearch() {
+        TranspositionTable table = new TranspositionTable(1);
+        long buckets = table.capacity() / 2;
+        long deep = 5;
+        long shallow = deep + buckets;
+        long other = deep + 2 * buckets;
+        table.store(deep, Move.NONE, 1, 10, TranspositionTable.EXACT);
+        table.store(shallow, Move.NONE, 2, 2, TranspositionTable.EXACT);
+        table.store(other, Move.NONE, 3, 5, TranspositionTable.EXACT);
+        assertEquals(10, TranspositionTable.depth(table.probe(deep)));
+        assertEquals(0L, table.probe(shallow));
+        assertEquals(5, TranspositionTable.depth(table.probe(other)));
+    }
+}
@@ -0,0 +1,108 @@
+package com.arno.mysite.chess.net;
+
+import com.arno.mysite.chess.game.Position;
+import com.arno.mysite.chess.game.San;
+import com.arno.mysite.chess.persistence.ArchiveMove;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class GameServerTest {
+
+    private GameServer server;
+    private Thread thread;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new GameServer(0);
+        thread = new Thread(server);
+        thread.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        server.close();
+        thread.join();
+    }
+
+    @Test
+    @Timeout(10)
+    void rejectedJoinLeavesNoGame() throws IOException, InterruptedException {
+        try (SocketChannel white = connect(); SocketChannel other = connect()) {
+            send(white, GameFrame.JOIN, 1, 'X');
+            assertFrame(receive(white), GameFrame.REJECTED, 1, GameFrame.ROLE_TAKEN);
+            send(white, GameFrame.JOIN, 2, 'W');
+            assertFrame(receive(white), GameFrame.JOINED, 2, 'W');
+            send(other, GameFrame.JOIN, 2, 'W');
+            assertFrame(receive(other), GameFrame.REJECTED, 2, GameFrame.ROLE_TAKEN);
+            //stopped before the disconnects end game 2
+            server.close();
+            thread.join();
+        }
+        assertEquals(1, server.getGameCount());
+    }
+
+    @Test
+    @Timeout(10)
+    void disconnectAbandonsTheGame() throws IOException {
+        //not a resource of the try, white disconnects in the middle of it
+        SocketChannel white = connect();
+        try (SocketChannel black = connect()) {
+            send(white, GameFrame.JOIN, 7, 'W');
+            assertFrame(receive(white), GameFrame.JOINED, 7, 'W');
+            send(black, GameFrame.JOIN, 7, 'B');
+            assertFrame(receive(black), GameFrame.JOINED, 7, 'B');
+
+            Position position = new Position();
+            position.setFen(Position.START_FEN);
+            int e4 = ArchiveMove.encode(new San().parse(position, "e4")) & 0xFFFF;
+            send(white, GameFrame.MOVE, 7, e4);
+            assertFrame(receive(black), GameFrame.MOVE, 7, e4);
+
+            white.close();
+            assertFrame(receive(black), GameFrame.OVER, 7, GameFrame.ABANDONED);
+        } finally {
+            white.close();
+        }
+    }
+
+    private SocketChannel connect() throws IOException {
+        return SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()));
+    }
+
+    private static void send(SocketChannel channel, int type, int gameId, int payload) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(GameFrame.SIZE);
+        new GameFrame(type, gameId, payload).write(buffer);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static GameFrame receive(SocketChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(GameFrame.SIZE);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+        return GameFrame.read(buffer);
+    }
+
+    private static void assertFrame(GameFrame frame, int type, int gameId, int payload) {
+        assertEquals(type, frame.getType());
+        assertEquals(gameId, frame.getGameId());
+        assertEquals(payload, frame.getPayload());
+    }
+}
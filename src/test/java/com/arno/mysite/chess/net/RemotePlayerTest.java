@@ -0,0 +1,128 @@
+package com.arno.mysite.chess.net;
+
+import com.arno.mysite.chess.game.Board;
+import com.arno.mysite.chess.game.Move;
+import com.arno.mysite.chess.game.Position;
+import com.arno.mysite.chess.game.San;
+import com.arno.mysite.chess.persistence.ArchiveMove;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RemotePlayerTest {
+
+    private ReliableChannel white;
+    private ReliableChannel black;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        DatagramSocket whiteSocket = new DatagramSocket(0, loopback);
+        DatagramSocket blackSocket = new DatagramSocket(0, loopback);
+        white = new ReliableChannel(whiteSocket, new InetSocketAddress(loopback, blackSocket.getLocalPort()));
+        black = new ReliableChannel(blackSocket, new InetSocketAddress(loopback, whiteSocket.getLocalPort()));
+        new Thread(white).start();
+        new Thread(black).start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        white.close();
+        black.close();
+    }
+
+    @Test
+    @Timeout(60)
+    void movesArriveInOrderDespiteLoss() throws InterruptedException {
+        white.setLoss(0.3);
+        black.setLoss(0.3);
+        //each side plays its moves on its own board, the other side's player is remote
+        Board whiteBoard = Board.fromFen(Position.START_FEN);
+        Board blackBoard = Board.fromFen(Position.START_FEN);
+        RemotePlayer blackOnWhite = new RemotePlayer('B', white);
+        RemotePlayer whiteOnBlack = new RemotePlayer('W', black);
+        San san = new San();
+        String[] moves = {"e4", "e5", "Nf3", "Nc6", "Bb5", "a6", "Ba4", "Nf6", "O-O", "Be7", "Re1", "b5", "Bb3", "d6"};
+        for (int i = 0; i < moves.length; i += 2) {
+            assertTrue(whiteBoard.playMove(san.parse(whiteBoard.getPosition(), moves[i])));
+            blackOnWhite.sendMoves(whiteBoard);
+            assertTrue(blackBoard.playMove(whiteOnBlack.selectMove(blackBoard)));
+
+            assertTrue(blackBoard.playMove(san.parse(blackBoard.getPosition(), moves[i + 1])));
+            whiteOnBlack.sendMoves(blackBoard);
+            assertTrue(whiteBoard.playMove(blackOnWhite.selectMove(whiteBoard)));
+        }
+        assertArrayEquals(whiteBoard.getMoveHistory(), blackBoard.getMoveHistory());
+        assertTrue(white.flush(10_000));
+        assertTrue(black.flush(10_000));
+    }
+
+    @Test
+    @Timeout(30)
+    void illegalMoveIsSkipped() throws IOException, InterruptedException {
+        Board board = Board.fromFen(Position.START_FEN);
+        RemotePlayer blackOnWhite = new RemotePlayer('B', white);
+        San san = new San();
+        int e4 = san.parse(board.getPosition(), "e4");
+        assertTrue(board.playMove(e4));
+
+        //the rook on a8 jumping its pawn to a3, then a legal move
+        black.send(MovePacket.MOVE, 40 << 6);
+        int e5 = san.parse(board.getPosition(), "e5");
+        black.send(MovePacket.MOVE, ArchiveMove.encode(e5));
+        assertEquals(e5, blackOnWhite.selectMove(board));
+        assertTrue(board.playMove(e5));
+
+        //only the legal move counted as received, so the next local move still gets sent
+        int nf3 = san.parse(board.getPosition(), "Nf3");
+        assertTrue(board.playMove(nf3));
+        blackOnWhite.sendMoves(board);
+        assertEquals(ArchiveMove.encode(e4) & 0xFFFF, black.receive(5000).getPayload());
+        assertEquals(ArchiveMove.encode(nf3) & 0xFFFF, black.receive(5000).getPayload());
+    }
+
+    @Test
+    @Timeout(30)
+    void moveFromEmptySquareIsSkipped() throws IOException {
+        Board board = Board.fromFen(Position.START_FEN);
+        RemotePlayer whiteOnBlack = new RemotePlayer('W', black);
+        //e4 to e5 in the start position, nothing stands on e4
+        white.send(MovePacket.MOVE, 36 | (28 << 6));
+        int d4 = new San().parse(board.getPosition(), "d4");
+        white.send(MovePacket.MOVE, ArchiveMove.encode(d4));
+        assertEquals(d4, whiteOnBlack.selectMove(board));
+    }
+
+    @Test
+    @Timeout(30)
+    void helloOfTheOtherRoleIsSkipped() throws IOException {
+        Board board = Board.fromFen(Position.START_FEN);
+        RemotePlayer whiteOnBlack = new RemotePlayer('W', black);
+        white.send(MovePacket.HELLO, 'W');
+        int e4 = new San().parse(board.getPosition(), "e4");
+        white.send(MovePacket.MOVE, ArchiveMove.encode(e4));
+        assertEquals(e4, whiteOnBlack.selectMove(board));
+    }
+
+    @Test
+    @Timeout(30)
+    void helloOfTheSameRoleClosesTheChannel() throws IOException {
+        Board board = Board.fromFen(Position.START_FEN);
+        //both ends play black, this end waits for a white move that never comes
+        RemotePlayer whiteOnBlack = new RemotePlayer('W', black);
+        white.send(MovePacket.HELLO, 'B');
+        assertEquals(Move.NONE, whiteOnBlack.selectMove(board));
+        assertTrue(black.isClosed());
+        assertEquals(Move.NONE, whiteOnBlack.selectMove(board));
+    }
+}
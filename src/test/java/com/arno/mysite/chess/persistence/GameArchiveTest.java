@@ -0,0 +1,92 @@
+package com.arno.mysite.chess.persistence;
+
+import com.arno.mysite.chess.game.MoveGenerator;
+import com.arno.mysite.chess.game.MoveList;
+import com.arno.mysite.chess.game.PgnGame;
+import com.arno.mysite.chess.game.Position;
+import com.arno.mysite.chess.game.San;
+import com.arno.mysite.chess.game.UndoInfo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class GameArchiveTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * @return the game of the moves in SAN, played from the FEN or the start position if it is null
+     */
+    static PgnGame game(String fen, String result, String... moves) {
+        PgnGame game = new PgnGame();
+        if (fen != null) {
+            game.setTag("SetUp", "1");
+            game.setTag("FEN", fen);
+        }
+        Position position = new Position();
+        position.setFen(fen == null ? Position.START_FEN : fen);
+        UndoInfo undo = new UndoInfo();
+        San san = new San();
+        for (String text : moves) {
+            int move = san.parse(position, text);
+            position.makeMove(move, undo);
+            game.addMove(move);
+        }
+        game.setResult(result);
+        return game;
+    }
+
+    @Test
+    void archiveMoveRoundTripsEveryLegalMove() {
+        MoveList moves = new MoveList();
+        for (String fen : new String[]{"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq -",
+                "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq -",
+                "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3"}) {
+            Position position = new Position();
+            position.setFen(fen);
+            MoveGenerator.generateLegalMoves(position, moves);
+            for (int i = 0; i < moves.size(); i++) {
+                assertEquals(moves.get(i), ArchiveMove.decode(position, ArchiveMove.encode(moves.get(i)) & 0xFFFF));
+            }
+        }
+    }
+
+    @Test
+    void gamesReadBackAfterAppending() throws IOException {
+        Path base = directory.resolve("games");
+        PgnGame first = game(null, PgnGame.WHITE_WINS, "e4", "e5", "Nf3", "Nc6");
+        PgnGame promotion = game("4k3/1P6/8/8/8/8/8/4K3 w - - 0 1", PgnGame.UNFINISHED, "b8=N", "Kf7");
+        try (GameArchiveWriter writer = new GameArchiveWriter(base)) {
+            assertEquals(0, writer.append(first));
+            assertEquals(1, writer.append(promotion));
+        }
+        //an existing archive is continued, its games keep their numbers
+        try (GameArchiveWriter writer = new GameArchiveWriter(base)) {
+            assertEquals(2, writer.append(game(null, PgnGame.DRAW)));
+        }
+
+        GameArchive archive = GameArchive.open(base);
+        assertEquals(3, archive.size());
+        assertEquals(PgnGame.WHITE_WINS, archive.getResult(0));
+        assertEquals(4, archive.getMoveCount(0));
+        assertNull(archive.getStartFen(0));
+        assertEquals("4k3/1P6/8/8/8/8/8/4K3 w - - 0 1", archive.getStartFen(1));
+        assertEquals(0, archive.getMoveCount(2));
+        assertEquals(PgnGame.DRAW, archive.getResult(2));
+
+        PgnGame read = new PgnGame();
+        archive.read(0, read);
+        assertArrayEquals(first.getMoves(), read.getMoves());
+        archive.read(1, read);
+        assertArrayEquals(promotion.getMoves(), read.getMoves());
+        assertEquals(PgnGame.UNFINISHED, read.getResult());
+        assertEquals(ArchiveMove.encode(promotion.getMove(0)) & 0xFFFF, archive.getMove(1, 0));
+    }
+}
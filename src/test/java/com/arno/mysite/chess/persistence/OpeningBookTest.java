@@ -0,0 +1,62 @@
+package com.arno.mysite.chess.persistence;
+
+import com.arno.mysite.chess.game.Move;
+import com.arno.mysite.chess.game.PgnGame;
+import com.arno.mysite.chess.game.Position;
+import com.arno.mysite.chess.game.San;
+import com.arno.mysite.chess.game.UndoInfo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OpeningBookTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void booksTheMovesThatScored() throws IOException {
+        Path base = directory.resolve("games");
+        try (GameArchiveWriter writer = new GameArchiveWriter(base)) {
+            writer.append(GameArchiveTest.game(null, PgnGame.WHITE_WINS, "e4", "e5", "Nf3"));
+            writer.append(GameArchiveTest.game(null, PgnGame.BLACK_WINS, "e4", "c5", "Nf3"));
+            writer.append(GameArchiveTest.game(null, PgnGame.WHITE_WINS, "e4", "c5", "c3"));
+            writer.append(GameArchiveTest.game(null, PgnGame.DRAW, "d4", "d5"));
+            //games from another start position are left out
+            writer.append(GameArchiveTest.game("4k3/8/8/8/8/8/8/4K2R w K - 0 1", PgnGame.WHITE_WINS, "O-O"));
+        }
+        Path file = directory.resolve("book.bin");
+        new OpeningBookBuilder(GameArchive.open(base), 2, 2, 1).build(file);
+        OpeningBook book = OpeningBook.open(file);
+
+        Position position = new Position();
+        San san = new San();
+        position.setFen(Position.START_FEN);
+        //e4 scored 4 points in three games, d4 one in one
+        assertEquals(2, book.count(position.getKey()));
+        assertEquals("e4", san.format(position, book.bestMove(position)));
+        String probed = san.format(position, book.probe(position));
+        assertTrue(probed.equals("e4") || probed.equals("d4"), probed);
+
+        //black lost the only game with e5, a move without points is left out
+        play(position, san, "e4");
+        assertEquals(1, book.count(position.getKey()));
+        assertEquals("c5", san.format(position, book.bestMove(position)));
+
+        //moves after maxPly plies are not booked
+        play(position, san, "c5");
+        assertEquals(Move.NONE, book.bestMove(position));
+        assertEquals(Move.NONE, book.probe(position));
+        //e4 and d4, c5 after e4, d5 after d4
+        assertEquals(4, book.size());
+    }
+
+    private static void play(Position position, San san, String move) {
+        position.makeMove(san.parse(position, move), new UndoInfo());
+    }
+}
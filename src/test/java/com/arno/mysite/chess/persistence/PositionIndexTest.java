@@ -0,0 +1,88 @@
+package com.arno.mysite.chess.persistence;
+
+import com.arno.mysite.chess.game.PgnGame;
+import com.arno.mysite.chess.game.Position;
+import com.arno.mysite.chess.game.San;
+import com.arno.mysite.chess.game.UndoInfo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class PositionIndexTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void findsTheGamesThatReachedAPosition() throws IOException {
+        Path base = directory.resolve("games");
+        GameArchive archive = archive(base);
+        //tiny runs and two threads, so the index is merged from many sorted runs
+        new PositionIndexBuilder(archive, base, 2, 3, GameArchive.MAX_MOVES).build();
+        PositionIndex index = PositionIndex.open(base);
+
+        assertEquals(4, index.count(key()));
+        assertEquals(2, index.count(key("e4")));
+        assertEquals(0, index.count(key("a4")));
+
+        int[] games = new int[4];
+        int[] plies = new int[4];
+        assertEquals(2, index.find(key("e4", "e5", "Nf3", "Nc6"), games, plies));
+        assertArrayEquals(new int[]{0, 3}, new int[]{games[0], games[1]});
+        assertArrayEquals(new int[]{4, 4}, new int[]{plies[0], plies[1]});
+
+        Map<Integer, Integer> next = index.nextMoves(key(), archive);
+        assertEquals(3, next.size());
+        assertEquals(2, (int) next.get(archive.getMove(0, 0)));
+        assertEquals(1, (int) next.get(archive.getMove(2, 0)));
+    }
+
+    @Test
+    void mergesInSeveralPassesWhenThereAreManyRuns() throws IOException {
+        Path base = directory.resolve("games");
+        GameArchive archive = archive(base);
+        Path single = directory.resolve("single");
+        new PositionIndexBuilder(archive, single, 2, 3, GameArchive.MAX_MOVES).build();
+        //one pair per run and two runs per merge, so the runs are merged down over several passes
+        Path passes = directory.resolve("passes");
+        new PositionIndexBuilder(archive, passes, 2, 1, GameArchive.MAX_MOVES, 2).build();
+
+        assertArrayEquals(Files.readAllBytes(PositionIndex.keysFile(single)), Files.readAllBytes(PositionIndex.keysFile(passes)));
+        assertArrayEquals(Files.readAllBytes(PositionIndex.postingsFile(single)),
+                Files.readAllBytes(PositionIndex.postingsFile(passes)));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertFalse(files.anyMatch(file -> file.toString().endsWith(".run")));
+        }
+    }
+
+    private static GameArchive archive(Path base) throws IOException {
+        try (GameArchiveWriter writer = new GameArchiveWriter(base)) {
+            writer.append(GameArchiveTest.game(null, PgnGame.WHITE_WINS, "e4", "e5", "Nf3", "Nc6"));
+            writer.append(GameArchiveTest.game(null, PgnGame.BLACK_WINS, "e4", "c5", "Nf3"));
+            writer.append(GameArchiveTest.game(null, PgnGame.DRAW, "d4", "d5"));
+            //reaches the position after 1. e4 e5 2. Nf3 Nc6 by another order
+            writer.append(GameArchiveTest.game(null, PgnGame.DRAW, "Nf3", "Nc6", "e4", "e5"));
+        }
+        return GameArchive.open(base);
+    }
+
+    private static long key(String... moves) {
+        Position position = new Position();
+        position.setFen(Position.START_FEN);
+        UndoInfo undo = new UndoInfo();
+        San san = new San();
+        for (String move : moves) {
+            position.makeMove(san.parse(position, move), undo);
+        }
+        return position.getKey();
+    }
+}
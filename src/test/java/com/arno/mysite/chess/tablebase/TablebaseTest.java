@@ -0,0 +1,136 @@
+package com.arno.mysite.chess.tablebase;
+
+import com.arno.mysite.chess.game.Move;
+import com.arno.mysite.chess.game.MoveGenerator;
+import com.arno.mysite.chess.game.MoveList;
+import com.arno.mysite.chess.game.Position;
+import com.arno.mysite.chess.game.UndoInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TablebaseTest {
+
+    @TempDir
+    Path directory;
+
+    private Tablebases tablebases;
+    private TablebaseGenerator generator;
+
+    @BeforeEach
+    void setUp() {
+        tablebases = new Tablebases(directory);
+        generator = new TablebaseGenerator(tablebases, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        generator.shutdown();
+    }
+
+    @Test
+    void everyPositionHasOneIndex() throws IOException {
+        for (String signature : new String[]{"KQvK", "KRRvK", "KPvK"}) {
+            Tablebase table = generator.generate(signature);
+            Position position = new Position();
+            int[] squares = new int[Tablebases.MAX_PIECES];
+            for (int index = 0; index < table.size(); index++) {
+                if (table.setup(index, position, squares)) {
+                    assertEquals(index, table.index(position, false, squares), signature + " " + position.toFen());
+                } else {
+                    assertEquals(Tablebase.ILLEGAL, Tablebase.wdl(table.get(index)), signature + " " + index);
+                }
+            }
+        }
+    }
+
+    @Test
+    void mirroredPositionsProbeTheSame() throws IOException {
+        generator.generate("KRRvK");
+        Position position = new Position();
+        position.setFen("8/8/8/3k4/8/R2R4/8/4K3 b - - 0 1");
+        int code = tablebases.probe(position);
+        assertEquals(Tablebase.LOSS, Tablebase.wdl(code));
+        position.setFen("8/8/8/4k3/8/4R2R/8/3K4 b - - 0 1");
+        assertEquals(code, tablebases.probe(position));
+        //the colours swapped
+        position.setFen("4k3/8/r2r4/8/3K4/8/8/8 w - - 0 1");
+        assertEquals(code, tablebases.probe(position));
+    }
+
+    @Test
+    void longestMates() throws IOException {
+        assertEquals(10, maxDtm(generator.generate("KQvK")));
+        assertEquals(16, maxDtm(generator.generate("KRvK")));
+        assertEquals(7, maxDtm(generator.generate("KRRvK")));
+    }
+
+    @Test
+    void codesKeepMatesLongerThanSixtyThreeMoves() {
+        for (int dtm = 0; dtm <= Tablebase.MAX_DTM; dtm++) {
+            int loss = Tablebase.code(Tablebase.LOSS, dtm);
+            assertEquals(Tablebase.LOSS, Tablebase.wdl(loss));
+            assertEquals(dtm, Tablebase.dtm(loss));
+            assertEquals(2 * dtm, Tablebase.plies(loss));
+            if (dtm > 0) {
+                int win = Tablebase.code(Tablebase.WIN, dtm);
+                assertTrue(win <= 0xFF);
+                assertEquals(Tablebase.WIN, Tablebase.wdl(win));
+                assertEquals(dtm, Tablebase.dtm(win));
+                assertEquals(2 * dtm - 1, Tablebase.plies(win));
+            }
+        }
+        assertEquals(Tablebase.DRAW, Tablebase.wdl(Tablebase.code(Tablebase.DRAW, 0)));
+        assertEquals(Tablebase.ILLEGAL, Tablebase.wdl(Tablebase.code(Tablebase.ILLEGAL, 0)));
+        assertThrows(IllegalArgumentException.class, () -> Tablebase.code(Tablebase.WIN, Tablebase.MAX_DTM + 1));
+    }
+
+    @Test
+    void bestMovesConvertTheLongestWins() throws IOException {
+        Tablebase table = generator.generate("KRvK");
+        Position position = new Position();
+        int[] squares = new int[Tablebases.MAX_PIECES];
+        MoveList moves = new MoveList();
+        UndoInfo undo = new UndoInfo();
+        int converted = 0;
+        for (int index = 0; index < table.size() && converted < 20; index++) {
+            int code = table.get(index);
+            if (Tablebase.wdl(code) != Tablebase.WIN || Tablebase.dtm(code) != 16 || !table.setup(index, position, squares)) {
+                continue;
+            }
+            //every move of the winner brings the mate one move closer, whatever the defender tries
+            for (int dtm = 16; dtm > 0; dtm--) {
+                assertEquals(Tablebase.code(Tablebase.WIN, dtm), tablebases.probe(position), position.toFen());
+                position.makeMove(tablebases.bestMove(position), undo);
+                int move = tablebases.bestMove(position);
+                if (move == Move.NONE) {
+                    break;
+                }
+                position.makeMove(move, undo);
+            }
+            MoveGenerator.generateLegalMoves(position, moves);
+            assertTrue(moves.isEmpty() && position.isChecked(position.getSideToMove()), position.toFen());
+            converted++;
+        }
+        assertTrue(converted > 0);
+    }
+
+    private static int maxDtm(Tablebase table) {
+        int max = 0;
+        for (int index = 0; index < table.size(); index++) {
+            int code = table.get(index);
+            if (Tablebase.wdl(code) == Tablebase.WIN) {
+                max = Math.max(max, Tablebase.dtm(code));
+            }
+        }
+        return max;
+    }
+}